@@ -0,0 +1,23 @@
+package hello.jdbc.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 컴파일 시점에 JDBC 구현체(타입명 + Impl)를 생성할 인터페이스 또는 추상 클래스에 붙인다.
+ * 추상 메소드는 모두 @Query 또는 @Update 가 있어야 하고, 나머지는 default 메소드(추상 클래스는 일반 메소드)로 작성한다.
+ * 추상 클래스의 package-private, protected 추상 메소드는 같은 접근 제어자로 구현되므로 공개 API 에 드러나지 않는다.
+ *
+ * 생성되는 구현체
+ * - 생성자 : (DataSource, SQLExceptionTranslator)
+ * - DataSourceUtils 로 커넥션을 얻으므로 트랜젝션 동기화에 참여한다.
+ * - PreparedStatement 는 물리 커넥션별로 캐시해서 재사용한다. (커넥션 풀이나 트랜젝션으로 같은 커넥션을 다시 쓸 때 효과가 있다)
+ * - 파라미터는 메소드 파라미터 순서대로 바인딩한다.
+ * - 결과는 컬럼 인덱스로 읽어서 컬럼 수와 같은 개수의 파라미터를 가진 생성자로 만든다. (리플렉션 없음)
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JdbcRepository {
+}
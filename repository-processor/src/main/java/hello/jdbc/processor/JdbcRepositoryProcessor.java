@@ -0,0 +1,556 @@
+package hello.jdbc.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @JdbcRepository 인터페이스(또는 추상 클래스)의 JDBC 구현체 소스를 생성한다.
+ * 생성된 코드는 try/finally JDBC 코드를 그대로 풀어쓴 형태로, 콜백 객체나 리플렉션이 없다.
+ * PreparedStatement 는 물리 커넥션별로 캐시해서 같은 커넥션에서 다시 호출하면 재사용한다.
+ */
+@SupportedAnnotationTypes("hello.jdbc.processor.JdbcRepository")
+public class JdbcRepositoryProcessor extends AbstractProcessor {
+
+    // 생성 중인 인터페이스의 메소드별 SQL 상수 이름
+    private Map<ExecutableElement, String> sqlConstants;
+    // 생성 중인 인터페이스의 메소드별 PreparedStatement 캐시 위치
+    private Map<ExecutableElement, Integer> statementIndexes;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JdbcRepository.class)) {
+            boolean abstractClass = element.getKind() == ElementKind.CLASS
+                    && element.getModifiers().contains(Modifier.ABSTRACT);
+            if (element.getKind() != ElementKind.INTERFACE && !abstractClass) {
+                error(element, "@JdbcRepository 는 인터페이스 또는 추상 클래스에만 사용할 수 있습니다.");
+                continue;
+            }
+            try {
+                generate((TypeElement) element);
+            } catch (GenerationException e) {
+                error(e.element, e.getMessage());
+            } catch (IOException e) {
+                error(element, "소스 생성 실패 : " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.getQualifiedName().toString();
+        String implName = type.getSimpleName() + "Impl";
+
+        StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * ").append(type.getSimpleName()).append(" 구현체 - JdbcRepositoryProcessor 가 생성\n */\n");
+        src.append("@javax.annotation.processing.Generated(\"hello.jdbc.processor.JdbcRepositoryProcessor\")\n");
+        src.append("public class ").append(implName)
+                .append(type.getKind() == ElementKind.INTERFACE ? " implements " : " extends ")
+                .append(type.getQualifiedName()).append(" {\n\n");
+
+        List<ExecutableElement> methods = abstractMethods(type);
+        sqlConstants = sqlConstants(methods);
+        statementIndexes = new HashMap<>();
+        for (ExecutableElement method : methods) {
+            statementIndexes.put(method, statementIndexes.size());
+            src.append("    private static final String ").append(sqlConstant(method)).append(" = ")
+                    .append(literal(sqlOf(method))).append(";\n");
+        }
+        src.append("\n");
+        src.append("    private final javax.sql.DataSource dataSource;\n");
+        src.append("    private final org.springframework.jdbc.support.SQLExceptionTranslator exceptionTranslator;\n");
+        src.append("    // 물리 커넥션 -> 메소드별 PreparedStatement (statements 로 동기화)\n");
+        src.append("    private final java.util.Map<java.sql.Connection, java.sql.PreparedStatement[]> statements")
+                .append(" = new java.util.HashMap<>();\n\n");
+        src.append("    public ").append(implName).append("(javax.sql.DataSource dataSource, ")
+                .append("org.springframework.jdbc.support.SQLExceptionTranslator exceptionTranslator) {\n");
+        src.append("        this.dataSource = dataSource;\n");
+        src.append("        this.exceptionTranslator = exceptionTranslator;\n");
+        src.append("    }\n");
+
+        for (ExecutableElement method : methods) {
+            src.append("\n");
+            writeMethod(src, method);
+        }
+        src.append("\n");
+        writeStatementCache(src, implName, methods.size());
+        src.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? implName : packageName + "." + implName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+    /**
+     * 구현해야 하는 추상 메소드 (상위 인터페이스 포함, 재정의된 메소드는 제외)
+     */
+    private List<ExecutableElement> abstractMethods(TypeElement type) {
+        List<ExecutableElement> all = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        List<ExecutableElement> result = new ArrayList<>();
+        for (ExecutableElement method : all) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            if (isOverridden(method, all, type)) {
+                continue;
+            }
+            if (method.getAnnotation(Query.class) == null && method.getAnnotation(Update.class) == null) {
+                throw new GenerationException(method, "@Query 또는 @Update 가 없는 추상 메소드입니다 : " + method
+                        + " (직접 구현하거나 SQL 을 지정하세요)");
+            }
+            result.add(method);
+        }
+        return result;
+    }
+
+    private boolean isOverridden(ExecutableElement method, List<ExecutableElement> all, TypeElement type) {
+        for (ExecutableElement other : all) {
+            if (other != method && processingEnv.getElementUtils().overrides(other, method, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeMethod(StringBuilder src, ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        boolean query = method.getAnnotation(Query.class) != null;
+        TypeMirror returnType = method.getReturnType();
+
+        src.append("    @Override\n");
+        src.append("    ").append(accessModifier(method)).append(returnType).append(" ").append(name).append("(");
+        List<? extends VariableElement> params = method.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                src.append(", ");
+            }
+            src.append(params.get(i).asType()).append(" ").append(params.get(i).getSimpleName());
+        }
+        src.append(") {\n");
+        src.append("        java.sql.Connection conn = null;\n");
+        src.append("        java.sql.PreparedStatement pstmt = null;\n");
+        if (query) {
+            src.append("        java.sql.ResultSet rs = null;\n");
+        }
+        src.append("        try {\n");
+        src.append("            conn = org.springframework.jdbc.datasource.DataSourceUtils.getConnection(dataSource);\n");
+        src.append("            pstmt = prepare(conn, ").append(statementIndexes.get(method)).append(", ")
+                .append(sqlConstant(method)).append(");\n");
+        VariableElement consumer = query ? consumerParam(method) : null;
+        for (int i = 0; i < params.size(); i++) {
+            VariableElement param = params.get(i);
+            if (param == consumer) {
+                continue;
+            }
+            src.append("            pstmt.").append(setter(param.asType())).append("(").append(i + 1).append(", ")
+                    .append(param.getSimpleName()).append(");\n");
+        }
+        if (consumer != null) {
+            src.append("            rs = pstmt.executeQuery();\n");
+            writeStreamResult(src, method, returnType, consumer);
+        } else if (query) {
+            src.append("            rs = pstmt.executeQuery();\n");
+            writeQueryResult(src, method, returnType);
+        } else {
+            writeUpdateResult(src, method, returnType);
+        }
+        src.append("        } catch (java.sql.SQLException e) {\n");
+        src.append("            throw exceptionTranslator.translate(\"").append(name).append("\", ")
+                .append(sqlConstant(method)).append(", e);\n");
+        src.append("        } finally {\n");
+        if (query) {
+            src.append("            org.springframework.jdbc.support.JdbcUtils.closeResultSet(rs);\n");
+        }
+        src.append("            release(conn, ").append(statementIndexes.get(method)).append(", pstmt);\n");
+        src.append("            org.springframework.jdbc.datasource.DataSourceUtils.releaseConnection(conn, dataSource);\n");
+        src.append("        }\n");
+        src.append("    }\n");
+    }
+
+    /**
+     * 구현 메소드의 접근 제어자 (추상 클래스의 package-private, protected 메소드는 그대로 둔다)
+     */
+    private String accessModifier(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC) || method.getEnclosingElement().getKind() == ElementKind.INTERFACE) {
+            return "public ";
+        }
+        return modifiers.contains(Modifier.PROTECTED) ? "protected " : "";
+    }
+
+    /**
+     * PreparedStatement 캐시
+     * 커넥션 풀은 빌려줄 때마다 다른 프록시를 주므로 unwrap 한 물리 커넥션을 키로 쓰고, 문장도 물리 커넥션에서 만든다.
+     * (프록시를 반납할 때 풀이 닫는 문장에 포함되지 않는다)
+     * 물리 커넥션은 한 번에 한 스레드만 쓰므로 문장을 꺼내 쓰고 다시 돌려놓는다.
+     * Consumer 안에서 같은 메소드를 다시 부르면 자리가 비어 있으므로 새로 만들고, 돌려놓을 자리가 차 있으면 닫는다.
+     * 처음 보는 커넥션을 등록할 때 닫힌 커넥션의 캐시를 정리한다.
+     */
+    private void writeStatementCache(StringBuilder src, String implName, int size) {
+        src.append("    private java.sql.PreparedStatement prepare(java.sql.Connection conn, int index, String sql)")
+                .append(" throws java.sql.SQLException {\n");
+        src.append("        java.sql.Connection physical = physical(conn);\n");
+        src.append("        synchronized (statements) {\n");
+        src.append("            java.sql.PreparedStatement[] cached = statements.get(physical);\n");
+        src.append("            if (cached != null && cached[index] != null) {\n");
+        src.append("                java.sql.PreparedStatement pstmt = cached[index];\n");
+        src.append("                cached[index] = null;\n");
+        src.append("                if (!pstmt.isClosed()) {\n");
+        src.append("                    return pstmt;\n");
+        src.append("                }\n");
+        src.append("            }\n");
+        src.append("        }\n");
+        src.append("        return physical.prepareStatement(sql);\n");
+        src.append("    }\n\n");
+        src.append("    private void release(java.sql.Connection conn, int index, java.sql.PreparedStatement pstmt) {\n");
+        src.append("        if (pstmt == null) {\n");
+        src.append("            return;\n");
+        src.append("        }\n");
+        src.append("        try {\n");
+        src.append("            java.sql.Connection physical = physical(conn);\n");
+        src.append("            synchronized (statements) {\n");
+        src.append("                java.sql.PreparedStatement[] cached = statements.get(physical);\n");
+        src.append("                if (cached == null) {\n");
+        src.append("                    statements.keySet().removeIf(").append(implName).append("::isClosed);\n");
+        src.append("                    cached = new java.sql.PreparedStatement[").append(size).append("];\n");
+        src.append("                    statements.put(physical, cached);\n");
+        src.append("                }\n");
+        src.append("                if (cached[index] == null) {\n");
+        src.append("                    cached[index] = pstmt;\n");
+        src.append("                    return;\n");
+        src.append("                }\n");
+        src.append("            }\n");
+        src.append("        } catch (java.sql.SQLException e) {\n");
+        src.append("            // 캐시에 넣지 못하면 닫는다.\n");
+        src.append("        }\n");
+        src.append("        org.springframework.jdbc.support.JdbcUtils.closeStatement(pstmt);\n");
+        src.append("    }\n\n");
+        src.append("    private static java.sql.Connection physical(java.sql.Connection conn) throws java.sql.SQLException {\n");
+        src.append("        return conn.isWrapperFor(java.sql.Connection.class) ? conn.unwrap(java.sql.Connection.class) : conn;\n");
+        src.append("    }\n\n");
+        src.append("    private static boolean isClosed(java.sql.Connection conn) {\n");
+        src.append("        try {\n");
+        src.append("            return conn.isClosed();\n");
+        src.append("        } catch (java.sql.SQLException e) {\n");
+        src.append("            return true;\n");
+        src.append("        }\n");
+        src.append("    }\n");
+    }
+
+    /**
+     * 마지막 파라미터가 Consumer&lt;T&gt; 이면 결과를 모으지 않고 한 건씩 넘긴다. (반환 타입 void 또는 long)
+     */
+    private VariableElement consumerParam(ExecutableElement method) {
+        List<? extends VariableElement> params = method.getParameters();
+        if (params.isEmpty()) {
+            return null;
+        }
+        VariableElement last = params.get(params.size() - 1);
+        TypeMirror type = last.asType();
+        if (type.getKind() == TypeKind.DECLARED && ((TypeElement) ((DeclaredType) type).asElement())
+                .getQualifiedName().contentEquals("java.util.function.Consumer")) {
+            return last;
+        }
+        return null;
+    }
+
+    private void writeStreamResult(StringBuilder src, ExecutableElement method, TypeMirror returnType,
+                                   VariableElement consumer) {
+        if (returnType.getKind() != TypeKind.VOID && returnType.getKind() != TypeKind.LONG) {
+            throw new GenerationException(method, "Consumer 를 받는 @Query 는 void 또는 long 만 반환할 수 있습니다.");
+        }
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) consumer.asType()).getTypeArguments();
+        if (typeArguments.isEmpty()) {
+            throw new GenerationException(method, "Consumer 의 타입 파라미터가 필요합니다.");
+        }
+        TypeMirror element = typeArguments.get(0);
+        if (element.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) element).getSuperBound();
+            if (bound == null) {
+                throw new GenerationException(method, "Consumer<? super T> 또는 Consumer<T> 만 지원합니다.");
+            }
+            element = bound;
+        }
+        boolean counting = returnType.getKind() == TypeKind.LONG;
+        if (counting) {
+            src.append("            long count = 0;\n");
+        }
+        src.append("            while (rs.next()) {\n");
+        src.append("                ").append(consumer.getSimpleName()).append(".accept(")
+                .append(rowExpression(method, element, sqlOf(method))).append(");\n");
+        if (counting) {
+            src.append("                count++;\n");
+        }
+        src.append("            }\n");
+        if (counting) {
+            src.append("            return count;\n");
+        }
+    }
+
+    private void writeUpdateResult(StringBuilder src, ExecutableElement method, TypeMirror returnType) {
+        if (returnType.getKind() == TypeKind.VOID) {
+            src.append("            pstmt.executeUpdate();\n");
+        } else if (returnType.getKind() == TypeKind.INT) {
+            src.append("            return pstmt.executeUpdate();\n");
+        } else {
+            throw new GenerationException(method, "@Update 는 void 또는 int 만 반환할 수 있습니다.");
+        }
+    }
+
+    private void writeQueryResult(StringBuilder src, ExecutableElement method, TypeMirror returnType) {
+        String sql = sqlOf(method);
+        switch (returnType.getKind()) {
+            case BOOLEAN:
+                src.append("            return rs.next();\n");
+                return;
+            case INT:
+            case LONG:
+                src.append("            if (!rs.next()) {\n");
+                src.append("                throw new org.springframework.dao.EmptyResultDataAccessException(1);\n");
+                src.append("            }\n");
+                src.append("            return ").append(getter(returnType, 1)).append(";\n");
+                return;
+            case DECLARED:
+                break;
+            default:
+                throw new GenerationException(method, "지원하지 않는 반환 타입 : " + returnType);
+        }
+
+        DeclaredType declared = (DeclaredType) returnType;
+        String rawName = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+        switch (rawName) {
+            case "java.util.OptionalInt":
+                src.append("            return rs.next() ? java.util.OptionalInt.of(rs.getInt(1)) : java.util.OptionalInt.empty();\n");
+                return;
+            case "java.util.OptionalLong":
+                src.append("            return rs.next() ? java.util.OptionalLong.of(rs.getLong(1)) : java.util.OptionalLong.empty();\n");
+                return;
+            case "java.util.Optional": {
+                TypeMirror element = declared.getTypeArguments().get(0);
+                src.append("            return rs.next() ? java.util.Optional.of(").append(rowExpression(method, element, sql))
+                        .append(") : java.util.Optional.empty();\n");
+                return;
+            }
+            case "java.util.List": {
+                TypeMirror element = declared.getTypeArguments().get(0);
+                src.append("            java.util.List<").append(element).append("> result = new java.util.ArrayList<>();\n");
+                src.append("            while (rs.next()) {\n");
+                src.append("                result.add(").append(rowExpression(method, element, sql)).append(");\n");
+                src.append("            }\n");
+                src.append("            return result;\n");
+                return;
+            }
+            default:
+                src.append("            if (!rs.next()) {\n");
+                src.append("                throw new org.springframework.dao.EmptyResultDataAccessException(1);\n");
+                src.append("            }\n");
+                src.append("            return ").append(rowExpression(method, returnType, sql)).append(";\n");
+        }
+    }
+
+    /**
+     * 현재 행을 type 으로 변환하는 식
+     * String, 숫자 : 첫번째 컬럼
+     * 그 외 : select 컬럼 수와 같은 개수의 파라미터를 가진 생성자 호출 (컬럼 인덱스 순서)
+     * SQL 만으로는 컬럼 타입을 알 수 없으므로 그런 생성자가 여러 개면 어느 것을 쓸지 정할 수 없어 에러로 처리한다.
+     */
+    private String rowExpression(ExecutableElement method, TypeMirror type, String sql) {
+        if (isScalar(type)) {
+            return getter(type, 1);
+        }
+        int columns = selectColumnCount(method, sql);
+        TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
+        List<ExecutableElement> candidates = new ArrayList<>();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC) && constructor.getParameters().size() == columns) {
+                candidates.add(constructor);
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new GenerationException(method, typeElement.getQualifiedName() + " 에 파라미터가 " + columns
+                    + "개인 public 생성자가 없습니다.");
+        }
+        if (candidates.size() > 1) {
+            throw new GenerationException(method, typeElement.getQualifiedName() + " 에 파라미터가 " + columns
+                    + "개인 public 생성자가 여러 개라 select 컬럼에 맞는 생성자를 정할 수 없습니다 : " + candidates);
+        }
+        StringBuilder expression = new StringBuilder("new ").append(typeElement.getQualifiedName()).append("(");
+        List<? extends VariableElement> params = candidates.get(0).getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) {
+                expression.append(", ");
+            }
+            expression.append(getter(params.get(i).asType(), i + 1));
+        }
+        return expression.append(")").toString();
+    }
+
+    /**
+     * select 와 from 사이의 컬럼 수 (괄호 안의 콤마는 제외)
+     */
+    private int selectColumnCount(ExecutableElement method, String sql) {
+        String lower = sql.toLowerCase();
+        int select = lower.indexOf("select ");
+        int from = lower.indexOf(" from ", select);
+        if (select < 0 || from < 0) {
+            throw new GenerationException(method, "select 컬럼을 찾을 수 없습니다 : " + sql);
+        }
+        String columns = sql.substring(select + "select ".length(), from).trim();
+        if (columns.equals("*") || columns.endsWith(".*")) {
+            throw new GenerationException(method, "select * 는 사용할 수 없습니다. 컬럼을 직접 지정하세요 : " + sql);
+        }
+        int count = 1;
+        int depth = 0;
+        for (char c : columns.toCharArray()) {
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isScalar(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return true;
+        }
+        String name = type.toString();
+        return name.equals("java.lang.String") || name.equals("java.lang.Integer") || name.equals("java.lang.Long");
+    }
+
+    private String getter(TypeMirror type, int index) {
+        switch (type.getKind()) {
+            case INT:
+                return "rs.getInt(" + index + ")";
+            case LONG:
+                return "rs.getLong(" + index + ")";
+            case BOOLEAN:
+                return "rs.getBoolean(" + index + ")";
+            case DOUBLE:
+                return "rs.getDouble(" + index + ")";
+            default:
+                if (type.toString().equals("java.lang.String")) {
+                    return "rs.getString(" + index + ")";
+                }
+                return "rs.getObject(" + index + ", " + processingEnv.getTypeUtils().erasure(type) + ".class)";
+        }
+    }
+
+    private String setter(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return "setInt";
+            case LONG:
+                return "setLong";
+            case BOOLEAN:
+                return "setBoolean";
+            case DOUBLE:
+                return "setDouble";
+            default:
+                return type.toString().equals("java.lang.String") ? "setString" : "setObject";
+        }
+    }
+
+    private String sqlOf(ExecutableElement method) {
+        Query query = method.getAnnotation(Query.class);
+        return query != null ? query.value() : method.getAnnotation(Update.class).value();
+    }
+
+    private String sqlConstant(ExecutableElement method) {
+        return sqlConstants.get(method);
+    }
+
+    private Map<ExecutableElement, String> sqlConstants(List<ExecutableElement> methods) {
+        Map<ExecutableElement, String> constants = new HashMap<>();
+        Set<String> used = new HashSet<>();
+        for (ExecutableElement method : methods) {
+            StringBuilder name = new StringBuilder("SQL_");
+            for (char c : method.getSimpleName().toString().toCharArray()) {
+                if (Character.isUpperCase(c)) {
+                    name.append('_');
+                }
+                name.append(Character.toUpperCase(c));
+            }
+            // 오버로딩된 메소드 구분
+            String constant = name.toString();
+            for (int i = 2; !used.add(constant); i++) {
+                constant = name + "_" + i;
+            }
+            constants.put(method, constant);
+        }
+        return constants;
+    }
+
+    private String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append("\"").toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static class GenerationException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Element element;
+
+        GenerationException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
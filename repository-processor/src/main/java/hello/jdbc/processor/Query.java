@@ -0,0 +1,23 @@
+package hello.jdbc.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 조회 SQL
+ * 지원하는 반환 타입
+ * - T          : 한 건, 없으면 EmptyResultDataAccessException
+ * - Optional&lt;T&gt;, List&lt;T&gt;
+ * - boolean    : 결과 행 존재 여부
+ * - int, long, String : 첫번째 컬럼 (한 건)
+ * - OptionalInt, OptionalLong : 첫번째 컬럼, 없으면 empty
+ * 마지막 파라미터가 Consumer&lt;T&gt; 이면 결과를 한 건씩 넘긴다. (반환 타입 void 또는 long - 행 수)
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Query {
+
+    String value();
+}
@@ -0,0 +1,17 @@
+package hello.jdbc.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 등록, 수정, 삭제 SQL
+ * 반환 타입은 void 또는 int (반영된 행 수)
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Update {
+
+    String value();
+}
@@ -0,0 +1,207 @@
+package hello.jdbc.aggregate;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.UpsertResult;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+/**
+ * 집계 유지 리포지토리 (데코레이터)
+ * save, update, delete, upsert, addMoneyAll 과 같은 트랜젝션에서 BalanceAggregates 에 변경분을 반영한다.
+ * MemberServiceV4 의 이체는 update 를, 정산/상계/그룹 커밋/이체 큐는 addMoneyAll 을 통하므로 같이 반영된다.
+ * member.money 를 리포지토리를 거치지 않고 바꾸는 경로는 BalanceAggregates 문서를 참고한다.
+ * 이미 트랜젝션이 있으면 참여하고, 없으면 메소드 단위로 트랜젝션을 시작한다.
+ */
+public class AggregatingMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final BalanceAggregates aggregates;
+    private final TransactionTemplate transactionTemplate;
+
+    public AggregatingMemberRepository(MemberRepository delegate, BalanceAggregates aggregates,
+                                       PlatformTransactionManager transactionManager) {
+        this.delegate = delegate;
+        this.aggregates = aggregates;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Member save(Member member) {
+        return transactionTemplate.execute(status -> {
+            Member saved = delegate.save(member);
+            aggregates.memberAdded(member.getMoney());
+            return saved;
+        });
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        transactionTemplate.executeWithoutResult(status -> {
+            OptionalInt before = aggregates.lockMoney(memberId);
+            delegate.update(memberId, money);
+            if (before.isPresent()) {
+                aggregates.moneyChanged(before.getAsInt(), money);
+            }
+        });
+    }
+
+    @Override
+    public void update(Member member) {
+        transactionTemplate.executeWithoutResult(status -> {
+            OptionalInt before = aggregates.lockMoney(member.getMemberId());
+            // version 이 다르면 예외가 나고 트랜젝션이 롤백되므로 집계도 반영되지 않는다.
+            delegate.update(member);
+            if (before.isPresent()) {
+                aggregates.moneyChanged(before.getAsInt(), member.getMoney());
+            }
+        });
+    }
+
+    @Override
+    public void delete(String memberId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            OptionalInt before = aggregates.lockMoney(memberId);
+            delegate.delete(memberId);
+            if (before.isPresent()) {
+                aggregates.memberRemoved(before.getAsInt());
+            }
+        });
+    }
+
+    @Override
+    public UpsertResult upsert(Member member) {
+        return transactionTemplate.execute(status -> upsertInTransaction(member, status));
+    }
+
+    @Override
+    public List<UpsertResult> upsertAll(Collection<Member> members) {
+        // 건별로 변경 전 잔액이 필요하므로 한 트랜젝션 안에서 한 건씩 처리
+        return transactionTemplate.execute(status -> MemberRepository.super.upsertAll(members));
+    }
+
+    /**
+     * 등록/수정 여부는 락 조회가 아니라 MERGE 결과(OLD TABLE)로 판단한다.
+     * 없는 행은 for update 로 잠기지 않으므로, 락 조회와 MERGE 사이에 다른 트랜젝션이 같은 회원을 등록할 수 있다.
+     * - 등록이 커밋되었으면 MERGE 가 UPDATED 를 돌려준다.
+     * - 등록이 아직 커밋 전이면 MERGE 가 DuplicateKeyException 으로 실패한다.
+     * 두 경우 모두 변경 전 잔액을 모르므로 savepoint 로 되돌리고, 등록된 행을 잠가 읽은 뒤 수정으로 반영한다.
+     */
+    private UpsertResult upsertInTransaction(Member member, TransactionStatus status) {
+        OptionalInt before = aggregates.lockMoney(member.getMemberId());
+        if (before.isPresent()) {
+            UpsertResult result = delegate.upsert(member);
+            aggregates.moneyChanged(before.getAsInt(), member.getMoney());
+            return result;
+        }
+
+        Object savepoint = status.createSavepoint();
+        try {
+            if (delegate.upsert(member) == UpsertResult.INSERTED) {
+                aggregates.memberAdded(member.getMoney());
+                return UpsertResult.INSERTED;
+            }
+        } catch (DuplicateKeyException e) {
+            // 커밋 전인 등록과 충돌 - 아래에서 그 트랜젝션이 끝나기를 기다려 수정으로 반영한다.
+        }
+        status.rollbackToSavepoint(savepoint);
+        status.releaseSavepoint(savepoint);
+
+        // 등록한 트랜젝션이 끝날 때까지 기다린 후 잠근다.
+        before = aggregates.lockMoney(member.getMemberId());
+        if (!before.isPresent()) {
+            // 등록이 롤백되었거나 그 사이 다시 삭제되었다면 처음부터 다시 판단한다.
+            return upsertInTransaction(member, status);
+        }
+        delegate.update(member.getMemberId(), member.getMoney());
+        aggregates.moneyChanged(before.getAsInt(), member.getMoney());
+        return UpsertResult.UPDATED;
+    }
+
+    /**
+     * 변경 전 잔액을 같은 트랜젝션에서 잠가 읽은 뒤 일괄 반영하고, 실제로 바뀐 회원만 집계에 더한다.
+     */
+    @Override
+    public int[] addMoneyAll(SortedMap<String, Integer> deltas) {
+        return transactionTemplate.execute(status -> {
+            Map<String, Integer> before = new HashMap<>();
+            for (Member member : delegate.findAllByIdForUpdate(deltas.keySet())) {
+                before.put(member.getMemberId(), member.getMoney());
+            }
+            int[] counts = delegate.addMoneyAll(deltas);
+
+            int[] from = new int[before.size()];
+            int[] to = new int[before.size()];
+            int changed = 0;
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+                Integer money = before.get(entry.getKey());
+                if (money != null && counts[i] > 0) {
+                    from[changed] = money;
+                    to[changed] = money + entry.getValue();
+                    changed++;
+                }
+                i++;
+            }
+            aggregates.moneyChangedAll(Arrays.copyOf(from, changed), Arrays.copyOf(to, changed));
+            return counts;
+        });
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return delegate.findById(memberId);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return delegate.findOptionalById(memberId);
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        return delegate.existsById(memberId);
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        return delegate.findMoneyById(memberId);
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        return delegate.findByMoneyBetween(minMoney, maxMoney, consumer);
+    }
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        return delegate.findTopByMoney(n);
+    }
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        return delegate.findAllByIdForUpdate(memberIds);
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        return delegate.scanRange(fromId, toId, consumer);
+    }
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return delegate.sampleMemberIds(sampleSize);
+    }
+}
@@ -0,0 +1,180 @@
+package hello.jdbc.aggregate;
+
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 잔액 집계 테이블 (member_stats, member_histogram)
+ * 변경분(delta)만 더하므로 sum(money) 전체 스캔 없이 O(1) 로 조회한다.
+ * 쓰기는 임의의 slot 행에 분산되어 한 행에 락이 몰리지 않는다.
+ * 변경 메소드는 회원 변경과 같은 트랜젝션 안에서 호출해야 한다. (AggregatingMemberRepository)
+ * <p>
+ * 집계가 맞는 것은 member.money 를 AggregatingMemberRepository 로만 바꿀 때 뿐이다.
+ * (save, update, delete, upsert, addMoneyAll - MemberServiceV4, SettlementProcessor, NettingTransferService,
+ * GroupCommitTransferService, TransferQueueWorkers)
+ * TransferJournal(롤업), LedgerEngine(체크포인트), HotAccountStripes(병합), CrossShardTransferService(saga Shard) 는 member 를 직접 수정하므로
+ * 생성할 때 requireUnaggregated 로 등록하고, 같은 DataSource 에 집계와 함께 쓰면 IllegalStateException 으로 막는다.
+ */
+@Slf4j
+public class BalanceAggregates {
+
+    // schema.sql 의 slot 범위(0 ~ 7)와 맞춰야 한다.
+    static final int SLOTS = 8;
+
+    // DataSource -> 집계 없이 member.money 를 바꾸는 컴포넌트 이름 (MemberSchema 와 같이 DataSource 단위로 기록)
+    private static final Map<DataSource, String> UNAGGREGATED_WRITERS = new ConcurrentReferenceHashMap<>();
+    private static final Set<DataSource> AGGREGATED = Collections.newSetFromMap(new ConcurrentReferenceHashMap<>());
+
+    private final JdbcTemplate template;
+
+    public BalanceAggregates(DataSource dataSource) {
+        synchronized (BalanceAggregates.class) {
+            String writer = UNAGGREGATED_WRITERS.get(dataSource);
+            if (writer != null) {
+                throw new IllegalStateException(writer + " 가 member.money 를 집계 없이 수정하는 DataSource 에는 잔액 집계를 사용할 수 없습니다.");
+            }
+            AGGREGATED.add(dataSource);
+        }
+        MemberSchema.ensure(dataSource);
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+    }
+
+    /**
+     * member.money 를 리포지토리를 거치지 않고 수정하는 컴포넌트가 생성될 때 호출한다.
+     * 같은 DataSource 에 잔액 집계가 있으면 집계가 어긋나므로 IllegalStateException 을 던진다.
+     */
+    public static void requireUnaggregated(DataSource dataSource, String writer) {
+        synchronized (BalanceAggregates.class) {
+            if (AGGREGATED.contains(dataSource)) {
+                throw new IllegalStateException(writer + " 는 member.money 를 집계 없이 수정하므로 잔액 집계를 쓰는 DataSource 에는 사용할 수 없습니다.");
+            }
+            UNAGGREGATED_WRITERS.putIfAbsent(dataSource, writer);
+        }
+    }
+
+    /**
+     * 변경 전 잔액 조회 + 행 락
+     * 락 없이 읽으면 동시에 같은 회원을 수정할 때 delta 가 어긋난다.
+     */
+    OptionalInt lockMoney(String memberId) {
+        String sql = "select money from member where member_id = ? for update";
+
+        return template.query(sql, rs -> rs.next() ? OptionalInt.of(rs.getInt(1)) : OptionalInt.empty(), memberId);
+    }
+
+    void memberAdded(int money) {
+        apply(1, money, -1, BalanceHistogram.bucketOf(money));
+    }
+
+    void memberRemoved(int money) {
+        apply(-1, -money, BalanceHistogram.bucketOf(money), -1);
+    }
+
+    void moneyChanged(int before, int after) {
+        apply(0, (long) after - before, BalanceHistogram.bucketOf(before), BalanceHistogram.bucketOf(after));
+    }
+
+    /**
+     * 여러 회원의 잔액 변경을 모아서 반영 - 회원 수와 무관하게 stats 1건 + 바뀐 bucket 수 만큼만 수정한다.
+     */
+    void moneyChangedAll(int[] before, int[] after) {
+        long moneyDelta = 0;
+        long[] bucketDeltas = new long[BalanceHistogram.BUCKETS];
+        for (int i = 0; i < before.length; i++) {
+            moneyDelta += (long) after[i] - before[i];
+            bucketDeltas[BalanceHistogram.bucketOf(before[i])]--;
+            bucketDeltas[BalanceHistogram.bucketOf(after[i])]++;
+        }
+
+        int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+        if (moneyDelta != 0) {
+            template.update("update member_stats set total_money = total_money + ? where slot = ?", moneyDelta, slot);
+        }
+        for (int bucket = 0; bucket < bucketDeltas.length; bucket++) {
+            if (bucketDeltas[bucket] != 0) {
+                template.update("update member_histogram set member_count = member_count + ? where bucket = ? and slot = ?",
+                        bucketDeltas[bucket], bucket, slot);
+            }
+        }
+    }
+
+    private void apply(int countDelta, long moneyDelta, int fromBucket, int toBucket) {
+        int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+        if (countDelta != 0 || moneyDelta != 0) {
+            template.update("update member_stats set member_count = member_count + ?, total_money = total_money + ? where slot = ?",
+                    countDelta, moneyDelta, slot);
+        }
+        if (fromBucket == toBucket) {
+            return;
+        }
+        String sql = "update member_histogram set member_count = member_count + ? where bucket = ? and slot = ?";
+        if (fromBucket >= 0) {
+            template.update(sql, -1, fromBucket, slot);
+        }
+        if (toBucket >= 0) {
+            template.update(sql, 1, toBucket, slot);
+        }
+    }
+
+    /**
+     * 집계 조회 - slot 수 만큼의 행만 읽는다. (회원 수와 무관)
+     */
+    public BalanceSnapshot read() {
+        long[] stats = template.queryForObject(
+                "select coalesce(sum(member_count), 0), coalesce(sum(total_money), 0) from member_stats",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long[] histogram = new long[BalanceHistogram.BUCKETS];
+        template.query("select bucket, sum(member_count) from member_histogram group by bucket",
+                rs -> {
+                    histogram[rs.getInt(1)] = rs.getLong(2);
+                });
+        return new BalanceSnapshot(stats[0], stats[1], histogram);
+    }
+
+    /**
+     * 전체 스캔으로 계산 (검증용)
+     */
+    public BalanceSnapshot scan() {
+        long[] stats = template.queryForObject("select count(*), coalesce(sum(money), 0) from member",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        long[] histogram = new long[BalanceHistogram.BUCKETS];
+        String bucket = BalanceHistogram.bucketSql("money");
+        template.query("select " + bucket + " as bucket, count(*) from member group by " + bucket,
+                rs -> {
+                    histogram[rs.getInt(1)] = rs.getLong(2);
+                });
+        return new BalanceSnapshot(stats[0], stats[1], histogram);
+    }
+
+    /**
+     * 전체 스캔 결과로 집계를 다시 만든다. 트랜젝션 안에서 호출해야 한다.
+     * 집계 행을 먼저 잠그므로 진행 중인 회원 변경은 rebuild 가 커밋된 후에 delta 를 반영한다.
+     */
+    void rebuild() {
+        template.queryForList("select slot from member_stats for update");
+        template.queryForList("select bucket from member_histogram for update");
+
+        BalanceSnapshot scanned = scan();
+        template.update("update member_stats set member_count = 0, total_money = 0");
+        template.update("update member_histogram set member_count = 0");
+        template.update("update member_stats set member_count = ?, total_money = ? where slot = 0",
+                scanned.getMemberCount(), scanned.getTotalMoney());
+        long[] histogram = scanned.getHistogram();
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            template.update("update member_histogram set member_count = ? where bucket = ? and slot = 0",
+                    histogram[bucket], bucket);
+        }
+        log.info("balance aggregates rebuilt snapshot={}", scanned);
+    }
+}
@@ -0,0 +1,44 @@
+package hello.jdbc.aggregate;
+
+/**
+ * 잔액 구간
+ * 0 : 음수, 1 : 0 ~ 9, 2 : 10 ~ 99, ... , 9 : 10^8 ~ 10^9 - 1, 10 : 10^9 이상
+ * schema.sql 의 member_histogram bucket 범위(0 ~ 10)와 맞춰야 한다.
+ */
+public abstract class BalanceHistogram {
+
+    public static final int BUCKETS = 11;
+
+    public static int bucketOf(int money) {
+        if (money < 0) {
+            return 0;
+        }
+        int bucket = 1;
+        for (long bound = 10; bound <= money && bucket < BUCKETS - 1; bound *= 10) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * 구간의 하한 (포함)
+     */
+    public static long lowerBound(int bucket) {
+        if (bucket == 0) {
+            return Integer.MIN_VALUE;
+        }
+        return bucket == 1 ? 0 : (long) Math.pow(10, bucket - 1);
+    }
+
+    /**
+     * SQL 에서 bucketOf 와 같은 계산 (전체 스캔 검증용)
+     */
+    static String bucketSql(String column) {
+        StringBuilder sql = new StringBuilder("case when ").append(column).append(" < 0 then 0");
+        long bound = 10;
+        for (int bucket = 1; bucket < BUCKETS - 1; bucket++, bound *= 10) {
+            sql.append(" when ").append(column).append(" < ").append(bound).append(" then ").append(bucket);
+        }
+        return sql.append(" else ").append(BUCKETS - 1).append(" end").toString();
+    }
+}
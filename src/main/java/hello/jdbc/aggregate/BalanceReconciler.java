@@ -0,0 +1,68 @@
+package hello.jdbc.aggregate;
+
+import hello.jdbc.support.PeriodicTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * 집계 검증 작업
+ * 가끔씩 전체 스캔 결과와 집계 테이블을 비교해서 어긋난 경우 로그를 남기고, repair 이면 다시 만든다.
+ * 집계와 스캔은 같은 트랜젝션(SERIALIZABLE, 읽기 전용)에서 읽으므로 동시에 커밋되는 이체가 있어도 같은 시점을 비교한다.
+ */
+@Slf4j
+public class BalanceReconciler {
+
+    private final BalanceAggregates aggregates;
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final boolean repair;
+
+    private final PeriodicTask scheduler = new PeriodicTask("balance-reconciler", this::reconcile);
+
+    public BalanceReconciler(BalanceAggregates aggregates, PlatformTransactionManager transactionManager, boolean repair) {
+        this.aggregates = aggregates;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.readTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.repair = repair;
+    }
+
+    /**
+     * @return 집계가 전체 스캔과 일치하면 true
+     */
+    public boolean reconcile() {
+        BalanceSnapshot[] snapshots = readTemplate.execute(status -> new BalanceSnapshot[]{aggregates.read(), aggregates.scan()});
+        BalanceSnapshot maintained = snapshots[0];
+        BalanceSnapshot scanned = snapshots[1];
+        // @Data 의 equals 는 배열도 Arrays.equals 로 비교한다.
+        if (maintained.equals(scanned)) {
+            log.debug("balance aggregates ok snapshot={}", scanned);
+            return true;
+        }
+        log.warn("balance aggregates drift maintained={}, scanned={}", maintained, scanned);
+        if (repair) {
+            rebuild();
+        }
+        return false;
+    }
+
+    /**
+     * 전체 스캔으로 집계를 다시 만든다. (최초 적재, 복구)
+     */
+    public void rebuild() {
+        writeTemplate.executeWithoutResult(status -> aggregates.rebuild());
+    }
+
+    public void start(Duration period) {
+        scheduler.start(period);
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+}
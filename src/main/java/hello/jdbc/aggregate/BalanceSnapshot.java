@@ -0,0 +1,15 @@
+package hello.jdbc.aggregate;
+
+import lombok.Data;
+
+/**
+ * 회원 수, 잔액 합계, 잔액 구간별 회원 수
+ */
+@Data
+public class BalanceSnapshot {
+
+    private final long memberCount;
+    private final long totalMoney;
+    private final long[] histogram;
+
+}
@@ -7,6 +7,8 @@ public class Member {
 
     private String memberId;
     private int money;
+    // 낙관적 락 - 수정할 때마다 1 증가 (MemberRepository.update(Member))
+    private long version;
 
     public Member() {
     }
@@ -16,6 +18,10 @@ public class Member {
         this.money = money;
     }
 
-}
-
+    public Member(String memberId, int money, long version) {
+        this.memberId = memberId;
+        this.money = money;
+        this.version = version;
+    }
 
+}
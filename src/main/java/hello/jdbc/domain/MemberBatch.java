@@ -0,0 +1,92 @@
+package hello.jdbc.domain;
+
+import java.util.Arrays;
+
+/**
+ * 컬럼 방식의 회원 묶음
+ * 행마다 Member 객체를 만들지 않고 member_id, money 를 배열에 나란히 담는다.
+ * clear() 후 다시 채워서 재사용하므로 대량 조회/저장시 가비지가 거의 생기지 않는다.
+ */
+public class MemberBatch {
+
+    private String[] memberIds;
+    private int[] moneys;
+    private int size;
+
+    public MemberBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.memberIds = new String[capacity];
+        this.moneys = new int[capacity];
+    }
+
+    public void add(String memberId, int money) {
+        if (size == memberIds.length) {
+            // 재사용을 전제로 하므로 용량이 부족할 때만 늘린다.
+            memberIds = Arrays.copyOf(memberIds, size * 2);
+            moneys = Arrays.copyOf(moneys, size * 2);
+        }
+        memberIds[size] = memberId;
+        moneys[size] = money;
+        size++;
+    }
+
+    public String getMemberId(int index) {
+        checkIndex(index);
+        return memberIds[index];
+    }
+
+    public int getMoney(int index) {
+        checkIndex(index);
+        return moneys[index];
+    }
+
+    public void setMoney(int index, int money) {
+        checkIndex(index);
+        moneys[index] = money;
+    }
+
+    /**
+     * 마지막 member_id - 다음 페이지 조회(keyset) 기준
+     */
+    public String getLastMemberId() {
+        return size == 0 ? null : memberIds[size - 1];
+    }
+
+    public long sumMoney() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += moneys[i];
+        }
+        return sum;
+    }
+
+    public void clear() {
+        // 문자열 참조만 지운다. (배열은 재사용)
+        Arrays.fill(memberIds, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return memberIds.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == memberIds.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+    }
+}
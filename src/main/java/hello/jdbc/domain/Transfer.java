@@ -0,0 +1,15 @@
+package hello.jdbc.domain;
+
+import lombok.Data;
+
+/**
+ * 이체 요청 (fromId -> toId 로 money 이동)
+ */
+@Data
+public class Transfer {
+
+    private final String fromId;
+    private final String toId;
+    private final int money;
+
+}
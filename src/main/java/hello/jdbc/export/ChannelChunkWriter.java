@@ -0,0 +1,32 @@
+package hello.jdbc.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 압축 없이 direct ByteBuffer 를 FileChannel 에 그대로 기록
+ * direct 버퍼는 힙 복사 없이 OS 로 전달된다.
+ */
+class ChannelChunkWriter implements ChunkWriter {
+
+    private final FileChannel channel;
+
+    ChannelChunkWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public ByteBuffer write(ByteBuffer filled) throws IOException {
+        while (filled.hasRemaining()) {
+            channel.write(filled);
+        }
+        filled.clear();
+        return filled;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,18 @@
+package hello.jdbc.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 채워진 버퍼를 파일로 내보내고, 다음에 채울 (비어있는) 버퍼를 돌려준다.
+ * 버퍼는 재사용되므로 메모리 사용량이 행 수와 무관하게 일정하다.
+ */
+interface ChunkWriter extends Closeable {
+
+    /**
+     * @param filled flip() 된 (읽기 모드) 버퍼
+     * @return clear() 된 다음 사용할 버퍼
+     */
+    ByteBuffer write(ByteBuffer filled) throws IOException;
+}
@@ -0,0 +1,127 @@
+package hello.jdbc.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 압축 파이프라인 단계
+ * 조회 스레드는 버퍼를 채워서 큐에 넘기고, 압축 스레드가 deflate 후 FileChannel 에 기록한다.
+ * 버퍼 풀 크기가 고정되어 있으므로 압축이 느리면 조회 스레드가 대기한다. (back pressure)
+ */
+class CompressingChunkWriter implements ChunkWriter {
+
+    // 종료 신호
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> filled;
+    private final ByteBuffer out;
+    private final CompletableFuture<Void> compressor;
+
+    CompressingChunkWriter(FileChannel channel, int bufferSize, int poolSize, Executor executor) {
+        this.channel = channel;
+        this.free = new ArrayBlockingQueue<>(poolSize);
+        this.filled = new ArrayBlockingQueue<>(poolSize + 1);
+        this.out = ByteBuffer.allocateDirect(bufferSize);
+        // 첫 번째 버퍼는 호출자가 가지고 있으므로 나머지를 풀에 넣는다.
+        for (int i = 1; i < poolSize; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.compressor = CompletableFuture.runAsync(this::compressLoop, executor);
+    }
+
+    @Override
+    public ByteBuffer write(ByteBuffer buffer) throws IOException {
+        try {
+            filled.put(buffer);
+            ByteBuffer next;
+            // 압축 스레드가 실패하면 더 이상 버퍼가 반환되지 않으므로 주기적으로 확인
+            while ((next = free.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (compressor.isDone()) {
+                    awaitCompressor();
+                    throw new IllegalStateException("compressor stopped");
+                }
+            }
+            return next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            filled.put(END);
+            awaitCompressor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void awaitCompressor() throws IOException {
+        try {
+            compressor.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void compressLoop() {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            while (true) {
+                ByteBuffer in = filled.take();
+                if (in == END) {
+                    break;
+                }
+                deflater.setInput(in);
+                while (!deflater.needsInput()) {
+                    deflater.deflate(out);
+                    drain();
+                }
+                in.clear();
+                free.put(in);
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflater.deflate(out);
+                drain();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void drain() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
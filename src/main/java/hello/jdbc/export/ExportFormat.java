@@ -0,0 +1,133 @@
+package hello.jdbc.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * member 테이블 추출 포맷
+ * CSV    : member_id,money\n (RFC 4180 - 콤마, 따옴표, 개행이 있는 member_id 는 따옴표로 감싸고 따옴표는 두번 쓴다)
+ * BINARY : [short idLength][id UTF-8 bytes][int money] (big endian)
+ */
+public enum ExportFormat {
+
+    CSV("csv") {
+        @Override
+        public void writeHeader(ByteBuffer buffer) {
+            putAscii(buffer, "member_id,money\n");
+        }
+
+        @Override
+        public boolean writeRow(ByteBuffer buffer, String memberId, int money) {
+            // 최악의 경우 : 문자당 3바이트 (따옴표는 2바이트) + 감싸는 따옴표 2 + 콤마 + int 최대 11자리 + 개행
+            if (buffer.remaining() < memberId.length() * 3 + 15) {
+                return false;
+            }
+            putCsvField(buffer, memberId);
+            buffer.put((byte) ',');
+            putInt(buffer, money);
+            buffer.put((byte) '\n');
+            return true;
+        }
+    },
+
+    BINARY("bin") {
+        @Override
+        public void writeHeader(ByteBuffer buffer) {
+            buffer.put(MAGIC);
+        }
+
+        @Override
+        public boolean writeRow(ByteBuffer buffer, String memberId, int money) {
+            if (buffer.remaining() < memberId.length() * 3 + 6) {
+                return false;
+            }
+            int lengthPosition = buffer.position();
+            buffer.putShort((short) 0);
+            int start = buffer.position();
+            putUtf8(buffer, memberId);
+            buffer.putShort(lengthPosition, (short) (buffer.position() - start));
+            buffer.putInt(money);
+            return true;
+        }
+    };
+
+    private static final byte[] MAGIC = {'M', 'B', 'R', '1'};
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 파티션 파일 맨 앞에 한번 기록
+     */
+    public abstract void writeHeader(ByteBuffer buffer);
+
+    /**
+     * 버퍼에 한 행을 기록한다. 공간이 부족하면 아무것도 쓰지 않고 false 를 반환한다.
+     */
+    public abstract boolean writeRow(ByteBuffer buffer, String memberId, int money);
+
+    private static void putAscii(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private static void putCsvField(ByteBuffer buffer, String value) {
+        if (!needsQuote(value)) {
+            putUtf8(buffer, value);
+            return;
+        }
+        buffer.put((byte) '"');
+        putUtf8(buffer, value.replace("\"", "\"\""));
+        buffer.put((byte) '"');
+    }
+
+    private static boolean needsQuote(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void putUtf8(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // ASCII 가 아닌 경우에만 byte[] 를 생성한다.
+                buffer.put(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    private static void putInt(ByteBuffer buffer, int value) {
+        // Integer.toString() 으로 String 을 만들지 않고 버퍼에 직접 숫자를 기록
+        if (value == Integer.MIN_VALUE) {
+            putAscii(buffer, "-2147483648");
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+            divisor /= 10;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package hello.jdbc.export;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 추출 결과 - 파티션별 파일과 행 수
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ExportResult {
+
+    private final List<Partition> partitions;
+    private final long elapsedMillis;
+
+    public long getTotalRows() {
+        return partitions.stream().mapToLong(Partition::getRows).sum();
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Partition {
+        private final Path file;
+        private final String fromId; // 포함, null 이면 처음부터
+        private final String toId;   // 미포함, null 이면 끝까지
+        private final long rows;
+    }
+}
@@ -0,0 +1,235 @@
+package hello.jdbc.export;
+
+import hello.jdbc.repository.exception.MyDbException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * member 테이블 스트리밍 추출
+ * forward-only 커서로 읽으면서 재사용하는 direct ByteBuffer 에 기록하고 FileChannel 로 내보낸다.
+ * 전체 결과를 메모리에 올리지 않으므로 메모리 사용량은 (파티션 수 x 버퍼 크기) 로 일정하다.
+ * member_id 범위로 파티션을 나누어 병렬로 추출한다.
+ */
+@Slf4j
+public class MemberExporter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int FETCH_SIZE = 1000;
+    // 압축시 파티션당 버퍼 수 (조회 1 + 압축 대기 2)
+    private static final int COMPRESS_POOL_SIZE = 3;
+
+    private final DataSource dataSource;
+    private final int bufferSize;
+
+    public MemberExporter(DataSource dataSource) {
+        this(dataSource, DEFAULT_BUFFER_SIZE);
+    }
+
+    public MemberExporter(DataSource dataSource, int bufferSize) {
+        this.dataSource = dataSource;
+        this.bufferSize = bufferSize;
+    }
+
+    public ExportResult export(Path directory, ExportFormat format, int partitions, boolean compress) {
+        long start = System.currentTimeMillis();
+        List<String> splitPoints = splitPoints(partitions);
+        int count = splitPoints.size() + 1;
+
+        ExecutorService readers = Executors.newFixedThreadPool(count);
+        ExecutorService compressors = compress ? Executors.newFixedThreadPool(count) : null;
+        try {
+            Files.createDirectories(directory);
+            List<Future<ExportResult.Partition>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String fromId = i == 0 ? null : splitPoints.get(i - 1);
+                String toId = i == count - 1 ? null : splitPoints.get(i);
+                Path file = directory.resolve(fileName(i, format, compress));
+                futures.add(readers.submit(() -> exportPartition(file, format, fromId, toId, compressors)));
+            }
+
+            List<ExportResult.Partition> result = new ArrayList<>();
+            for (Future<ExportResult.Partition> future : futures) {
+                result.add(future.get());
+            }
+            ExportResult exportResult = new ExportResult(result, System.currentTimeMillis() - start);
+            log.info("export done rows={}, partitions={}, elapsed={}ms",
+                    exportResult.getTotalRows(), count, exportResult.getElapsedMillis());
+            return exportResult;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            readers.shutdownNow();
+            if (compressors != null) {
+                compressors.shutdownNow();
+            }
+        }
+    }
+
+    private ExportResult.Partition exportPartition(Path file, ExportFormat format, String fromId, String toId,
+                                                   ExecutorService compressors) {
+        String sql = rangeSql(fromId, toId);
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        FileChannel channel = null;
+        ChunkWriter writer = null;
+        long rows = 0;
+
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            writer = compressors == null
+                    ? new ChannelChunkWriter(channel)
+                    : new CompressingChunkWriter(channel, bufferSize, COMPRESS_POOL_SIZE, compressors);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            format.writeHeader(buffer);
+
+            // 파티션마다 별도의 커넥션 사용 (트랜젝션 동기화 대상이 아님)
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(FETCH_SIZE);
+            int index = 1;
+            if (fromId != null) {
+                pstmt.setString(index++, fromId);
+            }
+            if (toId != null) {
+                pstmt.setString(index, toId);
+            }
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                String memberId = rs.getString(1);
+                int money = rs.getInt(2);
+                if (!format.writeRow(buffer, memberId, money)) {
+                    buffer.flip();
+                    buffer = writer.write(buffer);
+                    if (!format.writeRow(buffer, memberId, money)) {
+                        throw new IllegalStateException("row larger than buffer memberId=" + memberId);
+                    }
+                }
+                rows++;
+            }
+            buffer.flip();
+            writer.write(buffer);
+            // 압축 파이프라인의 마지막 블록까지 기록되어야 완료
+            writer.close();
+            writer = null;
+            return new ExportResult.Partition(file, fromId, toId, rows);
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+            closeQuietly(writer != null ? writer : channel);
+        }
+    }
+
+    /**
+     * member_id 분할 지점 조회
+     * 전체 건수를 partitions 로 나눈 위치의 member_id 를 PK 인덱스로 찾는다.
+     */
+    private List<String> splitPoints(int partitions) {
+        List<String> points = new ArrayList<>();
+        if (partitions <= 1) {
+            return points;
+        }
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement("select count(*) from member");
+            rs = pstmt.executeQuery();
+            rs.next();
+            long total = rs.getLong(1);
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+
+            pstmt = conn.prepareStatement("select member_id from member order by member_id limit 1 offset ?");
+            for (int i = 1; i < partitions; i++) {
+                pstmt.setLong(1, total * i / partitions);
+                rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    String point = rs.getString(1);
+                    // 건수가 적으면 같은 지점이 반복될 수 있다.
+                    if (points.isEmpty() || !points.get(points.size() - 1).equals(point)) {
+                        points.add(point);
+                    }
+                }
+                JdbcUtils.closeResultSet(rs);
+            }
+            rs = null;
+            return points;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private String rangeSql(String fromId, String toId) {
+        StringBuilder sql = new StringBuilder("select member_id, money from member");
+        if (fromId != null && toId != null) {
+            sql.append(" where member_id >= ? and member_id < ?");
+        } else if (fromId != null) {
+            sql.append(" where member_id >= ?");
+        } else if (toId != null) {
+            sql.append(" where member_id < ?");
+        }
+        return sql.append(" order by member_id").toString();
+    }
+
+    private String fileName(int partition, ExportFormat format, boolean compress) {
+        return "member-" + partition + "." + format.getExtension() + (compress ? ".z" : "");
+    }
+
+    /**
+     * finally 에서 호출 - 닫다가 난 예외(압축 작업의 RuntimeException 포함)가 원래 예외를 가리지 않도록 로그만 남긴다.
+     */
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("close error", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.groupcommit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 그룹 커밋 지표 - 커밋 수, 커밋당 이체 수
+ */
+public class GroupCommitMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAccumulator maxBatch = new LongAccumulator(Long::max, 0);
+
+    void committed(int batchSize) {
+        commits.increment();
+        transfers.add(batchSize);
+        maxBatch.accumulate(batchSize);
+    }
+
+    void failed() {
+        failures.increment();
+    }
+
+    void fallback() {
+        fallbacks.increment();
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    /**
+     * 커밋된 이체 수
+     */
+    public long getTransfers() {
+        return transfers.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * 그룹 트랜젝션이 실패해서 한 건씩 다시 실행한 횟수
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    public long getMaxBatch() {
+        return maxBatch.get();
+    }
+
+    public double getMeanBatch() {
+        long commits = getCommits();
+        return commits == 0 ? 0 : (double) getTransfers() / commits;
+    }
+
+    public double getCommitsPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : getCommits() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("commits=%d transfers=%d failures=%d fallbacks=%d meanBatch=%.1f maxBatch=%d commits/s=%.0f",
+                getCommits(), getTransfers(), getFailures(), getFallbacks(), getMeanBatch(), getMaxBatch(),
+                getCommitsPerSecond());
+    }
+}
@@ -0,0 +1,221 @@
+package hello.jdbc.groupcommit;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.service.TransferService;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 그룹 커밋 이체
+ *
+ * 이체마다 트랜젝션을 시작/커밋(로그 flush)하지 않고, 동시에 들어온 이체를 최대 maxWait 동안 모아서
+ * 트랜젝션 하나로 처리한다.
+ * 1. 관련 회원을 member_id 순서로 한번에 잠근다. (findAllByIdForUpdate)
+ * 2. 이체를 도착 순서대로 검증한다. 실패한 이체는 그룹에서 빼고 호출한 쪽에 예외로 알려준다.
+ * 3. 남은 이체를 회원별 증감으로 합쳐서 money = money + ? 배치 한번으로 반영하고 커밋한다.
+ * 그룹 트랜젝션 자체가 실패하면 이체를 한 건씩 다시 실행해서 원인이 된 이체만 실패시킨다.
+ */
+@Slf4j
+public class GroupCommitTransferService implements TransferService, AutoCloseable {
+
+    private static final Request STOP = new Request(null, null, 0);
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate txTemplate;
+    private final long maxWaitNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final GroupCommitMetrics metrics = new GroupCommitMetrics();
+    private final Thread committer;
+
+    public GroupCommitTransferService(MemberRepository memberRepository, PlatformTransactionManager transactionManager,
+                                      Duration maxWait, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        this.memberRepository = memberRepository;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxBatch = maxBatch;
+        this.committer = new Thread(this::run, "group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        TransferValidator.requireDistinct(fromId, toId);
+        Request request = new Request(fromId, toId, money);
+        queue.add(request);
+        try {
+            request.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("이체 대기 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public GroupCommitMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 이미 들어온 이체를 처리하고 종료한다.
+     */
+    @Override
+    public void close() {
+        queue.add(STOP);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Request> group = new ArrayList<>(maxBatch);
+        try {
+            while (true) {
+                Request first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                group.add(first);
+                // 첫 이체가 도착한 후 maxWait 까지 모은다.
+                long deadline = System.nanoTime() + maxWaitNanos;
+                boolean stop = false;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    group.add(next);
+                }
+                process(group);
+                group.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(List<Request> group) {
+        List<Request> accepted = new ArrayList<>(group.size());
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                accepted.clear();
+                accepted.addAll(applyGroup(group));
+            });
+        } catch (RuntimeException e) {
+            // 검증으로 걸러지지 않은 실패 (DB 오류 등) : 한 건씩 다시 실행해서 원인인 이체만 실패시킨다.
+            log.warn("group commit failed, rerun one by one size={}", group.size(), e);
+            metrics.fallback();
+            for (Request request : group) {
+                if (!request.future.isDone()) {
+                    processSingle(request);
+                }
+            }
+            return;
+        }
+        metrics.committed(accepted.size());
+        for (Request request : accepted) {
+            request.future.complete(null);
+        }
+    }
+
+    private void processSingle(Request request) {
+        try {
+            List<Request> accepted = txTemplate.execute(status -> applyGroup(List.of(request)));
+            if (!accepted.isEmpty()) {
+                metrics.committed(1);
+                request.future.complete(null);
+            }
+        } catch (RuntimeException e) {
+            fail(request, e);
+        }
+    }
+
+    /**
+     * 트랜젝션 안에서 실행 - 검증을 통과한 이체를 반영하고 반환한다. 실패한 이체는 바로 완료(예외)시킨다.
+     */
+    private List<Request> applyGroup(List<Request> group) {
+        TreeSet<String> memberIds = new TreeSet<>();
+        for (Request request : group) {
+            memberIds.add(request.fromId);
+            memberIds.add(request.toId);
+        }
+        Set<String> existing = new HashSet<>();
+        for (Member member : memberRepository.findAllByIdForUpdate(memberIds)) {
+            existing.add(member.getMemberId());
+        }
+
+        SortedMap<String, Integer> deltas = new TreeMap<>();
+        List<Request> accepted = new ArrayList<>(group.size());
+        for (Request request : group) {
+            RuntimeException failure = TransferValidator.check(request.fromId, request.toId, existing::contains);
+            if (failure != null) {
+                fail(request, failure);
+                continue;
+            }
+            deltas.merge(request.fromId, -request.money, Integer::sum);
+            deltas.merge(request.toId, request.money, Integer::sum);
+            accepted.add(request);
+        }
+        // 증감이 0 인 회원은 수정하지 않는다.
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            memberRepository.addMoneyAll(deltas);
+        }
+        return accepted;
+    }
+
+    private void fail(Request request, RuntimeException failure) {
+        metrics.failed();
+        request.future.completeExceptionally(failure);
+    }
+
+    private static class Request {
+
+        final String fromId;
+        final String toId;
+        final int money;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Request(String fromId, String toId, int money) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package hello.jdbc.hotaccount;
+
+import hello.jdbc.aggregate.BalanceAggregates;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 입금이 몰리는 회원(hot account)의 분할 잔액 (member_stripe)
+ *
+ * 입금은 member 행 대신 stripe 행 하나에 더하므로, 같은 회원에게 동시에 입금해도 서로 다른 행 락을 잡는다.
+ * 잔액 = member.money + sum(member_stripe.money)
+ *
+ * - designated : 분할 대상으로 지정된 회원과 stripe 수 (설정)
+ * - active     : 지금 stripe 행이 있는 회원 (생성 시 DB 에서 읽는다)
+ * 지정된 회원도 부하가 낮을 때는 stripe 를 합쳐서 한 행으로 돌아간다. (HotAccounts.rebalance)
+ *
+ * 락 순서 : 회원은 member_id 순서, 한 회원 안에서는 member 행 -> stripe 행(stripe 순서)
+ * 변경 메소드는 트랜젝션 안에서 호출해야 한다.
+ */
+@Slf4j
+public class HotAccountStripes {
+
+    // member_id, 합산 잔액, version
+    private static final RowMapper<Member> TOTAL_MEMBER_ROW_MAPPER =
+            (rs, rowNum) -> new Member(rs.getString(1), rs.getInt(2), rs.getLong(3));
+    private static final String TOTAL_SQL = "select m.member_id,"
+            + " m.money + coalesce((select sum(s.money) from member_stripe s where s.member_id = m.member_id), 0),"
+            + " m.version from member m where m.member_id = ?";
+
+    private final JdbcTemplate template;
+    private final ConcurrentMap<String, Integer> designated = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> active = new ConcurrentHashMap<>();
+    // 지정된 회원별 입금 횟수 (rebalance 할 때마다 초기화)
+    private final ConcurrentMap<String, LongAdder> credits = new ConcurrentHashMap<>();
+
+    public HotAccountStripes(DataSource dataSource) {
+        MemberSchema.ensure(dataSource);
+        BalanceAggregates.requireUnaggregated(dataSource, "HotAccountStripes");
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+        template.query("select member_id, count(*) from member_stripe group by member_id", rs -> {
+            active.put(rs.getString(1), rs.getInt(2));
+        });
+    }
+
+    public boolean isActive(String memberId) {
+        return active.containsKey(memberId);
+    }
+
+    public int stripesOf(String memberId) {
+        return active.getOrDefault(memberId, 0);
+    }
+
+    public Set<String> getDesignated() {
+        return designated.keySet();
+    }
+
+    void designate(String memberId, int stripes) {
+        designated.put(memberId, stripes);
+        credits.putIfAbsent(memberId, new LongAdder());
+    }
+
+    void undesignate(String memberId) {
+        designated.remove(memberId);
+        credits.remove(memberId);
+    }
+
+    int designatedStripes(String memberId) {
+        return designated.getOrDefault(memberId, 0);
+    }
+
+    long takeCredits(String memberId) {
+        LongAdder adder = credits.get(memberId);
+        return adder == null ? 0 : adder.sumThenReset();
+    }
+
+    void activate(String memberId, int stripes) {
+        active.put(memberId, stripes);
+    }
+
+    void deactivate(String memberId) {
+        active.remove(memberId);
+    }
+
+    /**
+     * 입금 - 분할된 회원이면 stripe 행 하나에만 더한다.
+     * stripe 가 없으면 (그 사이 합쳐졌으면) member 행에 더한다.
+     */
+    void credit(String memberId, int money, StripeSelection selection) {
+        LongAdder adder = credits.get(memberId);
+        if (adder != null) {
+            adder.increment();
+        }
+        int stripes = stripesOf(memberId);
+        if (stripes > 0) {
+            int rows = template.update("update member_stripe set money = money + ? where member_id = ? and stripe = ?",
+                    money, memberId, selection.select(stripes));
+            if (rows > 0) {
+                return;
+            }
+        }
+        addBase(memberId, money);
+    }
+
+    /**
+     * 출금 - member 행 잔액이 부족하면 모자란 만큼 stripe 에서 가져온다.
+     * 그래도 부족하면 member 행이 음수가 된다. (MemberServiceV4 와 같이 잔액 검사는 하지 않는다)
+     */
+    void debit(String memberId, int money) {
+        if (!isActive(memberId)) {
+            addBase(memberId, -money);
+            return;
+        }
+        int base = lockBase(memberId);
+        int needed = money - Math.max(base, 0);
+        int moved = 0;
+        if (needed > 0) {
+            for (int[] stripe : lockStripes(memberId)) {
+                int take = Math.min(needed, stripe[1]);
+                if (take <= 0) {
+                    continue;
+                }
+                template.update("update member_stripe set money = money - ? where member_id = ? and stripe = ?",
+                        take, memberId, stripe[0]);
+                needed -= take;
+                moved += take;
+                if (needed == 0) {
+                    break;
+                }
+            }
+        }
+        addBase(memberId, moved - money);
+    }
+
+    /**
+     * stripe 잔액을 member 행으로 모은다. stripe 행은 0 으로 남는다.
+     * 옮긴 금액이 있으면 member.version 이 올라간다. (합산 잔액으로 읽은 낙관적 락 수정은 다시 읽어야 한다)
+     *
+     * @return member 행으로 옮긴 금액
+     */
+    int fold(String memberId) {
+        lockBase(memberId);
+        int sum = 0;
+        for (int[] stripe : lockStripes(memberId)) {
+            sum = Math.addExact(sum, stripe[1]);
+        }
+        if (sum != 0) {
+            template.update("update member_stripe set money = 0 where member_id = ?", memberId);
+            addBase(memberId, sum);
+        }
+        return sum;
+    }
+
+    /**
+     * stripe 행 생성 - 이미 있는 stripe 는 그대로 둔다.
+     */
+    void createStripes(String memberId, int stripes) {
+        lockBase(memberId);
+        template.update("insert into member_stripe(member_id, stripe)"
+                        + " select ?, x from system_range(0, ?)"
+                        + " where x not in (select stripe from member_stripe where member_id = ?)",
+                memberId, stripes - 1, memberId);
+    }
+
+    /**
+     * stripe 잔액을 member 행으로 모으고 stripe 행을 삭제한다.
+     */
+    int dropStripes(String memberId) {
+        int folded = fold(memberId);
+        template.update("delete from member_stripe where member_id = ?", memberId);
+        return folded;
+    }
+
+    public Member findTotal(String memberId) {
+        return template.queryForObject(TOTAL_SQL, TOTAL_MEMBER_ROW_MAPPER, memberId);
+    }
+
+    public Optional<Member> findOptionalTotal(String memberId) {
+        return template.query(TOTAL_SQL, rs -> rs.next()
+                ? Optional.of(TOTAL_MEMBER_ROW_MAPPER.mapRow(rs, 0))
+                : Optional.<Member>empty(), memberId);
+    }
+
+    public OptionalInt findTotalMoney(String memberId) {
+        return template.query(TOTAL_SQL, rs -> rs.next() ? OptionalInt.of(rs.getInt(2)) : OptionalInt.empty(), memberId);
+    }
+
+    private void addBase(String memberId, int money) {
+        int rows = template.update("update member set money = money + ?, version = version + 1 where member_id = ?",
+                money, memberId);
+        if (rows == 0) {
+            throw TransferValidator.memberNotFound(memberId);
+        }
+    }
+
+    private int lockBase(String memberId) {
+        OptionalInt money = template.query("select money from member where member_id = ? for update",
+                rs -> rs.next() ? OptionalInt.of(rs.getInt(1)) : OptionalInt.empty(), memberId);
+        if (money.isEmpty()) {
+            throw TransferValidator.memberNotFound(memberId);
+        }
+        return money.getAsInt();
+    }
+
+    /**
+     * @return [stripe, money] stripe 순서
+     */
+    private List<int[]> lockStripes(String memberId) {
+        List<int[]> stripes = new ArrayList<>();
+        template.query("select stripe, money from member_stripe where member_id = ? order by stripe for update",
+                rs -> {
+                    stripes.add(new int[]{rs.getInt(1), rs.getInt(2)});
+                }, memberId);
+        return stripes;
+    }
+}
@@ -0,0 +1,51 @@
+package hello.jdbc.hotaccount;
+
+import hello.jdbc.service.TransferService;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 분할 잔액을 사용하는 이체
+ *
+ * 분할된 회원(HotAccountStripes.isActive)으로의 입금은 member 행 대신 stripe 행 하나만 잠그므로
+ * 입금이 한 회원에게 몰려도 stripe 수 만큼 동시에 커밋할 수 있다.
+ * 분할된 회원의 출금은 member 행을 잠그고, 잔액이 부족하면 stripe 에서 가져온다.
+ * 분할되지 않은 회원은 money = money + ? 로 member 행을 바로 수정한다.
+ *
+ * 두 회원은 member_id 순서로 처리해서 락 순서를 맞춘다.
+ */
+@Slf4j
+public class HotAccountTransferService implements TransferService {
+
+    private final HotAccountStripes stripes;
+    private final TransactionTemplate txTemplate;
+    private final StripeSelection selection;
+
+    public HotAccountTransferService(HotAccountStripes stripes, PlatformTransactionManager transactionManager,
+                                     StripeSelection selection) {
+        this.stripes = stripes;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.selection = selection;
+    }
+
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        TransferValidator.requireDistinct(fromId, toId);
+        txTemplate.executeWithoutResult(status -> {
+            if (fromId.compareTo(toId) < 0) {
+                stripes.debit(fromId, money);
+                credit(toId, money);
+            } else {
+                credit(toId, money);
+                stripes.debit(fromId, money);
+            }
+        });
+    }
+
+    private void credit(String toId, int money) {
+        TransferValidator.requireReceivable(toId);
+        stripes.credit(toId, money, selection);
+    }
+}
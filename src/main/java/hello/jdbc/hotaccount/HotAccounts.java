@@ -0,0 +1,114 @@
+package hello.jdbc.hotaccount;
+
+import hello.jdbc.support.PeriodicTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 분할 대상 회원 지정, 부하에 따른 분할/합치기
+ *
+ * rebalance 는 직전 rebalance 이후 입금 횟수를 보고
+ * - 분할된 회원의 입금이 minCredits 미만이면 stripe 를 member 행으로 합치고 stripe 행을 삭제한다.
+ * - 합쳐진 회원의 입금이 다시 minCredits 이상이면 stripe 행을 만든다.
+ * 합친 회원은 조회(합산 쿼리)와 출금이 다시 member 행 하나만 읽는다.
+ */
+@Slf4j
+public class HotAccounts {
+
+    private final HotAccountStripes stripes;
+    private final TransactionTemplate txTemplate;
+    private final long minCredits;
+
+    private final PeriodicTask scheduler = new PeriodicTask("hot-account-rebalance", this::rebalance);
+
+    public HotAccounts(HotAccountStripes stripes, PlatformTransactionManager transactionManager, long minCredits) {
+        this.stripes = stripes;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.minCredits = minCredits;
+    }
+
+    /**
+     * 분할 대상으로 지정하고 바로 stripe 행을 만든다.
+     */
+    public void designate(String memberId, int stripeCount) {
+        if (stripeCount < 2) {
+            throw new IllegalArgumentException("stripeCount must be at least 2");
+        }
+        stripes.designate(memberId, stripeCount);
+        split(memberId, stripeCount);
+    }
+
+    /**
+     * 지정 해제 - stripe 잔액을 member 행으로 합친다.
+     */
+    public void undesignate(String memberId) {
+        stripes.undesignate(memberId);
+        if (stripes.isActive(memberId)) {
+            merge(memberId);
+        }
+    }
+
+    /**
+     * stripe 잔액을 member 행으로 모은다. (stripe 행은 유지)
+     *
+     * @return 옮긴 금액
+     */
+    public int consolidate(String memberId) {
+        return txTemplate.execute(status -> stripes.fold(memberId));
+    }
+
+    /**
+     * @return 합친 회원
+     */
+    public List<String> rebalance() {
+        List<String> merged = new ArrayList<>();
+        for (String memberId : stripes.getDesignated()) {
+            long credits = stripes.takeCredits(memberId);
+            boolean active = stripes.isActive(memberId);
+            if (active && credits < minCredits) {
+                log.info("hot account idle, merge stripes memberId={}, credits={}", memberId, credits);
+                merge(memberId);
+                merged.add(memberId);
+            } else if (!active && credits >= minCredits) {
+                log.info("hot account busy, split memberId={}, credits={}", memberId, credits);
+                split(memberId, stripes.designatedStripes(memberId));
+            }
+        }
+        return merged;
+    }
+
+    public void start(Duration period) {
+        scheduler.start(period);
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+
+    private void split(String memberId, int stripeCount) {
+        if (stripeCount == 0) {
+            // 그 사이 지정 해제됨
+            return;
+        }
+        txTemplate.executeWithoutResult(status -> stripes.createStripes(memberId, stripeCount));
+        // 커밋된 후에 입금 대상으로 사용한다.
+        stripes.activate(memberId, stripeCount);
+    }
+
+    private void merge(String memberId) {
+        // 먼저 입금 대상에서 빼고 합친다. 이미 stripe 를 고른 입금은 stripe 행 락을 기다린 후 member 행에 더한다.
+        int stripeCount = stripes.stripesOf(memberId);
+        stripes.deactivate(memberId);
+        try {
+            txTemplate.executeWithoutResult(status -> stripes.dropStripes(memberId));
+        } catch (RuntimeException e) {
+            stripes.activate(memberId, stripeCount);
+            throw e;
+        }
+    }
+}
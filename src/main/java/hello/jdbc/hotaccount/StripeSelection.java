@@ -0,0 +1,31 @@
+package hello.jdbc.hotaccount;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 입금할 stripe 선택
+ */
+public enum StripeSelection {
+
+    /**
+     * 매번 무작위 - 스레드 수와 무관하게 고르게 나뉜다.
+     */
+    RANDOM {
+        @Override
+        int select(int stripes) {
+            return ThreadLocalRandom.current().nextInt(stripes);
+        }
+    },
+
+    /**
+     * 스레드마다 같은 stripe - 스레드 수 <= stripe 수이면 서로 다른 스레드가 같은 행을 기다리는 일이 거의 없다.
+     */
+    THREAD_AFFINE {
+        @Override
+        int select(int stripes) {
+            return (int) (Thread.currentThread().getId() % stripes);
+        }
+    };
+
+    abstract int select(int stripes);
+}
@@ -0,0 +1,142 @@
+package hello.jdbc.hotaccount;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.UpsertResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+
+/**
+ * 분할 잔액을 합산해서 보여주는 리포지토리 (데코레이터)
+ *
+ * 분할된 회원의 단건 조회(findById, findOptionalById, findMoneyById)는 member.money + sum(stripe) 를 쿼리 한번으로 읽는다.
+ * 잔액을 덮어쓰는 변경(update, upsert)은 같은 트랜젝션에서 stripe 를 member 행으로 먼저 모은다.
+ * 그 외 회원은 delegate 를 그대로 호출한다.
+ *
+ * 범위/상위 조회, scan, findAllByIdForUpdate 는 member 행의 money 만 본다.
+ * 정확한 합계가 필요하면 HotAccounts.consolidate 후에 조회한다.
+ * 삭제하면 stripe 행도 같이 삭제된다. (on delete cascade)
+ */
+public class StripedMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final HotAccountStripes stripes;
+    private final TransactionTemplate transactionTemplate;
+
+    public StripedMemberRepository(MemberRepository delegate, HotAccountStripes stripes,
+                                   PlatformTransactionManager transactionManager) {
+        this.delegate = delegate;
+        this.stripes = stripes;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Member save(Member member) {
+        return delegate.save(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return stripes.isActive(memberId) ? stripes.findTotal(memberId) : delegate.findById(memberId);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return stripes.isActive(memberId) ? stripes.findOptionalTotal(memberId) : delegate.findOptionalById(memberId);
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        return delegate.existsById(memberId);
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        return stripes.isActive(memberId) ? stripes.findTotalMoney(memberId) : delegate.findMoneyById(memberId);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        if (!stripes.isActive(memberId)) {
+            delegate.update(memberId, money);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            stripes.fold(memberId);
+            delegate.update(memberId, money);
+        });
+    }
+
+    /**
+     * 읽은 후 stripe 에 입금이 있었으면 fold 가 version 을 올리므로 낙관적 락 예외가 난다. (입금이 덮어써지지 않는다)
+     */
+    @Override
+    public void update(Member member) {
+        if (!stripes.isActive(member.getMemberId())) {
+            delegate.update(member);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            stripes.fold(member.getMemberId());
+            delegate.update(member);
+        });
+    }
+
+    @Override
+    public void delete(String memberId) {
+        delegate.delete(memberId);
+    }
+
+    @Override
+    public UpsertResult upsert(Member member) {
+        if (!stripes.isActive(member.getMemberId())) {
+            return delegate.upsert(member);
+        }
+        return transactionTemplate.execute(status -> {
+            stripes.fold(member.getMemberId());
+            return delegate.upsert(member);
+        });
+    }
+
+    @Override
+    public List<UpsertResult> upsertAll(Collection<Member> members) {
+        for (Member member : members) {
+            if (stripes.isActive(member.getMemberId())) {
+                // 분할된 회원이 섞여 있으면 한 트랜젝션 안에서 한 건씩 처리
+                return transactionTemplate.execute(status -> MemberRepository.super.upsertAll(members));
+            }
+        }
+        return delegate.upsertAll(members);
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        return delegate.findByMoneyBetween(minMoney, maxMoney, consumer);
+    }
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        return delegate.findTopByMoney(n);
+    }
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        return delegate.findAllByIdForUpdate(memberIds);
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        return delegate.scanRange(fromId, toId, consumer);
+    }
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return delegate.sampleMemberIds(sampleSize);
+    }
+}
@@ -0,0 +1,82 @@
+package hello.jdbc.idempotency;
+
+import hello.jdbc.metrics.LatencyRecorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 멱등 이체 지표 - 중복 비율, 키 확인 시간
+ */
+public class IdempotencyMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder windowHits = new LongAdder();
+    private final LongAdder insertDuplicates = new LongAdder();
+    private final LatencyRecorder windowLookup = new LatencyRecorder("idempotency.window");
+    private final LatencyRecorder keyInsert = new LatencyRecorder("idempotency.insert");
+
+    void request() {
+        requests.increment();
+    }
+
+    void applied() {
+        applied.increment();
+    }
+
+    void windowHit() {
+        windowHits.increment();
+    }
+
+    void insertDuplicate() {
+        insertDuplicates.increment();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /**
+     * 메모리에서 걸러낸 중복
+     */
+    public long getWindowHits() {
+        return windowHits.sum();
+    }
+
+    /**
+     * 키 insert 실패(PK 중복)로 걸러낸 중복
+     */
+    public long getInsertDuplicates() {
+        return insertDuplicates.sum();
+    }
+
+    public double getDuplicateRate() {
+        long requests = getRequests();
+        return requests == 0 ? 0 : (double) (getWindowHits() + getInsertDuplicates()) / requests;
+    }
+
+    /**
+     * 메모리 window 조회 시간
+     */
+    public LatencyRecorder getWindowLookup() {
+        return windowLookup;
+    }
+
+    /**
+     * 키 insert 시간 (성공, 중복 모두)
+     */
+    public LatencyRecorder getKeyInsert() {
+        return keyInsert;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d applied=%d windowHits=%d insertDuplicates=%d duplicateRate=%.3f %s %s",
+                getRequests(), getApplied(), getWindowHits(), getInsertDuplicates(), getDuplicateRate(),
+                windowLookup, keyInsert);
+    }
+}
@@ -0,0 +1,156 @@
+package hello.jdbc.idempotency;
+
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 멱등 키 이체
+ *
+ * 클라이언트가 타임아웃 후 같은 키로 다시 요청해도 이체는 한번만 실행된다.
+ * 1. 최근에 처리한 키는 메모리 window 에서 바로 DUPLICATE (DB 접근 없음)
+ * 2. window 에 없으면 트랜젝션 안에서 키를 먼저 insert 하고 이체한다. (쿼리 1번)
+ *    이미 있는 키면 insert 가 PK 중복으로 실패하므로 저장된 이체 내용을 조회해서 비교하고 이체하지 않는다. (DUPLICATE)
+ * 키와 이체가 같은 트랜젝션이므로 이체가 실패(롤백)하면 키도 남지 않고, 다시 요청하면 다시 실행한다.
+ * 같은 키로 동시에 요청하면 두번째 insert 는 첫번째가 커밋될 때까지 기다린 후 실패한다.
+ *
+ * delegate 는 트랜젝션에 참여해야 한다. (@Transactional 프록시 또는 DataSourceUtils 를 쓰는 리포지토리)
+ * window 는 커밋된 키와 이체 내용을 최근 windowSize 건만 가진다.
+ * 같은 키로 내용이 다른 요청은 window 에 있든 DB 에만 있든 IllegalArgumentException 으로 거절한다.
+ */
+@Slf4j
+public class IdempotentTransferService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final TransferService delegate;
+    private final JdbcTemplate template;
+    private final TransactionTemplate txTemplate;
+    private final IdempotencyMetrics metrics = new IdempotencyMetrics();
+    // 삽입 순서대로 오래된 키부터 밀려난다. (this 로 보호)
+    private final LinkedHashMap<String, Transfer> window;
+
+    public IdempotentTransferService(TransferService delegate, DataSource dataSource,
+                                     PlatformTransactionManager transactionManager, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        MemberSchema.ensure(dataSource);
+        this.delegate = delegate;
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.window = new LinkedHashMap<>(windowSize * 4 / 3 + 1) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Transfer> eldest) {
+                return size() > windowSize;
+            }
+        };
+    }
+
+    public TransferOutcome accountTransfer(String idempotencyKey, String fromId, String toId, int money) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("idempotencyKey must be 1 ~ " + MAX_KEY_LENGTH + " characters");
+        }
+        metrics.request();
+        Transfer transfer = new Transfer(fromId, toId, money);
+
+        long lookupStart = System.nanoTime();
+        Transfer seen;
+        synchronized (this) {
+            seen = window.get(idempotencyKey);
+        }
+        metrics.getWindowLookup().recordSince(lookupStart);
+        if (seen != null) {
+            requireSameTransfer(idempotencyKey, seen, transfer);
+            metrics.windowHit();
+            return TransferOutcome.DUPLICATE;
+        }
+
+        // null 이면 이번에 키를 넣고 이체했다.
+        Transfer stored = txTemplate.execute(status -> {
+            Transfer existing = insertKey(idempotencyKey, transfer);
+            if (existing == null) {
+                delegate.accountTransfer(fromId, toId, money);
+            }
+            return existing;
+        });
+        // 커밋된 후에 window 에 넣는다. (중복이어도 다음 재시도는 메모리에서 끝난다)
+        synchronized (this) {
+            window.put(idempotencyKey, stored == null ? transfer : stored);
+        }
+        if (stored == null) {
+            metrics.applied();
+            return TransferOutcome.APPLIED;
+        }
+        metrics.insertDuplicate();
+        requireSameTransfer(idempotencyKey, stored, transfer);
+        return TransferOutcome.DUPLICATE;
+    }
+
+    /**
+     * retention 보다 오래된 키 삭제
+     * 그 이후에 같은 키로 다시 요청하면 새 이체로 처리된다. (클라이언트 재시도 기간보다 길게 잡는다)
+     *
+     * @return 삭제한 키 수
+     */
+    public int deleteExpired(Duration retention) {
+        // created_at 과 같은 DB 시계로 비교한다.
+        return template.update("delete from transfer_idempotency where created_at < dateadd('MILLISECOND', ?, current_timestamp)",
+                -retention.toMillis());
+    }
+
+    public IdempotencyMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static void requireSameTransfer(String idempotencyKey, Transfer stored, Transfer transfer) {
+        if (!stored.equals(transfer)) {
+            throw new IllegalArgumentException("같은 키로 다른 이체를 요청했습니다. idempotencyKey=" + idempotencyKey);
+        }
+    }
+
+    /**
+     * @return 키를 넣었으면 null, 이미 있는 키면 저장된 이체 내용
+     */
+    private Transfer insertKey(String idempotencyKey, Transfer transfer) {
+        String sql = "insert into transfer_idempotency(idempotency_key, from_id, to_id, money) values (?, ?, ?, ?)";
+
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                template.update(sql, idempotencyKey, transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+                return null;
+            } catch (DuplicateKeyException e) {
+                // 중복일 때만 한번 더 읽는다.
+                Transfer stored = findStored(idempotencyKey);
+                if (stored != null) {
+                    return stored;
+                }
+                // 그 사이에 deleteExpired 로 지워졌으면 새 요청으로 다시 insert
+            } finally {
+                metrics.getKeyInsert().recordSince(start);
+            }
+        }
+    }
+
+    private Transfer findStored(String idempotencyKey) {
+        String sql = "select from_id, to_id, money from transfer_idempotency where idempotency_key = ?";
+        List<Transfer> stored = template.query(sql,
+                (rs, rowNum) -> new Transfer(rs.getString("from_id"), rs.getString("to_id"), rs.getInt("money")),
+                idempotencyKey);
+        return stored.isEmpty() ? null : stored.get(0);
+    }
+}
@@ -0,0 +1,17 @@
+package hello.jdbc.idempotency;
+
+/**
+ * 멱등 이체 결과
+ */
+public enum TransferOutcome {
+
+    /**
+     * 이번 요청으로 이체했다.
+     */
+    APPLIED,
+
+    /**
+     * 같은 키로 이미 이체했다. (아무것도 하지 않음)
+     */
+    DUPLICATE
+}
@@ -0,0 +1,167 @@
+package hello.jdbc.idgen;
+
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.MyDbException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hi/Lo 방식 member_id 생성기
+ * DB 시퀀스에서 hi 값을 한번 받아오면 [hi * blockSize, (hi + 1) * blockSize) 범위를 메모리에서 발급한다.
+ * - DB 왕복은 블록당 1번
+ * - 블록 안에서는 AtomicLong 증가만 하므로 락이 없다.
+ * - 시퀀스가 hi 값을 중복 발급하지 않으므로 여러 애플리케이션 인스턴스에서도 유일하다.
+ * 랜덤 값을 붙여서 재시도하는 방식(키 중복 -> 예외 변환 -> 재저장)이 필요 없어진다.
+ * <p>
+ * 시퀀스(member_id_seq)는 schema.sql 에서 만든다.
+ * 같은 시퀀스를 쓰는 생성기는 모두 같은 blockSize 여야 한다. (다르면 hi * blockSize 범위가 겹친다)
+ * 처음 사용한 blockSize 를 member_id_block 에 기록하고, 다른 blockSize 로 만들면 IllegalArgumentException 을 던진다.
+ */
+@Slf4j
+public class MemberIdGenerator {
+
+    private static final String SEQUENCE = "member_id_seq";
+    private static final int MAX_ID_LENGTH = 10; // member.member_id varchar(10)
+
+    private final DataSource dataSource;
+    private final int blockSize;
+    private final String prefix;
+
+    private volatile Block block = Block.EXHAUSTED;
+
+    public MemberIdGenerator(DataSource dataSource, int blockSize, String prefix) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        MemberSchema.ensure(dataSource);
+        this.dataSource = dataSource;
+        this.blockSize = blockSize;
+        this.prefix = prefix;
+        checkBlockSize();
+    }
+
+    /**
+     * 시퀀스에 기록된 blockSize 와 같은지 확인 (없으면 기록)
+     */
+    private void checkBlockSize() {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement("insert into member_id_block(sequence_name, block_size) " +
+                    "select ?, ? where not exists (select 1 from member_id_block where sequence_name = ?)");
+            pstmt.setString(1, SEQUENCE);
+            pstmt.setInt(2, blockSize);
+            pstmt.setString(3, SEQUENCE);
+            try {
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                // 동시에 다른 생성기가 먼저 기록했으면 PK 중복 (h2 db duplicate error code : 23505), 아래에서 기록된 값과 비교한다.
+                if (e.getErrorCode() != 23505) {
+                    throw e;
+                }
+            }
+            JdbcUtils.closeStatement(pstmt);
+
+            pstmt = conn.prepareStatement("select block_size from member_id_block where sequence_name = ?");
+            pstmt.setString(1, SEQUENCE);
+            rs = pstmt.executeQuery();
+            rs.next();
+            int registered = rs.getInt(1);
+            if (registered != blockSize) {
+                throw new IllegalArgumentException("blockSize must be " + registered + " for " + SEQUENCE + " but was " + blockSize);
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    public long nextId() {
+        while (true) {
+            Block current = block;
+            long id = current.next();
+            if (id >= 0) {
+                return id;
+            }
+            refill(current);
+        }
+    }
+
+    public String nextMemberId() {
+        String memberId = prefix + nextId();
+        if (memberId.length() > MAX_ID_LENGTH) {
+            throw new IllegalStateException("member id overflow memberId = " + memberId);
+        }
+        return memberId;
+    }
+
+    /**
+     * 블록이 소진되었을 때만 진입 (slow path)
+     */
+    private synchronized void refill(Block exhausted) {
+        if (block != exhausted) {
+            // 다른 스레드가 이미 새 블록을 받아왔다.
+            return;
+        }
+        long hi = nextHi();
+        long start = Math.multiplyExact(hi, (long) blockSize);
+        block = new Block(start, start + blockSize);
+        log.info("reserve id block [{}, {})", start, start + blockSize);
+    }
+
+    private long nextHi() {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            // 호출한 쪽의 트랜젝션과 무관하게 별도 커넥션 사용 (시퀀스는 롤백되지 않는다)
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("select next value for " + SEQUENCE);
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private static class Block {
+
+        static final Block EXHAUSTED = new Block(0, 0);
+
+        private final AtomicLong next;
+        private final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+
+        /**
+         * @return 발급할 id, 소진되었으면 -1
+         */
+        long next() {
+            long id = next.getAndIncrement();
+            return id < end ? id : -1;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package hello.jdbc.journal;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.UpsertResult;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+
+/**
+ * 저널 모드 리포지토리 (데코레이터)
+ *
+ * 단건 조회(findById, findOptionalById, findMoneyById)는 스냅샷 + 미반영 저널로 현재 잔액을 돌려준다.
+ * 잔액을 정하는 변경(update, upsert)은 member 행을 덮어쓰지 않고 차액을 조정 저널로 추가한다.
+ * (덮어쓰면 아직 반영되지 않은 저널이 나중에 한번 더 더해진다)
+ * 조회한 version 은 member.version + 미반영 저널 수이고, 이체마다 증가하므로 update(Member) 의 낙관적 락에 쓴다.
+ *
+ * 범위/상위 조회, scan, findAllByIdForUpdate 는 스냅샷(member.money)만 본다.
+ * 정확한 값이 필요하면 JournalRollup.rollUp 후에 조회한다.
+ */
+public class JournalMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final TransferJournal journal;
+    private final TransactionTemplate transactionTemplate;
+
+    public JournalMemberRepository(MemberRepository delegate, TransferJournal journal,
+                                   PlatformTransactionManager transactionManager) {
+        this.delegate = delegate;
+        this.journal = journal;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Member save(Member member) {
+        return delegate.save(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return journal.findBalanceById(memberId);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return journal.findBalance(memberId);
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        return delegate.existsById(memberId);
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        return journal.findMoney(memberId);
+    }
+
+    /**
+     * 잔액을 money 로 맞추는 조정 저널 추가
+     * member 행을 잠그고 계산하므로 update 끼리, 스냅샷 반영과는 겹치지 않는다.
+     * 조회와 추가 사이에 들어온 이체는 MemberServiceV4 의 조회 후 수정과 같이 덮어써진다.
+     */
+    @Override
+    public void update(String memberId, int money) {
+        transactionTemplate.executeWithoutResult(status -> adjustTo(memberId, money));
+    }
+
+    /**
+     * 낙관적 락 수정 - 조회 이후 이체나 조정 저널이 추가되었으면 version 이 달라진다.
+     * 확인한 잔액과의 차액을 조정 저널로 추가하므로, 확인 이후에 커밋된 이체는 이 수정 다음에 적용된 것으로 남는다.
+     */
+    @Override
+    public void update(Member member) {
+        transactionTemplate.executeWithoutResult(status -> {
+            String memberId = member.getMemberId();
+            delegate.findAllByIdForUpdate(List.of(memberId));
+            Member current = journal.findBalance(memberId)
+                    .filter(found -> found.getVersion() == member.getVersion())
+                    .orElseThrow(() -> new OptimisticLockingFailureException("member changed concurrently memberId = "
+                            + memberId + ", version = " + member.getVersion()));
+            // 잔액이 같아도 조정 저널을 남겨서 version 을 1 올린다.
+            journal.adjust(memberId, Math.subtractExact(member.getMoney(), current.getMoney()));
+            member.setVersion(member.getVersion() + 1);
+        });
+    }
+
+    /**
+     * 미반영 저널을 먼저 반영하고 삭제한다. (같은 트랜젝션)
+     * 삭제와 동시에 커밋된 이체는 다음 JournalRollup 이 상대 회원 쪽만 반영한다.
+     */
+    @Override
+    public void delete(String memberId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            journal.rollUpMember(memberId);
+            delegate.delete(memberId);
+        });
+    }
+
+    @Override
+    public UpsertResult upsert(Member member) {
+        return transactionTemplate.execute(status -> {
+            if (adjustTo(member.getMemberId(), member.getMoney())) {
+                return UpsertResult.UPDATED;
+            }
+            delegate.save(member);
+            return UpsertResult.INSERTED;
+        });
+    }
+
+    @Override
+    public List<UpsertResult> upsertAll(Collection<Member> members) {
+        return transactionTemplate.execute(status -> MemberRepository.super.upsertAll(members));
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        return delegate.findByMoneyBetween(minMoney, maxMoney, consumer);
+    }
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        return delegate.findTopByMoney(n);
+    }
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        return delegate.findAllByIdForUpdate(memberIds);
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        return delegate.scanRange(fromId, toId, consumer);
+    }
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return delegate.sampleMemberIds(sampleSize);
+    }
+
+    /**
+     * @return 회원이 없으면 false
+     */
+    private boolean adjustTo(String memberId, int money) {
+        if (delegate.findAllByIdForUpdate(List.of(memberId)).isEmpty()) {
+            return false;
+        }
+        int current = journal.findMoney(memberId).orElseThrow();
+        if (current != money) {
+            journal.adjust(memberId, Math.subtractExact(money, current));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.journal;
+
+import hello.jdbc.support.PeriodicTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * 저널 -> 스냅샷(member.money) 반영 작업
+ * batchSize 건씩 나누어 트랜젝션마다 반영하므로 저널이 많이 쌓여도 트랜젝션 하나가 오래 걸리지 않는다.
+ * 주기가 짧을수록 미반영 저널이 적고 잔액 조회 비용이 작다.
+ */
+@Slf4j
+public class JournalRollup {
+
+    private final TransferJournal journal;
+    private final TransactionTemplate txTemplate;
+    private final int batchSize;
+
+    private final PeriodicTask scheduler = new PeriodicTask("journal-rollup", this::rollUpPeriodically);
+
+    public JournalRollup(TransferJournal journal, PlatformTransactionManager transactionManager, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.journal = journal;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * batchSize 건 반영
+     *
+     * @return 반영한 저널 수
+     */
+    public int rollUpOnce() {
+        return txTemplate.execute(status -> journal.rollUp(batchSize));
+    }
+
+    /**
+     * 호출한 시점의 미반영 저널 수 만큼 반영한다.
+     * 이체가 계속 들어와도 끝나도록 처음에 센 건수에서 멈춘다.
+     *
+     * @return 반영한 저널 수
+     */
+    public long rollUp() {
+        long pending = journal.countPending();
+        long total = 0;
+        while (total < pending) {
+            int rows = rollUpOnce();
+            if (rows == 0) {
+                break;
+            }
+            total += rows;
+        }
+        return total;
+    }
+
+    public void start(Duration period) {
+        scheduler.start(period);
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+
+    private void rollUpPeriodically() {
+        long rows = rollUp();
+        if (rows > 0) {
+            log.debug("journal rolled up rows={}", rows);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package hello.jdbc.journal;
+
+import hello.jdbc.service.TransferService;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 저널 모드 이체
+ * member 행을 수정하지 않고 저널 행 하나만 추가한다. (문장 하나 = 자동 커밋 트랜젝션 하나)
+ * 같은 회원으로 이체가 몰려도 행 락을 기다리지 않는다.
+ *
+ * 잔액 검사는 하지 않는다. (MemberServiceV4 와 같다)
+ */
+@Slf4j
+public class JournalTransferService implements TransferService {
+
+    private final TransferJournal journal;
+
+    public JournalTransferService(TransferJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        TransferValidator.requireDistinct(fromId, toId);
+        TransferValidator.requireReceivable(toId);
+        journal.append(fromId, toId, money);
+    }
+}
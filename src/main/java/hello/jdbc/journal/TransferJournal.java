@@ -0,0 +1,168 @@
+package hello.jdbc.journal;
+
+import hello.jdbc.aggregate.BalanceAggregates;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 이체 저널 (transfer_journal)
+ *
+ * 이체는 저널 행을 하나 추가(insert)만 하고 member 행은 수정하지 않는다. 이체끼리 같은 행 락을 기다리지 않는다.
+ * 잔액 = member.money (마지막 스냅샷) + 아직 반영하지 않은 저널 (rolled_up = false) 의 증감
+ * rollUp 이 저널을 member.money 에 더하고 rolled_up 으로 표시한다. (같은 트랜젝션)
+ *
+ * 조회는 한 문장으로 스냅샷과 미반영 저널을 같이 읽으므로 rollUp 과 동시에 실행되어도 같은 시점을 본다.
+ * 조회 비용은 그 회원의 미반영 저널 수에 비례하고 (인덱스 범위), 전체 저널 크기와는 무관하다.
+ *
+ * version = member.version + 미반영 저널 수 : 저널이 추가될 때마다 1 증가하고, rollUp 은 반영한 저널 수 만큼 member.version 을 올리므로
+ * 반영해도 바뀌지 않는다. (JournalMemberRepository.update(Member) 의 낙관적 락)
+ *
+ * rolled_up 을 journal_id 기준(어디까지 반영했는지)으로 정하지 않는 이유 :
+ * journal_id 는 insert 할 때 정해지고 커밋 순서와 다르므로, 작은 id 가 나중에 커밋되면 빠뜨리게 된다.
+ */
+@Slf4j
+public class TransferJournal {
+
+    // member_id, 스냅샷 + 미반영 저널, version + 미반영 저널 수
+    private static final String BALANCE_SQL = "select m.member_id, m.money"
+            + " + coalesce((select sum(j.money) from transfer_journal j where j.to_id = m.member_id and j.rolled_up = false), 0)"
+            + " - coalesce((select sum(j.money) from transfer_journal j where j.from_id = m.member_id and j.rolled_up = false), 0),"
+            + " m.version"
+            + " + (select count(*) from transfer_journal j where j.to_id = m.member_id and j.rolled_up = false)"
+            + " + (select count(*) from transfer_journal j where j.from_id = m.member_id and j.rolled_up = false)"
+            + " from member m where m.member_id = ?";
+    private static final RowMapper<Member> BALANCE_ROW_MAPPER =
+            (rs, rowNum) -> new Member(rs.getString(1), rs.getInt(2), rs.getLong(3));
+
+    private final JdbcTemplate template;
+
+    public TransferJournal(DataSource dataSource) {
+        MemberSchema.ensure(dataSource);
+        BalanceAggregates.requireUnaggregated(dataSource, "TransferJournal");
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+    }
+
+    /**
+     * 이체 기록 - 두 회원이 모두 있을 때만 한 문장으로 추가한다.
+     *
+     * @throws NoSuchElementException 회원이 없는 경우
+     */
+    public void append(String fromId, String toId, int money) {
+        String sql = "insert into transfer_journal(from_id, to_id, money)"
+                + " select cast(? as varchar(10)), cast(? as varchar(10)), cast(? as integer) from dual"
+                + " where (select count(*) from member where member_id in (?, ?)) = 2";
+
+        if (template.update(sql, fromId, toId, money, fromId, toId) == 0) {
+            String missing = findBalance(fromId).isPresent() ? toId : fromId;
+            throw TransferValidator.memberNotFound(missing);
+        }
+    }
+
+    /**
+     * 잔액 조정 (from 없이 to 에만 더한다)
+     */
+    void adjust(String memberId, int money) {
+        template.update("insert into transfer_journal(to_id, money) values (?, ?)", memberId, money);
+    }
+
+    public Member findBalanceById(String memberId) {
+        return template.queryForObject(BALANCE_SQL, BALANCE_ROW_MAPPER, memberId);
+    }
+
+    public Optional<Member> findBalance(String memberId) {
+        return template.query(BALANCE_SQL, rs -> rs.next()
+                ? Optional.of(BALANCE_ROW_MAPPER.mapRow(rs, 0))
+                : Optional.<Member>empty(), memberId);
+    }
+
+    public OptionalInt findMoney(String memberId) {
+        return template.query(BALANCE_SQL, rs -> rs.next() ? OptionalInt.of(rs.getInt(2)) : OptionalInt.empty(), memberId);
+    }
+
+    /**
+     * 미반영 저널 수
+     */
+    public long countPending() {
+        return template.queryForObject("select count(*) from transfer_journal where rolled_up = false", Long.class);
+    }
+
+    /**
+     * 미반영 저널을 journal_id 순서로 최대 maxRows 건 member.money 에 반영한다. 트랜젝션 안에서 호출해야 한다.
+     * 반영 작업끼리는 journal_snapshot 행 락으로 한번에 하나씩 실행된다. (같은 저널을 두번 더하지 않는다)
+     * 아직 커밋되지 않은 이체는 보이지 않으므로 다음 반영에 포함된다.
+     *
+     * @return 반영한 저널 수
+     */
+    int rollUp(int maxRows) {
+        return rollUp(" where rolled_up = false order by journal_id limit ?", maxRows);
+    }
+
+    /**
+     * 한 회원의 미반영 저널을 모두 반영한다. 회원을 삭제하기 전에 같은 트랜젝션에서 호출한다.
+     * 남겨두면 같은 member_id 로 다시 등록한 회원의 잔액에 더해진다. (상대 회원 쪽 증감은 그대로 반영된다)
+     *
+     * @return 반영한 저널 수
+     */
+    int rollUpMember(String memberId) {
+        return rollUp(" where (from_id = ? or to_id = ?) and rolled_up = false order by journal_id", memberId, memberId);
+    }
+
+    private int rollUp(String condition, Object... args) {
+        template.queryForObject("select snapshots from journal_snapshot where id = 0 for update", Long.class);
+
+        List<Long> journalIds = new ArrayList<>();
+        SortedMap<String, int[]> changes = new TreeMap<>(); // member_id -> {증감, 저널 수}
+        template.query("select journal_id, from_id, to_id, money from transfer_journal" + condition, rs -> {
+            journalIds.add(rs.getLong(1));
+            String fromId = rs.getString(2);
+            int money = rs.getInt(4);
+            if (fromId != null) {
+                addChange(changes, fromId, -money);
+            }
+            addChange(changes, rs.getString(3), money);
+        }, args);
+        if (journalIds.isEmpty()) {
+            return 0;
+        }
+
+        // member_id 순서로 락을 잡는다. 삭제된 회원의 저널은 반영할 곳이 없으므로 표시만 한다.
+        // 반영한 저널 수 만큼 version 을 올려서 조회 version (version + 미반영 저널 수) 이 바뀌지 않게 한다.
+        List<Object[]> memberArgs = new ArrayList<>(changes.size());
+        for (Map.Entry<String, int[]> entry : changes.entrySet()) {
+            memberArgs.add(new Object[]{entry.getValue()[0], entry.getValue()[1], entry.getKey()});
+        }
+        template.batchUpdate("update member set money = money + ?, version = version + ? where member_id = ?", memberArgs);
+
+        List<Object[]> journalArgs = new ArrayList<>(journalIds.size());
+        for (Long journalId : journalIds) {
+            journalArgs.add(new Object[]{journalId});
+        }
+        template.batchUpdate("update transfer_journal set rolled_up = true where journal_id = ?", journalArgs);
+        template.update("update journal_snapshot set snapshots = snapshots + 1, rolled_up_rows = rolled_up_rows + ?,"
+                + " last_snapshot_at = current_timestamp where id = 0", journalIds.size());
+        log.debug("journal rolled up rows={}, members={}", journalIds.size(), changes.size());
+        return journalIds.size();
+    }
+
+    private static void addChange(Map<String, int[]> changes, String memberId, int money) {
+        int[] change = changes.computeIfAbsent(memberId, id -> new int[2]);
+        change[0] = Math.addExact(change[0], money);
+        change[1]++;
+    }
+}
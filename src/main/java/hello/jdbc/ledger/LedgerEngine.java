@@ -0,0 +1,346 @@
+package hello.jdbc.ledger;
+
+import hello.jdbc.aggregate.BalanceAggregates;
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.LatencyRecorder;
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.service.TransferService;
+import hello.jdbc.service.TransferValidator;
+import hello.jdbc.support.PeriodicTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.PriorityQueue;
+
+/**
+ * 메모리 원장 엔진
+ *
+ * 잔액의 기준은 메모리(int[])이고, DB(member.money)는 체크포인트 시점의 사본이다.
+ * - 이체 : 락 안에서 검증 -> WAL 버퍼에 기록 -> 배열 수정, 락 밖에서 WAL fsync 를 기다린다. (그룹 fsync)
+ * - 체크포인트 : 마지막 체크포인트 이후 바뀐(dirty) 잔액만 batch update 하고 sequence 를 기록한다.
+ * - 복구 : member.money (체크포인트) + WAL 의 체크포인트 sequence 이후 레코드
+ *
+ * 회원은 시작할 때 member 테이블에서 읽는다. 엔진이 떠 있는 동안 다른 경로로 member.money 를 수정하면
+ * 다음 체크포인트가 덮어쓴다.
+ * fsync 전에 적용하므로 조회는 아직 fsync 되지 않은 이체를 볼 수 있다. (accountTransfer 는 fsync 후에 반환)
+ * 그래서 WAL 쓰기가 실패하면 엔진을 멈춘다. (fail-stop) 배열에 반영된 이체 중 어디까지 기록됐는지 알 수 없으므로
+ * 이후의 이체, 조회, 체크포인트는 모두 IllegalStateException 이고, 재시작해서 체크포인트 + WAL 로 복구해야 한다.
+ *
+ * 잔액이 int 범위를 넘는 이체는 ArithmeticException 으로 거절한다.
+ */
+@Slf4j
+public class LedgerEngine implements TransferService, AutoCloseable {
+
+    private static final int CHECKPOINT_BATCH_SIZE = 500;
+
+    private final JdbcTemplate template;
+    private final TransactionTemplate txTemplate;
+    private final WriteAheadLog wal;
+    private final LatencyRecorder transferLatency = new LatencyRecorder("ledger.transfer");
+    // 체크포인트끼리 순서가 바뀌면 오래된 잔액이 나중에 커밋될 수 있다.
+    private final Object checkpointLock = new Object();
+
+    // 아래 필드는 this 로 보호한다.
+    private final Map<String, Integer> indexes;
+    private final String[] memberIds;
+    private final int[] balances;
+    private final boolean[] dirty;
+    private final int[] dirtyIndexes;
+    private int dirtyCount;
+    private long sequence;
+    // WAL 실패 (null 이 아니면 멈춘 상태)
+    private RuntimeException failure;
+
+    private final PeriodicTask scheduler = new PeriodicTask("ledger-checkpoint", this::checkpoint);
+
+    /**
+     * 체크포인트 + WAL 로 복구하고 시작한다.
+     *
+     * @param flushDelay WAL 그룹 fsync 전에 레코드를 더 모으는 시간 (0 이면 바로)
+     */
+    public LedgerEngine(DataSource dataSource, PlatformTransactionManager transactionManager,
+                        Path walDirectory, Duration flushDelay) {
+        MemberSchema.ensure(dataSource);
+        BalanceAggregates.requireUnaggregated(dataSource, "LedgerEngine");
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+        this.txTemplate = new TransactionTemplate(transactionManager);
+
+        List<String> ids = new ArrayList<>();
+        List<Integer> money = new ArrayList<>();
+        long checkpointSequence = txTemplate.execute(status -> {
+            // 회원과 체크포인트 sequence 를 같은 시점으로 읽는다.
+            Long checkpoint = template.queryForObject("select sequence from ledger_checkpoint where id = 0 for update", Long.class);
+            template.query("select member_id, money from member", rs -> {
+                ids.add(rs.getString(1));
+                money.add(rs.getInt(2));
+            });
+            return checkpoint;
+        });
+        int size = ids.size();
+        this.indexes = new HashMap<>(size * 2);
+        this.memberIds = ids.toArray(new String[0]);
+        this.balances = new int[size];
+        this.dirty = new boolean[size];
+        this.dirtyIndexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes.put(memberIds[i], i);
+            balances[i] = money.get(i);
+        }
+
+        long recovered = WriteAheadLog.replay(walDirectory, checkpointSequence, this::replay);
+        this.sequence = recovered;
+        this.wal = new WriteAheadLog(walDirectory, recovered, flushDelay);
+        log.info("ledger engine started members={}, checkpoint={}, recovered={}, dirty={}",
+                size, checkpointSequence, recovered - checkpointSequence, dirtyCount);
+    }
+
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        long start = System.nanoTime();
+        TransferValidator.requireDistinct(fromId, toId);
+        long recordSequence;
+        synchronized (this) {
+            ensureRunning();
+            int from = indexOf(fromId);
+            int to = indexOf(toId);
+            TransferValidator.requireReceivable(toId);
+            int fromBalance = Math.subtractExact(balances[from], money);
+            int toBalance = Math.addExact(balances[to], money);
+            // WAL 버퍼에 쓰지 못하면 배열도 바꾸지 않는다. 배열은 fsync 전에 바꾸므로 fsync 가 실패하면 엔진을 멈춘다.
+            try {
+                recordSequence = wal.append(fromId, toId, money);
+            } catch (RuntimeException e) {
+                throw stop(e);
+            }
+            balances[from] = fromBalance;
+            balances[to] = toBalance;
+            markDirty(from);
+            markDirty(to);
+            sequence = recordSequence;
+        }
+        try {
+            wal.awaitDurable(recordSequence);
+        } catch (RuntimeException e) {
+            throw stop(e);
+        }
+        transferLatency.recordSince(start);
+    }
+
+    public synchronized OptionalInt findMoney(String memberId) {
+        ensureRunning();
+        Integer index = indexes.get(memberId);
+        return index == null ? OptionalInt.empty() : OptionalInt.of(balances[index]);
+    }
+
+    /**
+     * 조건에 맞는 회원 (순서 없음)
+     */
+    public synchronized List<Member> findMembers(BalanceFilter filter) {
+        ensureRunning();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < memberIds.length; i++) {
+            if (filter.test(memberIds[i], balances[i])) {
+                members.add(new Member(memberIds[i], balances[i]));
+            }
+        }
+        return members;
+    }
+
+    /**
+     * 잔액 상위 n 명 - 크기 n 의 힙으로 한번만 훑는다.
+     */
+    public synchronized List<Member> findTopByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        ensureRunning();
+        if (n == 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Integer> top = new PriorityQueue<>(n, (a, b) -> Integer.compare(balances[a], balances[b]));
+        for (int i = 0; i < balances.length; i++) {
+            if (top.size() < n) {
+                top.add(i);
+            } else if (balances[i] > balances[top.peek()]) {
+                top.poll();
+                top.add(i);
+            }
+        }
+        Member[] members = new Member[top.size()];
+        for (int i = members.length - 1; i >= 0; i--) {
+            int index = top.poll();
+            members[i] = new Member(memberIds[index], balances[index]);
+        }
+        return new ArrayList<>(Arrays.asList(members));
+    }
+
+    public synchronized int size() {
+        return memberIds.length;
+    }
+
+    /**
+     * 바뀐 잔액을 member 테이블에 기록한다.
+     * WAL 세그먼트를 먼저 넘기고(rotate), 체크포인트가 커밋되면 이전 세그먼트를 삭제한다.
+     *
+     * @return 기록한 회원 수
+     */
+    public int checkpoint() {
+        synchronized (checkpointLock) {
+            List<Path> previousSegments;
+            long checkpointSequence;
+            List<Object[]> args;
+            synchronized (this) {
+                ensureRunning();
+                try {
+                    previousSegments = wal.rotate();
+                } catch (RuntimeException e) {
+                    throw stop(e);
+                }
+                checkpointSequence = sequence;
+                args = new ArrayList<>(dirtyCount);
+                for (int i = 0; i < dirtyCount; i++) {
+                    int index = dirtyIndexes[i];
+                    args.add(new Object[]{balances[index], memberIds[index]});
+                    dirty[index] = false;
+                }
+                dirtyCount = 0;
+            }
+            try {
+                txTemplate.executeWithoutResult(status -> {
+                    template.batchUpdate("update member set money = ?, version = version + 1 where member_id = ?",
+                            args, CHECKPOINT_BATCH_SIZE, (ps, arg) -> {
+                                ps.setInt(1, (Integer) arg[0]);
+                                ps.setString(2, (String) arg[1]);
+                            });
+                    template.update("update ledger_checkpoint set sequence = ?, checkpoint_at = current_timestamp where id = 0",
+                            checkpointSequence);
+                });
+            } catch (RuntimeException e) {
+                // 다음 체크포인트에서 다시 기록한다. (그때의 잔액으로)
+                synchronized (this) {
+                    for (Object[] arg : args) {
+                        markDirty(indexes.get((String) arg[1]));
+                    }
+                }
+                throw e;
+            }
+            wal.deleteSegments(previousSegments);
+            log.debug("ledger checkpoint sequence={}, members={}", checkpointSequence, args.size());
+            return args.size();
+        }
+    }
+
+    public void startCheckpoints(Duration period) {
+        scheduler.start(period);
+    }
+
+    public void stopCheckpoints() {
+        scheduler.stop();
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public LatencyRecorder getTransferLatency() {
+        return transferLatency;
+    }
+
+    public LatencyRecorder getFsyncLatency() {
+        return wal.getFsyncLatency();
+    }
+
+    /**
+     * WAL 쓰기가 실패해서 멈춘 상태
+     */
+    public synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * 마지막 체크포인트 후 WAL 을 닫는다. 멈춘 엔진은 체크포인트 없이 닫는다.
+     */
+    @Override
+    public void close() {
+        stopCheckpoints();
+        if (!isFailed()) {
+            checkpoint();
+        }
+        wal.close();
+    }
+
+    /**
+     * 체크포인트 없이 WAL 만 닫는다. (프로세스가 중단된 상황, 테스트용)
+     */
+    void abandon() {
+        stopCheckpoints();
+        wal.close();
+    }
+
+    WriteAheadLog getWal() {
+        return wal;
+    }
+
+    public interface BalanceFilter {
+        boolean test(String memberId, int money);
+    }
+
+    private synchronized RuntimeException stop(RuntimeException cause) {
+        if (failure == null) {
+            log.error("ledger engine stopped, restart to recover from checkpoint and wal", cause);
+            failure = cause;
+        }
+        return cause;
+    }
+
+    private void ensureRunning() {
+        if (failure != null) {
+            throw new IllegalStateException("원장 엔진이 WAL 오류로 멈췄습니다. 재시작해서 복구해야 합니다.", failure);
+        }
+    }
+
+    private int indexOf(String memberId) {
+        Integer index = indexes.get(memberId);
+        if (index == null) {
+            throw TransferValidator.memberNotFound(memberId);
+        }
+        return index;
+    }
+
+    private void markDirty(int index) {
+        if (!dirty[index]) {
+            dirty[index] = true;
+            dirtyIndexes[dirtyCount++] = index;
+        }
+    }
+
+    /**
+     * 복구 - 검증은 기록할 때 끝났으므로 다시 하지 않는다.
+     */
+    private void replay(long recordSequence, String fromId, String toId, int money) {
+        Integer from = indexes.get(fromId);
+        Integer to = indexes.get(toId);
+        if (from == null || to == null) {
+            // 체크포인트 후 삭제된 회원
+            log.warn("ledger replay skipped sequence={}, fromId={}, toId={}", recordSequence, fromId, toId);
+            return;
+        }
+        balances[from] -= money;
+        balances[to] += money;
+        markDirty(from);
+        markDirty(to);
+    }
+}
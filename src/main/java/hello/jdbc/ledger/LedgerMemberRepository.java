@@ -0,0 +1,140 @@
+package hello.jdbc.ledger;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.UpsertResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 원장 엔진 조회용 리포지토리
+ * DB 를 읽지 않고 LedgerEngine 의 메모리 잔액을 돌려준다. (체크포인트 전 이체도 보인다)
+ *
+ * 엔진은 version 을 관리하지 않으므로 version 은 항상 0 이다.
+ * 잔액은 이체(LedgerEngine.accountTransfer)로만 바꾼다. 변경 메소드는 UnsupportedOperationException.
+ */
+public class LedgerMemberRepository implements MemberRepository {
+
+    private static final Comparator<Member> BY_MEMBER_ID = Comparator.comparing(Member::getMemberId);
+
+    private final LedgerEngine engine;
+
+    public LedgerMemberRepository(LedgerEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return findOptionalById(memberId)
+                .orElseThrow(() -> new NoSuchElementException("member not found memberId = " + memberId));
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        OptionalInt money = engine.findMoney(memberId);
+        return money.isPresent() ? Optional.of(new Member(memberId, money.getAsInt())) : Optional.empty();
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        return engine.findMoney(memberId).isPresent();
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        return engine.findMoney(memberId);
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        // 엔진 락 밖에서 consumer 를 호출한다.
+        List<Member> members = engine.findMembers((memberId, money) -> money >= minMoney && money <= maxMoney);
+        members.forEach(consumer);
+        return members.size();
+    }
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        return engine.findTopByMoney(n);
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        List<Member> members = engine.findMembers((memberId, money) ->
+                (fromId == null || memberId.compareTo(fromId) >= 0) && (toId == null || memberId.compareTo(toId) < 0));
+        members.sort(BY_MEMBER_ID);
+        members.forEach(consumer);
+        return members.size();
+    }
+
+    /**
+     * DB 리포지토리(MemberIdSampler)와 같이 member_id 순서로 일정한 간격의 표본
+     * 엔진의 회원 수는 정확하므로 min(sampleSize, 회원 수) 건을 돌려준다.
+     */
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        if (sampleSize <= 0) {
+            return new ArrayList<>();
+        }
+        List<String> memberIds = engine.findMembers((memberId, money) -> true).stream()
+                .map(Member::getMemberId)
+                .sorted()
+                .collect(Collectors.toList());
+        int stride = Math.max(1, memberIds.size() / sampleSize);
+        List<String> sample = new ArrayList<>(Math.min(sampleSize, memberIds.size()));
+        for (int i = stride - 1; i < memberIds.size() && sample.size() < sampleSize; i += stride) {
+            sample.add(memberIds.get(i));
+        }
+        return sample;
+    }
+
+    /**
+     * 엔진이 이체를 한 건씩 적용하므로 행 락은 없다. 현재 잔액을 member_id 순서로 돌려준다.
+     */
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        Set<String> ids = new HashSet<>(memberIds);
+        List<Member> members = engine.findMembers((memberId, money) -> ids.contains(memberId));
+        members.sort(BY_MEMBER_ID);
+        return members;
+    }
+
+    @Override
+    public Member save(Member member) {
+        throw unsupported();
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        throw unsupported();
+    }
+
+    @Override
+    public void update(Member member) {
+        throw unsupported();
+    }
+
+    @Override
+    public void delete(String memberId) {
+        throw unsupported();
+    }
+
+    @Override
+    public UpsertResult upsert(Member member) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("원장 엔진의 잔액은 이체로만 변경합니다.");
+    }
+}
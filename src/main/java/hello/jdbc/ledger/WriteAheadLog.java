@@ -0,0 +1,429 @@
+package hello.jdbc.ledger;
+
+import hello.jdbc.metrics.LatencyRecorder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 이체 로그 (write-ahead log)
+ *
+ * 레코드 : [int bodyLength][body][int crc32(body)]
+ *   body : [long sequence][short fromLength][fromId UTF-8][short toLength][toId UTF-8][int money]
+ *
+ * 그룹 fsync : append 는 메모리 버퍼에 쓰기만 하고, flusher 스레드가 모인 레코드를 한번에 write + force 한다.
+ * fsync 하는 동안 들어온 레코드는 다음 fsync 에 같이 기록된다. (버퍼 두개를 번갈아 사용)
+ *
+ * 파일은 세그먼트로 나눈다. (wal-{첫 sequence}.log)
+ * 체크포인트할 때 rotate 로 새 세그먼트를 시작하고, 체크포인트가 커밋되면 이전 세그먼트를 삭제한다.
+ *
+ * write / force 가 한번 실패하면 그 뒤의 append, rotate, awaitDurable 은 모두 실패한다.
+ * 실패한 배치가 파일에 어디까지 기록됐는지 알 수 없으므로 다시 열어서 replay 로 복구해야 한다.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final Path directory;
+    private final long flushDelayNanos;
+    private final LatencyRecorder fsyncLatency = new LatencyRecorder("wal.fsync");
+    private final Thread flusher;
+
+    // 아래 필드는 this 로 보호한다.
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER);
+    private long lastSequence;
+    private long durableSequence;
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+    private FileChannel channel;
+    private Path segment;
+
+    /**
+     * @param lastSequence 복구가 끝난 마지막 sequence, 다음 레코드는 lastSequence + 1
+     * @param flushDelay   첫 레코드가 들어온 후 fsync 전에 더 모으는 시간 (0 이면 바로)
+     */
+    public WriteAheadLog(Path directory, long lastSequence, Duration flushDelay) {
+        this.directory = directory;
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        this.flushDelayNanos = flushDelay.toNanos();
+        try {
+            Files.createDirectories(directory);
+            openSegment(lastSequence + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.flusher = new Thread(this::runFlusher, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 버퍼에 기록 - fsync 를 기다리지 않는다.
+     *
+     * @return 레코드의 sequence (awaitDurable 에 사용)
+     */
+    public synchronized long append(String fromId, String toId, int money) {
+        ensureWritable();
+        byte[] from = fromId.getBytes(StandardCharsets.UTF_8);
+        byte[] to = toId.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 8 + 2 + from.length + 2 + to.length + 4;
+        ensureCapacity(4 + bodyLength + 4);
+
+        long sequence = ++lastSequence;
+        pending.putInt(bodyLength);
+        int bodyStart = pending.position();
+        pending.putLong(sequence);
+        pending.putShort((short) from.length).put(from);
+        pending.putShort((short) to.length).put(to);
+        pending.putInt(money);
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), bodyStart, bodyLength);
+        pending.putInt((int) crc.getValue());
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * sequence 까지 fsync 될 때까지 기다린다.
+     */
+    public synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("wal write failed", failure);
+                }
+                if (closed && !flushing && pending.position() == 0) {
+                    throw new IllegalStateException("wal closed");
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 새 세그먼트 시작 - 지금까지의 레코드를 기존 세그먼트에 fsync 하고 닫는다.
+     * 호출하는 동안 append 는 기다린다. (체크포인트 때만 호출)
+     *
+     * @return 이전 세그먼트들 (체크포인트가 커밋된 후 deleteSegments 로 삭제)
+     */
+    public synchronized List<Path> rotate() {
+        awaitFlusherIdle();
+        // 실패한 배치를 건너뛰고 pending 만 기록하면 sequence 에 구멍이 생긴다.
+        ensureWritable();
+        try {
+            writeAndForce(pending);
+            durableSequence = lastSequence;
+            notifyAll();
+            List<Path> previous = segments();
+            channel.close();
+            openSegment(lastSequence + 1);
+            // 그 사이 레코드가 없었으면 같은 이름의 세그먼트를 다시 연 것이므로 삭제 대상에서 뺀다.
+            previous.remove(segment);
+            return previous;
+        } catch (IOException e) {
+            failure = e;
+            notifyAll();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void deleteSegments(List<Path> segments) {
+        for (Path path : segments) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // 다음 체크포인트 후에 다시 삭제된다.
+                log.warn("wal segment delete failed path={}", path, e);
+            }
+        }
+    }
+
+    public synchronized boolean isFailed() {
+        return failure != null;
+    }
+
+    public synchronized long getDurableSequence() {
+        return durableSequence;
+    }
+
+    public LatencyRecorder getFsyncLatency() {
+        return fsyncLatency;
+    }
+
+    /**
+     * 남은 레코드를 fsync 하고 닫는다.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("wal close failed", e);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * afterSequence 보다 큰 레코드를 순서대로 읽는다.
+     * 마지막 세그먼트 끝의 깨진 레코드(쓰는 중 중단)는 잘라낸다. 중간 세그먼트가 깨졌으면 예외.
+     *
+     * @return 마지막으로 읽은 sequence (없으면 afterSequence)
+     */
+    public static long replay(Path directory, long afterSequence, RecordHandler handler) {
+        if (!Files.isDirectory(directory)) {
+            return afterSequence;
+        }
+        long last = afterSequence;
+        try {
+            List<Path> segments = listSegments(directory);
+            for (int i = 0; i < segments.size(); i++) {
+                last = replaySegment(segments.get(i), last, i == segments.size() - 1, handler);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return last;
+    }
+
+    public interface RecordHandler {
+        void apply(long sequence, String fromId, String toId, int money);
+    }
+
+    private static long replaySegment(Path path, long last, boolean tail, RecordHandler handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() > 0) {
+            int recordStart = buffer.position();
+            if (buffer.remaining() < 4) {
+                truncateOrFail(path, recordStart, tail);
+                break;
+            }
+            int bodyLength = buffer.getInt();
+            if (bodyLength <= 0 || buffer.remaining() < bodyLength + 4) {
+                truncateOrFail(path, recordStart, tail);
+                break;
+            }
+            int bodyStart = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), bodyStart, bodyLength);
+            buffer.position(bodyStart + bodyLength);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                truncateOrFail(path, recordStart, tail);
+                break;
+            }
+            buffer.position(bodyStart);
+            long sequence = buffer.getLong();
+            String fromId = readString(buffer);
+            String toId = readString(buffer);
+            int money = buffer.getInt();
+            buffer.getInt();
+            if (sequence > last) {
+                handler.apply(sequence, fromId, toId, money);
+                last = sequence;
+            }
+        }
+        return last;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void truncateOrFail(Path path, int position, boolean tail) throws IOException {
+        if (!tail) {
+            throw new IllegalStateException("wal segment corrupted path=" + path + ", position=" + position);
+        }
+        log.warn("wal torn record truncated path={}, position={}", path, position);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        return listSegments(directory);
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        // 이름 순서 = sequence 순서가 되도록 자리수를 맞춘다.
+        segment = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 쓰기 실패를 흉내낸다. (테스트용)
+     */
+    synchronized void fail(IOException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    private void ensureWritable() {
+        if (failure != null) {
+            throw new UncheckedIOException("wal write failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("wal closed");
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+    }
+
+    private void awaitFlusherIdle() {
+        boolean interrupted = false;
+        while (flushing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * this 락을 잡은 상태로 호출 (rotate)
+     */
+    private void writeAndForce(ByteBuffer buffer) throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        buffer.clear();
+        fsyncLatency.recordSince(start);
+    }
+
+    private void runFlusher() {
+        while (true) {
+            ByteBuffer batch;
+            FileChannel target;
+            long batchSequence;
+            synchronized (this) {
+                try {
+                    while (pending.position() == 0 && !closed) {
+                        wait();
+                    }
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    // 더 모은다. (append 의 notifyAll 로 깨어나도 flushDelay 가 지날 때까지)
+                    long deadline = System.nanoTime() + flushDelayNanos;
+                    long remaining;
+                    while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.position() == 0) {
+                    // 그 사이 rotate 가 기록했다.
+                    continue;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                target = channel;
+                batchSequence = lastSequence;
+                flushing = true;
+            }
+            // fsync 하는 동안 append 는 다른 버퍼에 계속 쓴다.
+            IOException error = null;
+            try {
+                long start = System.nanoTime();
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                target.force(false);
+                fsyncLatency.recordSince(start);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                batch.clear();
+            }
+            synchronized (this) {
+                flushing = false;
+                if (error != null) {
+                    log.error("wal write failed", error);
+                    failure = error;
+                } else {
+                    durableSequence = Math.max(durableSequence, batchSequence);
+                }
+                notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+}
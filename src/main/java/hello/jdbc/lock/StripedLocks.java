@@ -0,0 +1,79 @@
+package hello.jdbc.lock;
+
+import hello.jdbc.metrics.LatencyRecorder;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * member_id 별 JVM 내부 락 (lock striping)
+ * 회원마다 락을 만들지 않고 고정 개수의 락에 member_id 해시로 나누어 배정한다.
+ * 서로 다른 회원이 같은 stripe 에 걸리면 불필요하게 기다릴 수 있으므로 stripe 수는 동시 처리 스레드 수보다 넉넉하게 잡는다.
+ *
+ * 두 회원을 잠글 때는 항상 stripe 번호 순서로 잠그므로 데드락이 없다.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final LatencyRecorder wait;
+
+    public StripedLocks(int stripes) {
+        this(stripes, new LatencyRecorder("stripe lock wait"));
+    }
+
+    public StripedLocks(int stripes, LatencyRecorder wait) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.wait = wait;
+    }
+
+    public int stripeOf(String memberId) {
+        int h = memberId.hashCode();
+        // 하위 비트만 다른 해시도 고르게 퍼지도록 상위 비트를 섞는다.
+        return Math.floorMod(h ^ (h >>> 16), locks.length);
+    }
+
+    /**
+     * 두 회원의 stripe 를 순서대로 잠그고 action 을 실행한다.
+     * 같은 stripe 면 한번만 잠근다.
+     */
+    public void runLocked(String firstId, String secondId, Runnable action) {
+        int a = stripeOf(firstId);
+        int b = stripeOf(secondId);
+        ReentrantLock first = locks[Math.min(a, b)];
+        ReentrantLock second = a == b ? null : locks[Math.max(a, b)];
+
+        long start = System.nanoTime();
+        first.lock();
+        try {
+            if (second != null) {
+                second.lock();
+            }
+            wait.recordSince(start);
+            try {
+                action.run();
+            } finally {
+                if (second != null) {
+                    second.unlock();
+                }
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    /**
+     * 락 획득까지 기다린 시간
+     */
+    public LatencyRecorder getWait() {
+        return wait;
+    }
+}
@@ -0,0 +1,302 @@
+package hello.jdbc.partition;
+
+import hello.jdbc.metrics.LatencyRecorder;
+import hello.jdbc.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 파티션 단일 writer 이체 실행기
+ *
+ * member_id 해시로 회원을 N 개 파티션에 나누고, 파티션마다 스레드 하나가 자기 회원의 이체만 순서대로 처리한다.
+ * 같은 회원을 동시에 수정하는 트랜젝션이 없으므로 DB 행 락 경합이 생기지 않는다.
+ * - 배치 커밋 : 큐에 쌓인 이체를 batchSize 건까지 트랜젝션 하나로 처리한다.
+ *   이체마다 savepoint 를 두므로 실패한 이체만 롤백되고 나머지는 같이 커밋된다.
+ * - 파티션 간 이체 : 번호가 작은 파티션이 처리한다. 상대 파티션에 정지 요청을 보내고,
+ *   상대가 멈춘 동안 두 회원을 한 트랜젝션으로 수정한 후 다시 풀어준다.
+ *   기다림은 항상 작은 번호 -> 큰 번호 방향이므로 파티션끼리 서로 기다리는 순환이 없다.
+ *
+ * delegate 는 파티션 트랜젝션에 참여해서 실행된다. (예: MemberServiceV4, @Transactional 이면 REQUIRED 로 참여)
+ * 이 실행기를 거치지 않는 수정과는 DB 행 락으로 보호된다.
+ * close() 후의 이체는 IllegalStateException 으로 바로 실패한다.
+ */
+@Slf4j
+public class PartitionedTransferExecutor implements TransferService, AutoCloseable {
+
+    private final TransferService delegate;
+    private final TransactionTemplate txTemplate;
+    private final int batchSize;
+    private final Partition[] partitions;
+    // submit 은 읽기 락으로 closed 확인과 큐 추가를 묶는다. close 는 쓰기 락으로 closed 를 바꾸므로
+    // 종료 표시(Stop)보다 늦게 큐에 들어가는 이체가 없다.
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public PartitionedTransferExecutor(TransferService delegate, PlatformTransactionManager transactionManager,
+                                       int partitions, int batchSize) {
+        if (partitions <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("partitions and batchSize must be positive");
+        }
+        this.delegate = delegate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(i);
+        }
+        for (Partition partition : this.partitions) {
+            partition.thread.start();
+        }
+    }
+
+    /**
+     * 이체를 파티션에 넘기고 커밋될 때까지 기다린다.
+     */
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        try {
+            submit(fromId, toId, money).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("이체 대기 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 이체를 파티션 큐에 넣는다. 커밋되면 완료, 실패하면 예외로 완료된다.
+     * @throws IllegalStateException close() 후에 호출하면
+     */
+    public CompletableFuture<Void> submit(String fromId, String toId, int money) {
+        int from = partitionOf(fromId);
+        int to = partitionOf(toId);
+        Transfer transfer = new Transfer(fromId, toId, money, from == to ? null : partitions[Math.max(from, to)]);
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("종료된 이체 실행기입니다.");
+            }
+            partitions[Math.min(from, to)].queue.add(transfer);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return transfer.future;
+    }
+
+    public int partitionOf(String memberId) {
+        int h = memberId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), partitions.length);
+    }
+
+    public int getPartitions() {
+        return partitions.length;
+    }
+
+    /**
+     * 파티션 큐에 대기 중인 작업 수
+     */
+    public int getQueueDepth(int partition) {
+        return partitions[partition].queue.size();
+    }
+
+    /**
+     * 큐에 들어간 시점부터 커밋(또는 실패)까지 걸린 시간
+     */
+    public LatencyRecorder getLatency(int partition) {
+        return partitions[partition].latency;
+    }
+
+    /**
+     * 이미 넣은 작업을 처리하고 종료한다.
+     * 작은 번호 파티션부터 종료해야 남은 파티션 간 이체가 이미 종료된 상대를 기다리지 않는다.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        for (Partition partition : partitions) {
+            partition.queue.add(Stop.INSTANCE);
+            try {
+                partition.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private interface Task {
+    }
+
+    private enum Stop implements Task {
+        INSTANCE
+    }
+
+    private static class Transfer implements Task {
+
+        final String fromId;
+        final String toId;
+        final int money;
+        // 파티션 간 이체의 상대(번호가 큰) 파티션, 같은 파티션이면 null
+        final Partition partner;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Transfer(String fromId, String toId, int money, Partition partner) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+            this.partner = partner;
+        }
+    }
+
+    /**
+     * 상대 파티션 정지 요청
+     */
+    private static class Park implements Task {
+
+        final CountDownLatch parked = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+    }
+
+    private class Partition implements Runnable {
+
+        final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+        final LatencyRecorder latency;
+        final Thread thread;
+
+        Partition(int index) {
+            this.latency = new LatencyRecorder("partition-" + index + " latency");
+            this.thread = new Thread(this, "transfer-partition-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Task> tasks = new ArrayList<>(batchSize);
+            List<Transfer> local = new ArrayList<>(batchSize);
+            try {
+                while (true) {
+                    tasks.add(queue.take());
+                    queue.drainTo(tasks, batchSize - 1);
+                    for (Task task : tasks) {
+                        if (task == Stop.INSTANCE) {
+                            commit(local);
+                            return;
+                        }
+                        if (task instanceof Park) {
+                            // 이전 작업을 먼저 커밋하고 멈춘다.
+                            commit(local);
+                            Park park = (Park) task;
+                            park.parked.countDown();
+                            park.released.await();
+                            continue;
+                        }
+                        Transfer transfer = (Transfer) task;
+                        if (transfer.partner == null) {
+                            local.add(transfer);
+                        } else {
+                            commit(local);
+                            crossPartition(transfer);
+                        }
+                    }
+                    commit(local);
+                    tasks.clear();
+                }
+            } catch (InterruptedException e) {
+                log.warn("partition interrupted {}", thread.getName());
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void crossPartition(Transfer transfer) throws InterruptedException {
+            Park park = new Park();
+            transfer.partner.queue.add(park);
+            park.parked.await();
+            try {
+                List<Transfer> single = new ArrayList<>(1);
+                single.add(transfer);
+                commit(single);
+            } finally {
+                park.released.countDown();
+            }
+        }
+
+        /**
+         * 이체 목록을 트랜젝션 하나로 처리
+         * 실패한 이체는 savepoint 로 되돌리고, 커밋 후에 나머지를 완료시킨다.
+         */
+        private void commit(List<Transfer> transfers) {
+            if (transfers.isEmpty()) {
+                return;
+            }
+            List<Transfer> applied = new ArrayList<>(transfers.size());
+            try {
+                txTemplate.executeWithoutResult(status -> {
+                    for (Transfer transfer : transfers) {
+                        if (apply(status, transfer)) {
+                            applied.add(transfer);
+                        }
+                    }
+                });
+                for (Transfer transfer : applied) {
+                    complete(transfer, null);
+                }
+            } catch (RuntimeException e) {
+                // 커밋 실패 : 적용했던 이체도 모두 실패
+                for (Transfer transfer : applied) {
+                    complete(transfer, e);
+                }
+            } finally {
+                transfers.clear();
+            }
+        }
+
+        private boolean apply(TransactionStatus status, Transfer transfer) {
+            Object savepoint = status.createSavepoint();
+            try {
+                delegate.accountTransfer(transfer.fromId, transfer.toId, transfer.money);
+                status.releaseSavepoint(savepoint);
+                return true;
+            } catch (RuntimeException e) {
+                // savepoint 로 되돌리면 delegate 가 표시한 rollback-only 도 해제된다.
+                status.rollbackToSavepoint(savepoint);
+                complete(transfer, e);
+                return false;
+            }
+        }
+
+        private void complete(Transfer transfer, RuntimeException failure) {
+            latency.recordSince(transfer.enqueuedNanos);
+            if (failure == null) {
+                transfer.future.complete(null);
+            } else {
+                transfer.future.completeExceptionally(failure);
+            }
+        }
+    }
+}
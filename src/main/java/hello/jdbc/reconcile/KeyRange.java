@@ -0,0 +1,19 @@
+package hello.jdbc.reconcile;
+
+import lombok.Data;
+
+/**
+ * member_id 구간 (fromId <= member_id < toId)
+ * fromId 가 null 이면 처음부터, toId 가 null 이면 끝까지
+ */
+@Data
+public class KeyRange {
+
+    private final String fromId;
+    private final String toId;
+
+    public boolean contains(String memberId) {
+        return (fromId == null || memberId.compareTo(fromId) >= 0)
+                && (toId == null || memberId.compareTo(toId) < 0);
+    }
+}
@@ -0,0 +1,31 @@
+package hello.jdbc.reconcile;
+
+import java.util.SortedMap;
+
+/**
+ * 원장 기준 구간별 기대 잔액 합계
+ */
+public interface LedgerTotals {
+
+    long expectedTotal(KeyRange range);
+
+    /**
+     * 회원별 원장 잔액 (member_id 정렬) 에서 구간 합계를 계산
+     */
+    static LedgerTotals of(SortedMap<String, Long> balances) {
+        return range -> {
+            SortedMap<String, Long> sub = balances;
+            if (range.getFromId() != null) {
+                sub = sub.tailMap(range.getFromId());
+            }
+            if (range.getToId() != null) {
+                sub = sub.headMap(range.getToId());
+            }
+            long total = 0;
+            for (long balance : sub.values()) {
+                total += balance;
+            }
+            return total;
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package hello.jdbc.reconcile;
+
+import lombok.Data;
+
+/**
+ * 구간 하나의 스캔 결과
+ */
+@Data
+public class PartitionResult {
+
+    private final KeyRange range;
+    private final long rows;
+    private final long totalMoney;
+    private final long elapsedNanos;
+
+}
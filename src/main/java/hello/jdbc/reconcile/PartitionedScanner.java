@@ -0,0 +1,118 @@
+package hello.jdbc.reconcile;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * member_id 구간을 나누어 병렬로 전체 스캔
+ * - 분할점은 member_id 표본의 분위수로 정하므로 키 분포가 고르지 않아도 구간 크기가 비슷하다.
+ * - 구간마다 ForkJoinPool 작업 하나가 MemberRepository.scanRange 로 읽는다.
+ *   작업 스레드에는 트랜젝션이 없으므로 구간마다 커넥션 풀에서 커넥션을 따로 받는다.
+ * ForkJoinPool 병렬도는 커넥션 풀 크기 이하로 맞추는 것이 좋다. (넘으면 커넥션을 기다린다)
+ *
+ * 구간마다 별도 커넥션(자동 커밋)으로 읽으므로 전체가 한 시점의 스냅샷이 아니다.
+ * 스캔 중에 구간을 넘나드는 이체가 커밋되면 출금은 보고 입금은 못 본 (또는 반대) 구간이 생긴다.
+ */
+@Slf4j
+public class PartitionedScanner {
+
+    // 구간당 표본 수, 많을수록 구간 크기가 고르다.
+    private static final int SAMPLES_PER_PARTITION = 32;
+
+    private final MemberRepository memberRepository;
+    private final ForkJoinPool pool;
+
+    public PartitionedScanner(MemberRepository memberRepository, ForkJoinPool pool) {
+        this.memberRepository = memberRepository;
+        this.pool = pool;
+    }
+
+    /**
+     * 표본 member_id 로 구간을 나눈다.
+     * 데이터가 적어 분할점이 부족하면 partitions 보다 적은 구간이 나온다.
+     */
+    public List<KeyRange> split(int partitions) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        List<String> sample = memberRepository.sampleMemberIds(partitions * SAMPLES_PER_PARTITION);
+
+        List<KeyRange> ranges = new ArrayList<>(partitions);
+        String from = null;
+        for (int i = 1; i < partitions && !sample.isEmpty(); i++) {
+            String splitPoint = sample.get(i * sample.size() / partitions);
+            // 같은 분할점이 반복되면 빈 구간이 생기므로 건너뛴다.
+            if (from == null || splitPoint.compareTo(from) > 0) {
+                ranges.add(new KeyRange(from, splitPoint));
+                from = splitPoint;
+            }
+        }
+        ranges.add(new KeyRange(from, null));
+        return ranges;
+    }
+
+    /**
+     * 구간별 병렬 스캔
+     *
+     * @param consumer 행마다 호출, 여러 스레드에서 동시에 호출되므로 thread-safe 해야 한다. (null 이면 집계만)
+     * @return ranges 순서대로 구간별 결과
+     */
+    public List<PartitionResult> scan(List<KeyRange> ranges, Consumer<Member> consumer) {
+        return pool.invoke(new ScanTask(ranges, consumer));
+    }
+
+    private PartitionResult scanRange(KeyRange range, Consumer<Member> consumer) {
+        long start = System.nanoTime();
+        long[] totalMoney = {0};
+        long rows = memberRepository.scanRange(range.getFromId(), range.getToId(), member -> {
+            totalMoney[0] += member.getMoney();
+            if (consumer != null) {
+                consumer.accept(member);
+            }
+        });
+        PartitionResult result = new PartitionResult(range, rows, totalMoney[0], System.nanoTime() - start);
+        log.debug("scanned {}", result);
+        return result;
+    }
+
+    /**
+     * 구간 목록을 반으로 나누어 fork, 구간 하나가 남으면 직접 스캔
+     */
+    private class ScanTask extends RecursiveTask<List<PartitionResult>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<KeyRange> ranges;
+        private final Consumer<Member> consumer;
+
+        ScanTask(List<KeyRange> ranges, Consumer<Member> consumer) {
+            this.ranges = ranges;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected List<PartitionResult> compute() {
+            if (ranges.size() == 1) {
+                List<PartitionResult> results = new ArrayList<>(1);
+                results.add(scanRange(ranges.get(0), consumer));
+                return results;
+            }
+            int middle = ranges.size() / 2;
+            ScanTask left = new ScanTask(ranges.subList(0, middle), consumer);
+            ScanTask right = new ScanTask(ranges.subList(middle, ranges.size()), consumer);
+            ForkJoinTask.invokeAll(left, right);
+
+            List<PartitionResult> results = new ArrayList<>(left.join());
+            results.addAll(right.join());
+            return results;
+        }
+    }
+}
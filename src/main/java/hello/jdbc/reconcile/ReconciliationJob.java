@@ -0,0 +1,48 @@
+package hello.jdbc.reconcile;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 잔액 보존 검증 작업
+ * 구간별로 병렬 스캔한 잔액 합계를 원장(LedgerTotals)의 구간 합계와 비교한다.
+ * 어긋난 구간만 알려주므로 어느 member_id 범위를 다시 확인하면 되는지 바로 알 수 있다.
+ *
+ * 구간마다 각자의 트랜젝션(커넥션)으로 읽으므로, 스캔 중에 구간 사이 이체가 커밋되면 실제로는 맞는데도 어긋난 것으로 나올 수 있다.
+ * 이체를 멈춘 상태에서 실행하거나, 어긋난 구간은 다시 스캔해서 확인한다.
+ */
+@Slf4j
+public class ReconciliationJob {
+
+    private final PartitionedScanner scanner;
+    private final int partitions;
+
+    public ReconciliationJob(PartitionedScanner scanner, int partitions) {
+        this.scanner = scanner;
+        this.partitions = partitions;
+    }
+
+    public ReconciliationReport run(LedgerTotals ledger) {
+        long start = System.nanoTime();
+        List<PartitionResult> results = scanner.scan(scanner.split(partitions), null);
+        long elapsedNanos = System.nanoTime() - start;
+
+        List<ReconciliationReport.PartitionCheck> checks = new ArrayList<>(results.size());
+        for (PartitionResult result : results) {
+            ReconciliationReport.PartitionCheck check =
+                    new ReconciliationReport.PartitionCheck(result, ledger.expectedTotal(result.getRange()));
+            if (!check.isBalanced()) {
+                log.warn("partition not balanced range={}, actual={}, expected={}",
+                        result.getRange(), result.getTotalMoney(), check.getExpectedTotal());
+            }
+            checks.add(check);
+        }
+
+        ReconciliationReport report = new ReconciliationReport(checks, elapsedNanos);
+        log.info("reconciliation balanced={}, partitions={}, rows={}, rows/s={}",
+                report.isBalanced(), checks.size(), report.getRows(), String.format("%.0f", report.getRowsPerSecond()));
+        return report;
+    }
+}
@@ -0,0 +1,51 @@
+package hello.jdbc.reconcile;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 정합성 검증 결과
+ */
+@Data
+public class ReconciliationReport {
+
+    private final List<PartitionCheck> partitions;
+    private final long elapsedNanos;
+
+    public boolean isBalanced() {
+        for (PartitionCheck partition : partitions) {
+            if (!partition.isBalanced()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getRows() {
+        long rows = 0;
+        for (PartitionCheck partition : partitions) {
+            rows += partition.getResult().getRows();
+        }
+        return rows;
+    }
+
+    /**
+     * 처리량 (초당 행 수)
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : getRows() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Data
+    public static class PartitionCheck {
+
+        private final PartitionResult result;
+        private final long expectedTotal;
+
+        public boolean isBalanced() {
+            return result.getTotalMoney() == expectedTotal;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * sampleMemberIds 공통 구현 (V4_1, V4_2, V5, V6, V7)
+ * count(*) 와 rand() 전체 스캔 + 정렬 대신
+ * 행 수는 테이블 통계(추정치)로 구하고, PK 인덱스 순서로 stride 건씩 건너뛴 member_id 를 한 건씩 읽는다.
+ * 건너뛰는 인덱스 항목은 DB 안에서만 지나가고, 표본 수 만큼만 조회해서 가져온다.
+ * 표본은 무작위가 아니라 PK 순서로 일정한 간격이다. (통계가 오래되었으면 간격이 조금 달라질 뿐이다)
+ */
+final class MemberIdSampler {
+
+    static final String ROW_COUNT_ESTIMATE_SQL = "select row_count_estimate from information_schema.tables"
+            + " where table_schema = current_schema and table_name = 'MEMBER'";
+    static final String ID_AFTER_SQL = "select member_id from member where member_id > ?"
+            + " order by member_id offset ? rows fetch next 1 row only";
+
+    interface IdAfter {
+        /**
+         * memberId 다음부터 offset 건을 건너뛴 member_id
+         */
+        Optional<String> find(String memberId, long offset);
+    }
+
+    private MemberIdSampler() {
+    }
+
+    static List<String> sample(int sampleSize, LongSupplier rowCountEstimate, IdAfter idAfter) {
+        List<String> sample = new ArrayList<>(Math.max(sampleSize, 0));
+        if (sampleSize <= 0) {
+            return sample;
+        }
+        long stride = Math.max(1, rowCountEstimate.getAsLong() / sampleSize);
+        // 빈 문자열보다 큰 member_id 부터 (모든 회원)
+        String last = "";
+        while (sample.size() < sampleSize) {
+            Optional<String> next = idAfter.find(last, stride - 1);
+            if (next.isEmpty()) {
+                break;
+            }
+            last = next.get();
+            sample.add(last);
+        }
+        return sample;
+    }
+}
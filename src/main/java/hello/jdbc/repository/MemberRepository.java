@@ -2,6 +2,16 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
 /**
  * 특정 기술에 종속되지 않는 interface
  * 구현체(impl)에서 런타임으로 변환시키자
@@ -17,8 +27,114 @@ public interface MemberRepository {
 
     Member findById(String memberId);
 
+    /**
+     * 조회 - 없으면 Optional.empty()
+     * 조회 실패가 흔한 경우 예외(스택트레이스) 생성 비용이 들지 않는다.
+     */
+    Optional<Member> findOptionalById(String memberId);
+
+    /**
+     * 존재 여부만 확인 (select 1 ... limit 1)
+     */
+    boolean existsById(String memberId);
+
+    /**
+     * money 컬럼만 조회 - Member 객체를 만들지 않는다.
+     */
+    OptionalInt findMoneyById(String memberId);
+
+    /**
+     * 잔액 범위 조회 (minMoney <= money <= maxMoney)
+     * 결과를 List 로 모으지 않고 한 건씩 consumer 에 넘기므로 결과 크기와 무관하게 메모리를 사용한다.
+     *
+     * @return 조회한 행 수
+     */
+    long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer);
+
+    /**
+     * 잔액 상위 n 명 (money 내림차순)
+     * @throws IllegalArgumentException n 이 음수이면
+     */
+    List<Member> findTopByMoney(int n);
+
+    /**
+     * member_id 구간 조회 (fromId <= member_id < toId)
+     * fromId 가 null 이면 처음부터, toId 가 null 이면 끝까지 읽는다.
+     * PK 인덱스 범위 조회이므로 구간을 나누어 여러 커넥션에서 동시에 읽을 수 있다.
+     *
+     * @return 조회한 행 수
+     */
+    long scanRange(String fromId, String toId, Consumer<Member> consumer);
+
+    /**
+     * 구간 분할용 member_id 표본 (오름차순)
+     * PK 순서로 거의 같은 간격의 member_id 를 최대 sampleSize 건 뽑는다. (전체 행을 읽거나 정렬하지 않는다)
+     */
+    List<String> sampleMemberIds(int sampleSize);
+
+    /**
+     * 여러 회원을 한번의 쿼리로 조회하면서 행 락 (select ... order by member_id for update)
+     * 항상 member_id 순서로 락을 잡으므로 락 순서가 엇갈려 생기는 데드락이 없다.
+     * 트랜젝션 안에서 호출해야 커밋/롤백까지 락이 유지된다.
+     *
+     * @return member_id 오름차순, 없는 회원은 빠진다.
+     */
+    List<Member> findAllByIdForUpdate(Collection<String> memberIds);
+
     void update(String memberId, int money);
 
+    /**
+     * 잔액 증감 일괄 반영
+     * 기본 구현은 findAllByIdForUpdate 로 member_id 순서대로 잠근 뒤 한 건씩 수정하므로 트랜젝션 안에서 호출해야 한다.
+     *
+     * @return member_id 순서대로 반영된 행 수 (0 이면 존재하지 않는 회원)
+     */
+    default int[] addMoneyAll(SortedMap<String, Integer> deltas) {
+        Map<String, Integer> moneys = new HashMap<>();
+        for (Member member : findAllByIdForUpdate(deltas.keySet())) {
+            moneys.put(member.getMemberId(), member.getMoney());
+        }
+        int[] counts = new int[deltas.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            Integer money = moneys.get(entry.getKey());
+            if (money != null) {
+                update(entry.getKey(), Math.addExact(money, entry.getValue()));
+                counts[i] = 1;
+            }
+            i++;
+        }
+        return counts;
+    }
+
+    /**
+     * 낙관적 락 수정
+     * 조회했을 때의 version 이 그대로인 경우에만 money 를 수정하고 version 을 1 올린다. (성공하면 member.version 도 1 증가)
+     * 락을 잡고 기다리지 않는 대신, 그 사이에 다른 트랜젝션이 수정(또는 삭제)했으면 낙관적 락 예외로 알려준다.
+     * (V4_1 : MyOptimisticLockException, 그 외 : 스프링 OptimisticLockingFailureException)
+     */
+    void update(Member member);
+
     void delete(String memberId);
 
+    /**
+     * 없으면 등록, 있으면 수정 (MERGE)
+     * findById -> NoSuchElementException -> save/update 를 한번의 쿼리로 처리한다.
+     */
+    UpsertResult upsert(Member member);
+
+    /**
+     * 여러 건 upsert
+     * 같은 member_id 가 여러번 나오면 마지막 값이 반영되고, 두번째부터는 UPDATED 가 된다.
+     *
+     * @return members 순서대로 등록/수정 여부
+     */
+    default List<UpsertResult> upsertAll(Collection<Member> members) {
+        List<UpsertResult> results = new ArrayList<>(members.size());
+        for (Member member : members) {
+            results.add(upsert(member));
+        }
+        return results;
+    }
+
 }
@@ -1,14 +1,24 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
 import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.repository.exception.MyDuplicateKeyException;
+import hello.jdbc.repository.exception.MyOptimisticLockException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
 
 /**
  * 예외 누수 문제 해결
@@ -19,10 +29,24 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV4_1 implements MemberRepository {
 
+    private static final int FETCH_SIZE = 1000;
+
     private final DataSource dataSource;
+    private final CachedSQLExceptionTranslator errorCodes;
+    private final boolean stacklessDuplicateKey;
 
     public MemberRepositoryV4_1(DataSource dataSource) {
+        this(dataSource, false);
+    }
+
+    /**
+     * @param stacklessDuplicateKey true 이면 키 중복 예외를 스택트레이스 없이 생성한다.
+     *                              키 중복을 복구(재시도)하는 서비스에서 사용
+     */
+    public MemberRepositoryV4_1(DataSource dataSource, boolean stacklessDuplicateKey) {
         this.dataSource = dataSource;
+        this.errorCodes = CachedSQLExceptionTranslator.of(dataSource);
+        this.stacklessDuplicateKey = stacklessDuplicateKey;
     }
 
     @Override
@@ -40,6 +64,10 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt.executeUpdate();
             return member;
         } catch (SQLException e) {
+            // 키 중복은 복구 가능한 예외로 구분
+            if (errorCodes.isDuplicateKey(e)) {
+                throw stacklessDuplicateKey ? MyDuplicateKeyException.stackless(e) : new MyDuplicateKeyException(e);
+            }
             // 런타임 변환
             throw new MyDbException(e);
             // 기존 예외 정보를 파라미터(e)로 꼭 넘겨줘야 한다!!
@@ -51,7 +79,7 @@ public class MemberRepositoryV4_1 implements MemberRepository {
 
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        String sql = "select member_id, money, version from member where member_id = ?";
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -66,7 +94,8 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             if (rs.next()) {
                 Member member = new Member(
                         rs.getString("member_id"),
-                        rs.getInt("money"));
+                        rs.getInt("money"),
+                        rs.getLong("version"));
                 return member;
             } else {
                 throw new NoSuchElementException("member not found memberId = " + memberId);
@@ -79,9 +108,261 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        String sql = "select member_id, money, version from member where member_id = ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                return Optional.of(new Member(rs.getString(1), rs.getInt(2), rs.getLong(3)));
+            }
+            // 예외를 만들지 않는다.
+            return Optional.empty();
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        String sql = "select 1 from member where member_id = ? limit 1";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        String sql = "select money from member where member_id = ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            rs = pstmt.executeQuery();
+            return rs.next() ? OptionalInt.of(rs.getInt(1)) : OptionalInt.empty();
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        // idx_member_money 인덱스 범위 조회
+        String sql = "select member_id, money from member where money between ? and ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(FETCH_SIZE);
+            pstmt.setInt(1, minMoney);
+            pstmt.setInt(2, maxMoney);
+            rs = pstmt.executeQuery();
+
+            long count = 0;
+            while (rs.next()) {
+                consumer.accept(new Member(rs.getString(1), rs.getInt(2)));
+                count++;
+            }
+            return count;
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        // idx_member_money(money desc) 순서대로 n 건만 읽는다.
+        String sql = "select member_id, money from member order by money desc limit ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, n);
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>(n);
+            while (rs.next()) {
+                members.add(new Member(rs.getString(1), rs.getInt(2)));
+            }
+            return members;
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        // PK 인덱스 범위 조회, toId 가 없으면 상한 조건을 뺀다.
+        String sql = toId == null
+                ? "select member_id, money from member where member_id >= ?"
+                : "select member_id, money from member where member_id >= ? and member_id < ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(FETCH_SIZE);
+            // 빈 문자열은 모든 member_id 보다 작거나 같다.
+            pstmt.setString(1, fromId == null ? "" : fromId);
+            if (toId != null) {
+                pstmt.setString(2, toId);
+            }
+            rs = pstmt.executeQuery();
+
+            long count = 0;
+            while (rs.next()) {
+                consumer.accept(new Member(rs.getString(1), rs.getInt(2)));
+                count++;
+            }
+            return count;
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return MemberIdSampler.sample(sampleSize, this::rowCountEstimate, this::findMemberIdAfter);
+    }
+
+    private long rowCountEstimate() {
+        String sql = MemberIdSampler.ROW_COUNT_ESTIMATE_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    private Optional<String> findMemberIdAfter(String memberId, long offset) {
+        String sql = MemberIdSampler.ID_AFTER_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+            pstmt.setLong(2, offset);
+            rs = pstmt.executeQuery();
+            return rs.next() ? Optional.of(rs.getString(1)) : Optional.empty();
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        if (memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // PK 인덱스 순서(member_id)대로 읽으면서 락을 건다.
+        String sql = "select member_id, money from member where member_id in ("
+                + String.join(", ", Collections.nCopies(memberIds.size(), "?"))
+                + ") order by member_id for update";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            int index = 1;
+            for (String memberId : memberIds) {
+                pstmt.setString(index++, memberId);
+            }
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>(memberIds.size());
+            while (rs.next()) {
+                members.add(new Member(rs.getString(1), rs.getInt(2)));
+            }
+            return members;
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money = ? where member_id = ?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -100,6 +381,33 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public void update(Member member) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, member.getMoney());
+            pstmt.setString(2, member.getMemberId());
+            pstmt.setLong(3, member.getVersion());
+            if (pstmt.executeUpdate() == 0) {
+                // 다른 트랜젝션이 먼저 version 을 올렸거나 삭제했다.
+                throw new MyOptimisticLockException("member changed concurrently memberId = "
+                        + member.getMemberId() + ", version = " + member.getVersion());
+            }
+            member.setVersion(member.getVersion() + 1);
+        } catch (SQLException e) {
+            // 런타임 변환
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id = ?";
@@ -120,6 +428,40 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public UpsertResult upsert(Member member) {
+        // OLD TABLE : 변경 전 행을 돌려준다. 비어있으면 insert, 있으면 update 된 것이다.
+        // 수정할 때 version 도 올려야 하므로 merge ... key(member_id) 대신 merge ... using 을 사용한다.
+        // 같은 새 회원을 동시에 upsert 하면 늦은 쪽 insert 가 키 중복으로 실패한다. 그때는 update 로 한번 더 실행한다.
+        String sql = "select member_id from old table (merge into member m"
+                + " using (select cast(? as varchar(10)) member_id, cast(? as integer) money) s on m.member_id = s.member_id"
+                + " when matched then update set money = s.money, version = m.version + 1"
+                + " when not matched then insert (member_id, money) values (s.member_id, s.money))";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            rs = pstmt.executeQuery();
+            return rs.next() ? UpsertResult.UPDATED : UpsertResult.INSERTED;
+        } catch (SQLException e) {
+            if (!errorCodes.isDuplicateKey(e)) {
+                // 런타임 변환
+                throw new MyDbException(e);
+            }
+        } finally {
+            close(conn, pstmt, rs);
+        }
+        // 다른 트랜젝션이 먼저 등록(커밋)했다.
+        update(member.getMemberId(), member.getMoney());
+        return UpsertResult.UPDATED;
+    }
+
     private void close(Connection conn, Statement stmt, ResultSet rs) {
         JdbcUtils.closeResultSet(rs);
         JdbcUtils.closeStatement(stmt);
@@ -2,8 +2,15 @@ package hello.jdbc.repository;
 
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberBatch;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -12,7 +19,19 @@ import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.Consumer;
 
 /**
  * JDBCTemplate 사용
@@ -20,12 +39,23 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV5 implements MemberRepository {
 
+    private static final int UPSERT_BATCH_SIZE = 500;
+    private static final ResultSetExtractor<Boolean> EXISTS_EXTRACTOR = ResultSet::next;
+    // 호출마다 만들지 않고 재사용, 컬럼 이름 대신 인덱스로 조회
+    private static final RowMapper<Member> MEMBER_ROW_MAPPER =
+            (rs, rowNum) -> new Member(rs.getString(1), rs.getInt(2));
+    // member_id, money, version
+    private static final RowMapper<Member> VERSIONED_MEMBER_ROW_MAPPER =
+            (rs, rowNum) -> new Member(rs.getString(1), rs.getInt(2), rs.getLong(3));
+
     private final JdbcTemplate template;
     private final DataSource dataSource;
 
     public MemberRepositoryV5(DataSource dataSource) {
         this.dataSource = dataSource;
         this.template = new JdbcTemplate(dataSource);
+        // DataSource 당 한번만 에러코드를 조회해서 공유
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
     }
 
     @Override
@@ -38,32 +68,301 @@ public class MemberRepositoryV5 implements MemberRepository {
 
     @Override
     public Member findById(String memberId) {
-        String sql = "select * from member where member_id = ?";
+        String sql = "select member_id, money, version from member where member_id = ?";
+
+        return template.queryForObject(sql, VERSIONED_MEMBER_ROW_MAPPER, memberId);
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        String sql = "select member_id, money, version from member where member_id = ?";
+
+        // queryForObject 는 결과가 없으면 EmptyResultDataAccessException 을 만든다.
+        // ResultSetExtractor 로 직접 확인하면 예외가 생기지 않는다.
+        return template.query(sql, rs -> rs.next()
+                ? Optional.of(new Member(rs.getString(1), rs.getInt(2), rs.getLong(3)))
+                : Optional.<Member>empty(), memberId);
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        String sql = "select 1 from member where member_id = ? limit 1";
+
+        return Boolean.TRUE.equals(template.query(sql, EXISTS_EXTRACTOR, memberId));
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        String sql = "select money from member where member_id = ?";
+
+        return template.query(sql, rs -> rs.next() ? OptionalInt.of(rs.getInt(1)) : OptionalInt.empty(), memberId);
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        // idx_member_money 인덱스 범위 조회
+        String sql = "select member_id, money from member where money between ? and ?";
 
-        return template.queryForObject(sql, memberRowMapper(), memberId);
+        long[] count = {0};
+        template.query(sql, rs -> {
+            consumer.accept(new Member(rs.getString(1), rs.getInt(2)));
+            count[0]++;
+        }, minMoney, maxMoney);
+        return count[0];
     }
 
-    private RowMapper<Member> memberRowMapper() {
-        return (rs, rowNum) -> {
-            Member member = new Member();
-            member.setMemberId(rs.getString("member_id"));
-            member.setMoney(rs.getInt("money"));
-            return member;
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        // idx_member_money(money desc) 순서대로 n 건만 읽는다.
+        String sql = "select member_id, money from member order by money desc limit ?";
+
+        return template.query(sql, MEMBER_ROW_MAPPER, n);
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        // PK 인덱스 범위 조회, 빈 문자열은 모든 member_id 보다 작거나 같다.
+        String from = fromId == null ? "" : fromId;
+        long[] count = {0};
+        RowCallbackHandler handler = rs -> {
+            consumer.accept(new Member(rs.getString(1), rs.getInt(2)));
+            count[0]++;
         };
+        if (toId == null) {
+            template.query("select member_id, money from member where member_id >= ?", handler, from);
+        } else {
+            template.query("select member_id, money from member where member_id >= ? and member_id < ?", handler, from, toId);
+        }
+        return count[0];
+    }
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return MemberIdSampler.sample(sampleSize,
+                () -> template.queryForObject(MemberIdSampler.ROW_COUNT_ESTIMATE_SQL, Long.class),
+                (memberId, offset) -> template.queryForList(MemberIdSampler.ID_AFTER_SQL, String.class, memberId, offset)
+                        .stream().findFirst());
+    }
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        if (memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // PK 인덱스 순서(member_id)대로 읽으면서 락을 건다.
+        String sql = "select member_id, money from member where member_id in ("
+                + String.join(", ", Collections.nCopies(memberIds.size(), "?"))
+                + ") order by member_id for update";
+
+        return template.query(sql, MEMBER_ROW_MAPPER, memberIds.toArray());
     }
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
         template.update(sql, money, memberId);
     }
 
+    @Override
+    public void update(Member member) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+
+        int rows = template.update(sql, member.getMoney(), member.getMemberId(), member.getVersion());
+        if (rows == 0) {
+            // 다른 트랜젝션이 먼저 version 을 올렸거나 삭제했다.
+            throw new OptimisticLockingFailureException("member changed concurrently memberId = "
+                    + member.getMemberId() + ", version = " + member.getVersion());
+        }
+        member.setVersion(member.getVersion() + 1);
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id=?";
         template.update(sql, memberId);
     }
 
+    @Override
+    public UpsertResult upsert(Member member) {
+        // OLD TABLE : 변경 전 행을 돌려준다. 비어있으면 insert, 있으면 update 된 것이다.
+        // 수정할 때 version 도 올려야 하므로 merge ... key(member_id) 대신 merge ... using 을 사용한다.
+        // 같은 새 회원을 동시에 upsert 하면 늦은 쪽 insert 가 키 중복으로 실패한다. 그때는 update 로 한번 더 실행한다.
+        String sql = "select member_id from old table (merge into member m"
+                + " using (select cast(? as varchar(10)) member_id, cast(? as integer) money) s on m.member_id = s.member_id"
+                + " when matched then update set money = s.money, version = m.version + 1"
+                + " when not matched then insert (member_id, money) values (s.member_id, s.money))";
+
+        try {
+            List<String> updated = template.queryForList(sql, String.class, member.getMemberId(), member.getMoney());
+            return updated.isEmpty() ? UpsertResult.INSERTED : UpsertResult.UPDATED;
+        } catch (DuplicateKeyException e) {
+            // 다른 트랜젝션이 먼저 등록(커밋)했다.
+            update(member.getMemberId(), member.getMoney());
+            return UpsertResult.UPDATED;
+        }
+    }
+
+    /**
+     * 여러 행을 하나의 MERGE 문으로 묶어서 UPSERT_BATCH_SIZE 건당 한번만 실행한다.
+     */
+    @Override
+    public List<UpsertResult> upsertAll(Collection<Member> members) {
+        // 같은 member_id 는 마지막 값만 반영 (한 문장 안에서 같은 키를 두번 merge 하지 않도록)
+        Map<String, Integer> lastMoney = new LinkedHashMap<>();
+        for (Member member : members) {
+            lastMoney.put(member.getMemberId(), member.getMoney());
+        }
+
+        Set<String> updatedIds = new HashSet<>();
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(lastMoney.entrySet());
+        for (int from = 0; from < entries.size(); from += UPSERT_BATCH_SIZE) {
+            List<Map.Entry<String, Integer>> batch = entries.subList(from, Math.min(from + UPSERT_BATCH_SIZE, entries.size()));
+            try {
+                updatedIds.addAll(template.queryForList(upsertSql(batch.size()), String.class, upsertArgs(batch)));
+            } catch (DuplicateKeyException e) {
+                // 다른 트랜젝션이 같은 새 회원을 먼저 등록했다. 실패한 문장만 되돌려지므로 이 묶음을 한 건씩 다시 실행
+                for (Map.Entry<String, Integer> entry : batch) {
+                    if (upsert(new Member(entry.getKey(), entry.getValue())) == UpsertResult.UPDATED) {
+                        updatedIds.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        List<UpsertResult> results = new ArrayList<>(members.size());
+        Set<String> seen = new HashSet<>();
+        for (Member member : members) {
+            boolean first = seen.add(member.getMemberId());
+            results.add(first && !updatedIds.contains(member.getMemberId())
+                    ? UpsertResult.INSERTED : UpsertResult.UPDATED);
+        }
+        return results;
+    }
+
+    private String upsertSql(int rows) {
+        StringBuilder sql = new StringBuilder("select member_id from old table (merge into member m using (");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : " union all ")
+                    .append("select cast(? as varchar(10)) member_id, cast(? as integer) money");
+        }
+        return sql.append(") s on m.member_id = s.member_id")
+                .append(" when matched then update set money = s.money, version = m.version + 1")
+                .append(" when not matched then insert (member_id, money) values (s.member_id, s.money))")
+                .toString();
+    }
+
+    private Object[] upsertArgs(List<Map.Entry<String, Integer>> batch) {
+        Object[] args = new Object[batch.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : batch) {
+            args[i++] = entry.getKey();
+            args[i++] = entry.getValue();
+        }
+        return args;
+    }
+
+    /**
+     * afterMemberId 다음부터 batch 용량만큼 member_id 순서로 채운다. (keyset 페이징)
+     * 행마다 Member 를 만들지 않고 batch 배열에 바로 담는다.
+     *
+     * @param afterMemberId null 이면 처음부터
+     * @return 채운 행 수, 0 이면 끝
+     */
+    public int findBatchAfter(String afterMemberId, MemberBatch batch) {
+        String sql = "select member_id, money from member where member_id > ? order by member_id limit ?";
+
+        batch.clear();
+        template.query(sql, rs -> {
+            batch.add(rs.getString(1), rs.getInt(2));
+        }, afterMemberId == null ? "" : afterMemberId, batch.capacity());
+        return batch.size();
+    }
+
+    /**
+     * 전체 스캔 - 하나의 batch 를 재사용하면서 가득 찰 때마다 consumer 에 넘긴다.
+     * consumer 가 반환된 후에 batch 는 비워지므로 batch 를 보관하면 안된다.
+     *
+     * @return 스캔한 행 수
+     */
+    public long scanAll(MemberBatch batch, Consumer<MemberBatch> consumer) {
+        String sql = "select member_id, money from member order by member_id";
+
+        long[] rows = {0};
+        batch.clear();
+        template.query(sql, rs -> {
+            batch.add(rs.getString(1), rs.getInt(2));
+            rows[0]++;
+            if (batch.isFull()) {
+                consumer.accept(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+        return rows[0];
+    }
+
+    /**
+     * 일괄 등록 - batch 배열에서 바로 바인딩 (행마다 Object[] 를 만들지 않는다)
+     */
+    public void saveAll(MemberBatch batch) {
+        String sql = "insert into member(member_id, money) values(?, ?)";
+        template.batchUpdate(sql, new MemberBatchSetter(batch, false));
+    }
+
+    /**
+     * 일괄 수정 - money = batch.money where member_id = batch.memberId
+     */
+    public void updateAll(MemberBatch batch) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
+        template.batchUpdate(sql, new MemberBatchSetter(batch, true));
+    }
+
+    private static class MemberBatchSetter implements BatchPreparedStatementSetter {
+
+        private final MemberBatch batch;
+        private final boolean moneyFirst;
+
+        private MemberBatchSetter(MemberBatch batch, boolean moneyFirst) {
+            this.batch = batch;
+            this.moneyFirst = moneyFirst;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setString(moneyFirst ? 2 : 1, batch.getMemberId(i));
+            ps.setInt(moneyFirst ? 1 : 2, batch.getMoney(i));
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batch.size();
+        }
+    }
+
+    /**
+     * 잔액 증감 일괄 반영
+     * 조회 후 계산한 값을 set 하지 않고 money = money + ? 로 DB 에서 더한다.
+     * 여러 트랜젝션이 같은 순서로 락을 잡도록 member_id 정렬 순서로 실행한다.
+     *
+     * @return member_id 순서대로 반영된 행 수 (0 이면 존재하지 않는 회원)
+     */
+    @Override
+    public int[] addMoneyAll(SortedMap<String, Integer> deltas) {
+        String sql = "update member set money = money + ?, version = version + 1 where member_id = ?";
+
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            args.add(new Object[]{entry.getValue(), entry.getKey()});
+        }
+        return template.batchUpdate(sql, args);
+    }
+
 }
 /* JDBC 반복 문제 */
 // 커넥션 조회, 커넥션 동기화
@@ -0,0 +1,153 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.processor.JdbcRepository;
+import hello.jdbc.processor.Query;
+import hello.jdbc.processor.Update;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+
+/**
+ * 어노테이션 프로세서로 구현체 생성
+ * 컴파일 시점에 MemberRepositoryV6Impl 이 만들어진다.
+ * V0 ~ V4_2 의 반복되는 try/finally 코드를 직접 작성하지 않고,
+ * V5 의 JdbcTemplate 콜백, RowMapper 도 사용하지 않는다.
+ *
+ * SQL 만 있는 보조 메소드(insert, scanFrom ...)는 package-private 추상 메소드라 공개 API 에 드러나지 않는다.
+ *
+ * 사용 : new MemberRepositoryV6Impl(dataSource, CachedSQLExceptionTranslator.of(dataSource))
+ */
+@JdbcRepository
+public abstract class MemberRepositoryV6 implements MemberRepository {
+
+    @Update("insert into member(member_id, money) values(?, ?)")
+    abstract void insert(String memberId, int money);
+
+    @Override
+    public Member save(Member member) {
+        insert(member.getMemberId(), member.getMoney());
+        return member;
+    }
+
+    @Override
+    @Query("select member_id, money, version from member where member_id = ?")
+    public abstract Member findById(String memberId);
+
+    @Override
+    @Query("select member_id, money, version from member where member_id = ?")
+    public abstract Optional<Member> findOptionalById(String memberId);
+
+    @Override
+    @Query("select 1 from member where member_id = ? limit 1")
+    public abstract boolean existsById(String memberId);
+
+    @Override
+    @Query("select money from member where member_id = ?")
+    public abstract OptionalInt findMoneyById(String memberId);
+
+    @Override
+    @Query("select member_id, money from member where money between ? and ?")
+    public abstract long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer);
+
+    @Query("select member_id, money from member order by money desc limit ?")
+    abstract List<Member> findTop(int n);
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        return findTop(n);
+    }
+
+    @Query("select member_id, money from member where member_id >= ?")
+    abstract long scanFrom(String fromId, Consumer<Member> consumer);
+
+    @Query("select member_id, money from member where member_id >= ? and member_id < ?")
+    abstract long scanBetween(String fromId, String toId, Consumer<Member> consumer);
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        // 빈 문자열은 모든 member_id 보다 작거나 같다.
+        String from = fromId == null ? "" : fromId;
+        return toId == null ? scanFrom(from, consumer) : scanBetween(from, toId, consumer);
+    }
+
+    @Query(MemberIdSampler.ROW_COUNT_ESTIMATE_SQL)
+    abstract long estimateRowCount();
+
+    @Query(MemberIdSampler.ID_AFTER_SQL)
+    abstract Optional<String> findMemberIdAfter(String memberId, long offset);
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return MemberIdSampler.sample(sampleSize, this::estimateRowCount, this::findMemberIdAfter);
+    }
+
+    /**
+     * 개수가 정해지지 않은 in (...) 대신 배열 파라미터 하나로 바인딩
+     */
+    @Query("select member_id, money from member where member_id = any(?) order by member_id for update")
+    abstract List<Member> lockAll(String[] memberIds);
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        return lockAll(memberIds.toArray(new String[0]));
+    }
+
+    @Update("update member set money = ?, version = version + 1 where member_id = ?")
+    abstract void updateMoney(int money, String memberId);
+
+    @Override
+    public void update(String memberId, int money) {
+        updateMoney(money, memberId);
+    }
+
+    @Update("update member set money = ?, version = version + 1 where member_id = ? and version = ?")
+    abstract int updateMoneyIfVersion(int money, String memberId, long version);
+
+    @Override
+    public void update(Member member) {
+        if (updateMoneyIfVersion(member.getMoney(), member.getMemberId(), member.getVersion()) == 0) {
+            // 다른 트랜젝션이 먼저 version 을 올렸거나 삭제했다.
+            throw new OptimisticLockingFailureException("member changed concurrently memberId = "
+                    + member.getMemberId() + ", version = " + member.getVersion());
+        }
+        member.setVersion(member.getVersion() + 1);
+    }
+
+    @Override
+    @Update("delete from member where member_id = ?")
+    public abstract void delete(String memberId);
+
+    /**
+     * 수정할 때 version 도 올려야 하므로 merge ... using 을 사용한다.
+     *
+     * @return 변경 전 행이 있으면 true (update), 없으면 false (insert)
+     */
+    @Query("select member_id from old table (merge into member m"
+            + " using (select cast(? as varchar(10)) member_id, cast(? as integer) money) s on m.member_id = s.member_id"
+            + " when matched then update set money = s.money, version = m.version + 1"
+            + " when not matched then insert (member_id, money) values (s.member_id, s.money))")
+    abstract boolean merge(String memberId, int money);
+
+    /**
+     * 같은 새 회원을 동시에 upsert 하면 늦은 쪽 insert 가 키 중복으로 실패한다. 그때는 update 로 한번 더 실행한다.
+     */
+    @Override
+    public UpsertResult upsert(Member member) {
+        try {
+            return merge(member.getMemberId(), member.getMoney()) ? UpsertResult.UPDATED : UpsertResult.INSERTED;
+        } catch (DuplicateKeyException e) {
+            // 다른 트랜젝션이 먼저 등록(커밋)했다.
+            updateMoney(member.getMoney(), member.getMemberId());
+            return UpsertResult.UPDATED;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.support.LeanJdbcTemplate;
+import hello.jdbc.repository.support.LeanJdbcTemplate.Binder;
+import hello.jdbc.repository.support.LeanJdbcTemplate.Mapper;
+import hello.jdbc.repository.support.LeanJdbcTemplate.Params;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+
+/**
+ * LeanJdbcTemplate 사용
+ * JdbcTemplate(V5) 과 같은 방식으로 반복 코드를 없애면서 호출당 할당을 줄인다.
+ * 바인더, 매퍼는 모두 캡처하지 않는 static 상수
+ */
+@Slf4j
+public class MemberRepositoryV7 implements MemberRepository {
+
+    private static final int NO_MONEY = Integer.MIN_VALUE;
+
+    private static final Binder NONE = (pstmt, p) -> {
+    };
+    private static final Binder ID = (pstmt, p) -> pstmt.setString(1, p.getString(0));
+    private static final Binder ID_OFFSET = (pstmt, p) -> {
+        pstmt.setString(1, p.getString(0));
+        pstmt.setLong(2, p.getLong(0));
+    };
+    private static final Binder ID_MONEY = (pstmt, p) -> {
+        pstmt.setString(1, p.getString(0));
+        pstmt.setInt(2, p.getInt(0));
+    };
+    private static final Binder MONEY_ID = (pstmt, p) -> {
+        pstmt.setInt(1, p.getInt(0));
+        pstmt.setString(2, p.getString(0));
+    };
+    private static final Binder INT_INT = (pstmt, p) -> {
+        pstmt.setInt(1, p.getInt(0));
+        pstmt.setInt(2, p.getInt(1));
+    };
+    private static final Binder INT = (pstmt, p) -> pstmt.setInt(1, p.getInt(0));
+    private static final Binder MONEY_ID_VERSION = (pstmt, p) -> {
+        pstmt.setInt(1, p.getInt(0));
+        pstmt.setString(2, p.getString(0));
+        pstmt.setLong(3, p.getLong(0));
+    };
+    private static final Binder ID_ARRAY = (pstmt, p) -> pstmt.setObject(1, p.getStringArray());
+    private static final Binder ID_ID = (pstmt, p) -> {
+        pstmt.setString(1, p.getString(0));
+        pstmt.setString(2, p.getString(1));
+    };
+    private static final Mapper<Member> MEMBER = rs -> new Member(rs.getString(1), rs.getInt(2));
+    private static final Mapper<Member> VERSIONED_MEMBER = rs -> new Member(rs.getString(1), rs.getInt(2), rs.getLong(3));
+    private static final Mapper<String> ID_COLUMN = rs -> rs.getString(1);
+    private static final Mapper<Long> LONG_COLUMN = rs -> rs.getLong(1);
+
+    private final LeanJdbcTemplate template;
+
+    public MemberRepositoryV7(DataSource dataSource) {
+        this.template = new LeanJdbcTemplate(dataSource);
+    }
+
+    @Override
+    public Member save(Member member) {
+        String sql = "insert into member(member_id, money) values(?, ?)";
+
+        template.update(sql, ID_MONEY, template.params().add(member.getMemberId()).add(member.getMoney()));
+        return member;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        Member member = findOrNull(memberId);
+        if (member == null) {
+            // V5(queryForObject) 와 같은 예외
+            throw new EmptyResultDataAccessException(1);
+        }
+        return member;
+    }
+
+    @Override
+    public Optional<Member> findOptionalById(String memberId) {
+        return Optional.ofNullable(findOrNull(memberId));
+    }
+
+    private Member findOrNull(String memberId) {
+        String sql = "select member_id, money, version from member where member_id = ?";
+
+        return template.queryOne(sql, ID, template.params().add(memberId), VERSIONED_MEMBER);
+    }
+
+    @Override
+    public boolean existsById(String memberId) {
+        String sql = "select 1 from member where member_id = ? limit 1";
+
+        return template.exists(sql, ID, template.params().add(memberId));
+    }
+
+    @Override
+    public OptionalInt findMoneyById(String memberId) {
+        // money 가 Integer.MIN_VALUE 인 경우까지 구분하기 위해 exists 로 한번 더 확인한다.
+        String sql = "select money from member where member_id = ?";
+
+        int money = template.queryInt(sql, ID, template.params().add(memberId), NO_MONEY);
+        if (money == NO_MONEY && !existsById(memberId)) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(money);
+    }
+
+    @Override
+    public long findByMoneyBetween(int minMoney, int maxMoney, Consumer<Member> consumer) {
+        // idx_member_money 인덱스 범위 조회
+        String sql = "select member_id, money from member where money between ? and ?";
+
+        return template.queryEach(sql, INT_INT, template.params().add(minMoney).add(maxMoney), MEMBER, consumer);
+    }
+
+    @Override
+    public List<Member> findTopByMoney(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        // idx_member_money(money desc) 순서대로 n 건만 읽는다.
+        String sql = "select member_id, money from member order by money desc limit ?";
+
+        return template.queryList(sql, INT, template.params().add(n), MEMBER);
+    }
+
+    @Override
+    public long scanRange(String fromId, String toId, Consumer<Member> consumer) {
+        // PK 인덱스 범위 조회, 빈 문자열은 모든 member_id 보다 작거나 같다.
+        Params params = template.params().add(fromId == null ? "" : fromId);
+        if (toId == null) {
+            return template.queryEach("select member_id, money from member where member_id >= ?", ID, params, MEMBER, consumer);
+        }
+        return template.queryEach("select member_id, money from member where member_id >= ? and member_id < ?",
+                ID_ID, params.add(toId), MEMBER, consumer);
+    }
+
+    @Override
+    public List<String> sampleMemberIds(int sampleSize) {
+        return MemberIdSampler.sample(sampleSize,
+                () -> template.queryOne(MemberIdSampler.ROW_COUNT_ESTIMATE_SQL, NONE, template.params(), LONG_COLUMN),
+                (memberId, offset) -> Optional.ofNullable(template.queryOne(MemberIdSampler.ID_AFTER_SQL, ID_OFFSET,
+                        template.params().add(memberId).add(offset), ID_COLUMN)));
+    }
+
+    @Override
+    public List<Member> findAllByIdForUpdate(Collection<String> memberIds) {
+        if (memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // PK 인덱스 순서(member_id)대로 읽으면서 락을 건다.
+        // 배열 파라미터 하나로 넘기므로 SQL 이 건수와 상관없이 하나다. (V6 lockAll 과 같은 SQL)
+        String sql = "select member_id, money from member where member_id = any(?) order by member_id for update";
+
+        return template.queryList(sql, ID_ARRAY, template.params().add(memberIds.toArray(new String[0])), MEMBER);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ?";
+
+        template.update(sql, MONEY_ID, template.params().add(memberId).add(money));
+    }
+
+    @Override
+    public void update(Member member) {
+        String sql = "update member set money = ?, version = version + 1 where member_id = ? and version = ?";
+
+        int rows = template.update(sql, MONEY_ID_VERSION,
+                template.params().add(member.getMoney()).add(member.getMemberId()).add(member.getVersion()));
+        if (rows == 0) {
+            // 다른 트랜젝션이 먼저 version 을 올렸거나 삭제했다.
+            throw new OptimisticLockingFailureException("member changed concurrently memberId = "
+                    + member.getMemberId() + ", version = " + member.getVersion());
+        }
+        member.setVersion(member.getVersion() + 1);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        String sql = "delete from member where member_id = ?";
+
+        template.update(sql, ID, template.params().add(memberId));
+    }
+
+    @Override
+    public UpsertResult upsert(Member member) {
+        // OLD TABLE : 변경 전 행을 돌려준다. 비어있으면 insert, 있으면 update 된 것이다.
+        // 수정할 때 version 도 올려야 하므로 merge ... key(member_id) 대신 merge ... using 을 사용한다.
+        // 같은 새 회원을 동시에 upsert 하면 늦은 쪽 insert 가 키 중복으로 실패한다. 그때는 update 로 한번 더 실행한다.
+        String sql = "select member_id from old table (merge into member m"
+                + " using (select cast(? as varchar(10)) member_id, cast(? as integer) money) s on m.member_id = s.member_id"
+                + " when matched then update set money = s.money, version = m.version + 1"
+                + " when not matched then insert (member_id, money) values (s.member_id, s.money))";
+
+        try {
+            boolean updated = template.exists(sql, ID_MONEY, template.params().add(member.getMemberId()).add(member.getMoney()));
+            return updated ? UpsertResult.UPDATED : UpsertResult.INSERTED;
+        } catch (DuplicateKeyException e) {
+            // 다른 트랜젝션이 먼저 등록(커밋)했다.
+            update(member.getMemberId(), member.getMoney());
+            return UpsertResult.UPDATED;
+        }
+    }
+}
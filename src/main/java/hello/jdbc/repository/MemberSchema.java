@@ -0,0 +1,33 @@
+package hello.jdbc.repository;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * schema.sql 실행
+ * 스프링 부트는 시작할 때 spring.sql.init 으로 실행하고,
+ * DataSource 를 직접 만들어 쓰는 테스트나 배치는 이 클래스로 DataSource 당 한번 실행한다.
+ * 트랜젝션 안에서 DDL 을 실행하면 커밋되므로 트랜젝션 밖에서 (보통 생성 시점에) 호출해야 한다.
+ */
+public abstract class MemberSchema {
+
+    private static final Set<DataSource> INITIALIZED = Collections.newSetFromMap(new ConcurrentReferenceHashMap<>());
+
+    public static void ensure(DataSource dataSource) {
+        if (INITIALIZED.contains(dataSource)) {
+            return;
+        }
+        synchronized (MemberSchema.class) {
+            if (INITIALIZED.contains(dataSource)) {
+                return;
+            }
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            INITIALIZED.add(dataSource);
+        }
+    }
+}
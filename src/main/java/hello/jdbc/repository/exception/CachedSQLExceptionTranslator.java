@@ -0,0 +1,230 @@
+package hello.jdbc.repository.exception;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.CannotSerializeTransactionException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PermissionDeniedDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.InvalidResultSetAccessException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataSource 당 한번만 만들어지는 예외 변환기
+ * SQLErrorCodeSQLExceptionTranslator 는 리포지토리마다 생성되고, 첫 예외가 발생할 때 DB 메타데이터를 조회한다.
+ * 또 예외마다 에러코드 배열을 순서대로 검색한다.
+ * 여기서는 DataSource 별로 에러코드 -> 스프링 예외 생성 함수 를 HashMap 으로 미리 만들어 둔다.
+ * 테이블에 없는 에러코드는 SQLErrorCodeSQLExceptionTranslator (SQLState 기반 fallback) 에 위임한다.
+ * 배치 예외(BatchUpdateException)는 스프링과 같이 getNextException() 의 에러코드로 변환한다.
+ *
+ * DB 에 접속할 수 없어 메타데이터를 읽지 못하면 RESOLVE_RETRY 동안은 다시 조회하지 않고 SQLState 로만 변환한다.
+ * (DB 장애 중에 예외마다 커넥션을 새로 시도하지 않는다)
+ */
+public class CachedSQLExceptionTranslator implements SQLExceptionTranslator {
+
+    private static final Map<DataSource, CachedSQLExceptionTranslator> CACHE = new ConcurrentReferenceHashMap<>();
+    private static final long RESOLVE_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final DataSource dataSource;
+    private final SQLExceptionTranslator fallback;
+    private final SQLExceptionTranslator sqlStateFallback = new SQLStateSQLExceptionTranslator();
+    private volatile Map<String, Factory> table;
+    private volatile boolean useSqlState;
+    private volatile boolean resolveFailed;
+    private volatile long resolveFailedAt;
+
+    private CachedSQLExceptionTranslator(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.fallback = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        resolve();
+    }
+
+    public static CachedSQLExceptionTranslator of(DataSource dataSource) {
+        return CACHE.computeIfAbsent(dataSource, CachedSQLExceptionTranslator::new);
+    }
+
+    @Override
+    public DataAccessException translate(String task, String sql, SQLException ex) {
+        SQLException sqlEx = unwrap(ex);
+        Map<String, Factory> resolved = resolve();
+        if (resolved == null) {
+            // SQLErrorCodeSQLExceptionTranslator 도 메타데이터를 다시 조회하므로 SQLState 로만 변환한다.
+            return sqlStateFallback.translate(task, sql, sqlEx);
+        }
+        Factory factory = resolved.get(codeOf(sqlEx));
+        if (factory != null) {
+            return factory.create(task, sql, sqlEx);
+        }
+        return fallback.translate(task, sql, ex);
+    }
+
+    /**
+     * 중복 키 에러 여부 - 스프링 예외를 만들지 않고 판단만 한다.
+     */
+    public boolean isDuplicateKey(SQLException ex) {
+        SQLException sqlEx = unwrap(ex);
+        Map<String, Factory> resolved = resolve();
+        if (resolved == null) {
+            // 표준 SQLState : unique constraint violation
+            return "23505".equals(sqlEx.getSQLState());
+        }
+        return resolved.get(codeOf(sqlEx)) == Factory.DUPLICATE_KEY;
+    }
+
+    /**
+     * 배치 예외는 실제 원인이 getNextException() 에 있다. (SQLErrorCodeSQLExceptionTranslator 와 같은 조건)
+     */
+    private static SQLException unwrap(SQLException ex) {
+        if (ex instanceof BatchUpdateException) {
+            SQLException next = ex.getNextException();
+            if (next != null && (next.getErrorCode() > 0 || next.getSQLState() != null)) {
+                return next;
+            }
+        }
+        return ex;
+    }
+
+    private String codeOf(SQLException ex) {
+        return useSqlState ? ex.getSQLState() : Integer.toString(ex.getErrorCode());
+    }
+
+    /**
+     * @return 메타데이터를 아직 읽지 못했으면 null
+     */
+    private Map<String, Factory> resolve() {
+        Map<String, Factory> resolved = table;
+        if (resolved != null) {
+            return resolved;
+        }
+        if (resolveFailed && System.nanoTime() - resolveFailedAt < RESOLVE_RETRY_NANOS) {
+            return null;
+        }
+        synchronized (this) {
+            if (table != null) {
+                return table;
+            }
+            if (resolveFailed && System.nanoTime() - resolveFailedAt < RESOLVE_RETRY_NANOS) {
+                return null;
+            }
+            SQLErrorCodes codes = SQLErrorCodesFactory.getInstance().resolveErrorCodes(dataSource);
+            if (codes == null) {
+                // DB 에 접속할 수 없으면 RESOLVE_RETRY 후에 다시 시도한다.
+                resolveFailedAt = System.nanoTime();
+                resolveFailed = true;
+                return null;
+            }
+            useSqlState = codes.isUseSqlStateForTranslation();
+            table = buildTable(codes);
+            resolveFailed = false;
+            return table;
+        }
+    }
+
+    private static Map<String, Factory> buildTable(SQLErrorCodes codes) {
+        // SQLErrorCodeSQLExceptionTranslator 와 같은 우선순위 (먼저 등록한 것이 우선)
+        Map<String, Factory> table = new HashMap<>();
+        register(table, codes.getBadSqlGrammarCodes(), Factory.BAD_SQL_GRAMMAR);
+        register(table, codes.getInvalidResultSetAccessCodes(), Factory.INVALID_RESULT_SET_ACCESS);
+        register(table, codes.getDuplicateKeyCodes(), Factory.DUPLICATE_KEY);
+        register(table, codes.getDataIntegrityViolationCodes(), Factory.DATA_INTEGRITY_VIOLATION);
+        register(table, codes.getPermissionDeniedCodes(), Factory.PERMISSION_DENIED);
+        register(table, codes.getDataAccessResourceFailureCodes(), Factory.DATA_ACCESS_RESOURCE_FAILURE);
+        register(table, codes.getTransientDataAccessResourceCodes(), Factory.TRANSIENT_DATA_ACCESS_RESOURCE);
+        register(table, codes.getCannotAcquireLockCodes(), Factory.CANNOT_ACQUIRE_LOCK);
+        register(table, codes.getDeadlockLoserCodes(), Factory.DEADLOCK_LOSER);
+        register(table, codes.getCannotSerializeTransactionCodes(), Factory.CANNOT_SERIALIZE_TRANSACTION);
+        return table;
+    }
+
+    private static void register(Map<String, Factory> table, String[] codes, Factory factory) {
+        for (String code : codes) {
+            table.putIfAbsent(code, factory);
+        }
+    }
+
+    private enum Factory {
+        BAD_SQL_GRAMMAR {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new BadSqlGrammarException(task, sql != null ? sql : "", ex);
+            }
+        },
+        INVALID_RESULT_SET_ACCESS {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new InvalidResultSetAccessException(task, sql != null ? sql : "", ex);
+            }
+        },
+        DUPLICATE_KEY {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new DuplicateKeyException(message(task, sql, ex), ex);
+            }
+        },
+        DATA_INTEGRITY_VIOLATION {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new DataIntegrityViolationException(message(task, sql, ex), ex);
+            }
+        },
+        PERMISSION_DENIED {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new PermissionDeniedDataAccessException(message(task, sql, ex), ex);
+            }
+        },
+        DATA_ACCESS_RESOURCE_FAILURE {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new DataAccessResourceFailureException(message(task, sql, ex), ex);
+            }
+        },
+        TRANSIENT_DATA_ACCESS_RESOURCE {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new TransientDataAccessResourceException(message(task, sql, ex), ex);
+            }
+        },
+        CANNOT_ACQUIRE_LOCK {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new CannotAcquireLockException(message(task, sql, ex), ex);
+            }
+        },
+        DEADLOCK_LOSER {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new DeadlockLoserDataAccessException(message(task, sql, ex), ex);
+            }
+        },
+        CANNOT_SERIALIZE_TRANSACTION {
+            @Override
+            DataAccessException create(String task, String sql, SQLException ex) {
+                return new CannotSerializeTransactionException(message(task, sql, ex), ex);
+            }
+        };
+
+        abstract DataAccessException create(String task, String sql, SQLException ex);
+
+        // SQLErrorCodeSQLExceptionTranslator 와 같은 형식
+        private static String message(String task, String sql, SQLException ex) {
+            return task + "; " + (sql != null ? "SQL [" + sql + "]; " : "") + ex.getMessage();
+        }
+    }
+}
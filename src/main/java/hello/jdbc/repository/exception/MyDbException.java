@@ -5,6 +5,8 @@ package hello.jdbc.repository.exception;
  */
 public class MyDbException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     public MyDbException() {
     }
 
@@ -20,4 +22,17 @@ public class MyDbException extends RuntimeException {
         super(cause);
     }
 
+    /**
+     * writableStackTrace = false 이면 스택트레이스를 수집하지 않는다.
+     * 자주 발생하고 호출한 쪽에서 복구하는 예외(예상된 비즈니스 오류)에만 사용한다.
+     * 원인 예외(cause)는 그대로 유지된다.
+     */
+    protected MyDbException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, false, writableStackTrace);
+    }
+
+    public static MyDbException stackless(Throwable cause) {
+        return new MyDbException(cause == null ? null : cause.toString(), cause, false);
+    }
+
 }
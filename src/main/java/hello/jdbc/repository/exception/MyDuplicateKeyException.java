@@ -2,6 +2,8 @@ package hello.jdbc.repository.exception;
 
 public class MyDuplicateKeyException extends MyDbException {
 
+    private static final long serialVersionUID = 1L;
+
     // 기존에 사용했던 MyDbException 을 상속받아서 생성
     // 직접 만든 것이기 때문에, JDBC 나 JPA 등 특정 기술에 종속적이지 않다.
     public MyDuplicateKeyException() {
@@ -18,4 +20,13 @@ public class MyDuplicateKeyException extends MyDbException {
     public MyDuplicateKeyException(Throwable cause) {
         super(cause);
     }
+
+    protected MyDuplicateKeyException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, writableStackTrace);
+    }
+
+    // 키 중복은 호출한 쪽에서 복구하는 경우가 많으므로 스택트레이스 없이 생성할 수 있다.
+    public static MyDuplicateKeyException stackless(Throwable cause) {
+        return new MyDuplicateKeyException(cause == null ? null : cause.toString(), cause, false);
+    }
 }
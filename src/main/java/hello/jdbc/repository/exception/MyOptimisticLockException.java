@@ -0,0 +1,25 @@
+package hello.jdbc.repository.exception;
+
+/**
+ * 낙관적 락 충돌 - 조회 후 수정하기 전에 다른 트랜젝션이 먼저 수정(또는 삭제)했다.
+ * 다시 조회해서 처음부터 처리하면 성공할 수 있다.
+ */
+public class MyOptimisticLockException extends MyDbException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MyOptimisticLockException() {
+    }
+
+    public MyOptimisticLockException(String message) {
+        super(message);
+    }
+
+    public MyOptimisticLockException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public MyOptimisticLockException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,253 @@
+package hello.jdbc.repository.support;
+
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 가벼운 JDBC 실행 템플릿
+ * JdbcTemplate 처럼 커넥션 획득/반환, 예외 변환, 리소스 정리를 대신해주지만 호출마다 객체를 만들지 않는다.
+ * - Binder, Mapper 는 static 상수(캡처하지 않는 람다)로 만들어서 재사용한다.
+ * - 파라미터는 스레드별로 재사용하는 Params 에 담는다. (varargs Object[], ArgumentPreparedStatementSetter 생성 없음)
+ * - 한 건 조회는 결과 List 를 만들지 않는다.
+ * - 예외 변환기는 DataSource 당 하나 (CachedSQLExceptionTranslator)
+ */
+public class LeanJdbcTemplate {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final ThreadLocal<Params> PARAMS = ThreadLocal.withInitial(Params::new);
+
+    private final DataSource dataSource;
+    private final SQLExceptionTranslator exceptionTranslator;
+
+    public LeanJdbcTemplate(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.exceptionTranslator = CachedSQLExceptionTranslator.of(dataSource);
+    }
+
+    @FunctionalInterface
+    public interface Binder {
+        void bind(PreparedStatement pstmt, Params params) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Mapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 현재 스레드의 파라미터 홀더 (비워진 상태)
+     * 다음 params() 호출 전까지만 유효하다.
+     */
+    public Params params() {
+        return PARAMS.get().reset();
+    }
+
+    /**
+     * 한 건 조회
+     *
+     * @return 결과가 없으면 null
+     */
+    public <T> T queryOne(String sql, Binder binder, Params params, Mapper<T> mapper) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            binder.bind(pstmt, params);
+            rs = pstmt.executeQuery();
+            return rs.next() ? mapper.map(rs) : null;
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("queryOne", sql, e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 여러 건 조회 - 결과를 모으지 않고 한 건씩 consumer 에 넘긴다.
+     *
+     * @return 조회한 행 수
+     */
+    public <T> long queryEach(String sql, Binder binder, Params params, Mapper<T> mapper, Consumer<? super T> consumer) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(FETCH_SIZE);
+            // 바인딩이 끝난 후에는 consumer 안에서 params() 를 다시 사용해도 된다.
+            binder.bind(pstmt, params);
+            rs = pstmt.executeQuery();
+            long count = 0;
+            while (rs.next()) {
+                consumer.accept(mapper.map(rs));
+                count++;
+            }
+            return count;
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("queryEach", sql, e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 여러 건 조회
+     */
+    public <T> List<T> queryList(String sql, Binder binder, Params params, Mapper<T> mapper) {
+        List<T> result = new ArrayList<>();
+        queryEach(sql, binder, params, mapper, result::add);
+        return result;
+    }
+
+    /**
+     * 결과 행 존재 여부
+     */
+    public boolean exists(String sql, Binder binder, Params params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            binder.bind(pstmt, params);
+            rs = pstmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("exists", sql, e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 첫번째 int 컬럼 조회 (boxing 없음)
+     *
+     * @return 결과가 없으면 defaultValue
+     */
+    public int queryInt(String sql, Binder binder, Params params, int defaultValue) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            binder.bind(pstmt, params);
+            rs = pstmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : defaultValue;
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("queryInt", sql, e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 등록, 수정, 삭제
+     *
+     * @return 반영된 행 수
+     */
+    public int update(String sql, Binder binder, Params params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            conn = DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+            binder.bind(pstmt, params);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("update", sql, e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    private void close(Connection conn, PreparedStatement pstmt, ResultSet rs) {
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(pstmt);
+        DataSourceUtils.releaseConnection(conn, dataSource);
+    }
+
+    /**
+     * 스레드별로 재사용하는 파라미터 홀더
+     * 문자열, int, long 값을 타입별로 추가한 순서대로 꺼낸다.
+     * 개수가 정해지지 않은 값은 배열 하나로 넘긴다. (member_id = any(?))
+     */
+    public static class Params {
+
+        private static final int MAX = 4;
+
+        private final String[] strings = new String[MAX];
+        private final int[] ints = new int[MAX];
+        private final long[] longs = new long[MAX];
+        private int stringCount;
+        private int intCount;
+        private int longCount;
+        private String[] stringArray;
+
+        private Params reset() {
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = null;
+            }
+            stringCount = 0;
+            intCount = 0;
+            longCount = 0;
+            stringArray = null;
+            return this;
+        }
+
+        public Params add(String value) {
+            strings[stringCount++] = value;
+            return this;
+        }
+
+        public Params add(int value) {
+            ints[intCount++] = value;
+            return this;
+        }
+
+        public Params add(long value) {
+            longs[longCount++] = value;
+            return this;
+        }
+
+        public Params add(String[] values) {
+            stringArray = values;
+            return this;
+        }
+
+        public String getString(int index) {
+            return strings[index];
+        }
+
+        public int getInt(int index) {
+            return ints[index];
+        }
+
+        public long getLong(int index) {
+            return longs[index];
+        }
+
+        public String[] getStringArray() {
+            return stringArray;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package hello.jdbc.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 재시도 예산 (토큰 버킷)
+ * 성공할 때마다 ratio 만큼 토큰이 쌓이고, 재시도 한번에 토큰 1개를 쓴다.
+ * 장애나 심한 경합으로 대부분 실패하면 토큰이 바닥나서 재시도를 멈추므로
+ * 재시도가 부하를 키우는 재시도 폭주(retry storm)를 막는다.
+ * 예) ratio 0.2 : 길게 보면 성공 5건당 재시도 1번까지 허용
+ */
+public class RetryBudget {
+
+    // 소수 토큰을 정수로 다루기 위한 단위
+    private static final long UNIT = 1000;
+
+    private final long maxTokens;
+    private final long depositPerSuccess;
+    private final AtomicLong tokens;
+
+    /**
+     * @param maxTokens 최대 토큰 수 (한꺼번에 허용하는 재시도 수), 처음에는 가득 찬 상태
+     * @param ratio     성공 1건당 쌓이는 토큰
+     */
+    public RetryBudget(int maxTokens, double ratio) {
+        if (maxTokens <= 0 || ratio < 0) {
+            throw new IllegalArgumentException("maxTokens must be positive and ratio must not be negative");
+        }
+        this.maxTokens = maxTokens * UNIT;
+        this.depositPerSuccess = Math.round(ratio * UNIT);
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    /**
+     * 재시도 한번을 허용하면 토큰을 쓰고 true
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long current = tokens.get();
+            if (current < UNIT) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    public void onSuccess() {
+        if (depositPerSuccess == 0) {
+            return;
+        }
+        tokens.accumulateAndGet(depositPerSuccess, (current, deposit) -> Math.min(maxTokens, current + deposit));
+    }
+
+    public double getAvailable() {
+        return (double) tokens.get() / UNIT;
+    }
+}
@@ -0,0 +1,73 @@
+package hello.jdbc.retry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재시도 지표
+ * attempts / successes 가 1 에 가까울수록 경합이 적다.
+ */
+public class RetryMetrics {
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    void attempt() {
+        attempts.increment();
+    }
+
+    void success() {
+        successes.increment();
+    }
+
+    void failure() {
+        failures.increment();
+    }
+
+    void retry() {
+        retries.increment();
+    }
+
+    void budgetExhausted() {
+        budgetExhausted.increment();
+    }
+
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    /**
+     * 재시도 후에도 실패한 건수 (재시도 대상이 아닌 예외 포함)
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * 예산이 없어 재시도하지 못하고 실패한 건수
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    public double getAttemptsPerSuccess() {
+        long successes = getSuccesses();
+        return successes == 0 ? 0 : (double) getAttempts() / successes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("attempts=%d successes=%d failures=%d retries=%d budgetExhausted=%d attempts/success=%.3f",
+                getAttempts(), getSuccesses(), getFailures(), getRetries(), getBudgetExhausted(), getAttemptsPerSuccess());
+    }
+}
@@ -0,0 +1,107 @@
+package hello.jdbc.retry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 재시도 트랜젝션 경계
+ * 락 타임아웃, 데드락, 낙관적 락 충돌처럼 잠깐 기다렸다 다시 하면 성공할 수 있는 예외(ConcurrencyFailureException)가
+ * 나면 트랜젝션 단위 전체를 다시 실행한다.
+ * H2 는 스프링 에러 코드 목록에 데드락 코드가 없어서 데드락(40001)이 DeadlockLoserDataAccessException 이 아닌
+ * ConcurrencyFailureException 으로 변환된다. 그래서 기본 조건은 ConcurrencyFailureException 전체로 잡는다.
+ *
+ * - 작업은 @Transactional 프록시 호출이나 TransactionTemplate.execute 처럼 트랜젝션 하나를 통째로 시작/종료해야 한다.
+ *   이미 진행 중인 트랜젝션에 참여한 작업은 롤백 전용이 되므로 다시 실행해도 소용이 없다. (호출 시 예외)
+ * - 대기 시간 : 0 ~ min(maxBackoff, baseBackoff * 2^(재시도 횟수 - 1)) 사이 무작위 (full jitter)
+ *   같이 실패한 트랜젝션들이 같은 시각에 다시 부딪히지 않도록 흩어준다.
+ * - RetryBudget 이 바닥나면 재시도 없이 바로 실패한다.
+ */
+@Slf4j
+public class TransactionRetrier {
+
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final RetryBudget budget;
+    private final RetryMetrics metrics = new RetryMetrics();
+    private final Predicate<Throwable> retryable;
+
+    public TransactionRetrier(int maxAttempts, Duration baseBackoff, Duration maxBackoff, RetryBudget budget) {
+        // CannotAcquireLockException, DeadlockLoserDataAccessException, OptimisticLockingFailureException 의 부모
+        this(maxAttempts, baseBackoff, maxBackoff, budget, ConcurrencyFailureException.class::isInstance);
+    }
+
+    public TransactionRetrier(int maxAttempts, Duration baseBackoff, Duration maxBackoff, RetryBudget budget,
+                              Predicate<Throwable> retryable) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.budget = budget;
+        this.retryable = retryable;
+    }
+
+    public void run(Runnable transaction) {
+        execute(() -> {
+            transaction.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(Supplier<T> transaction) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("재시도는 트랜젝션 밖에서 시작해야 합니다.");
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            metrics.attempt();
+            try {
+                T result = transaction.get();
+                metrics.success();
+                budget.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                if (!retryable.test(e) || attempt >= maxAttempts) {
+                    metrics.failure();
+                    throw e;
+                }
+                if (!budget.tryAcquire()) {
+                    metrics.budgetExhausted();
+                    metrics.failure();
+                    throw e;
+                }
+                metrics.retry();
+                log.debug("retry attempt={}, cause={}", attempt, e.toString());
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    public RetryMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void backoff(int attempt, RuntimeException cause) {
+        long ceiling = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempt - 1, 30));
+        if (ceiling <= 0) {
+            return;
+        }
+        long nanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            // 인터럽트 상태를 복구하고 원래 예외로 실패
+            Thread.currentThread().interrupt();
+            metrics.failure();
+            throw cause;
+        }
+    }
+}
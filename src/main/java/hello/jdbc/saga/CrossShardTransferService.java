@@ -0,0 +1,246 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.service.TransferService;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.TransactionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 샤드 간 이체 (사가, XA 없이)
+ *
+ * 두 회원이 다른 DataSource 에 있으면 트랜젝션 하나로 묶을 수 없으므로 로컬 트랜젝션으로 나누어 실행한다.
+ * 1. 출금 샤드 : 출금 + outbox(PENDING) 기록 - 같은 트랜젝션
+ * 2. 입금 샤드 : inbox(CREDITED) 기록 + 입금 - 같은 트랜젝션, inbox PK 로 같은 이체를 두번 입금하지 않는다.
+ * 3. 출금 샤드 : outbox COMPLETED
+ * 입금이 실패하면 (회원 없음, "ex" 등) 보상한다.
+ * - 입금 샤드에 inbox(REJECTED) 를 먼저 기록해서 이후의 입금 재시도를 막고,
+ * - 출금 샤드에서 outbox 를 COMPENSATED 로 바꾸면서 출금을 되돌린다.
+ * REJECTED 를 기록하려는데 이미 CREDITED 이면 (응답만 잃어버린 입금) 보상하지 않고 완료한다.
+ *
+ * 입금이 DB 연결 실패 같은 일시적인 오류로 끝나지 않으면 outbox 를 PENDING 으로 남기고 SagaRecoveryScanner 가 이어서 처리한다.
+ * 이 이체는 아직 입금될 수도, 보상될 수도 있으므로
+ * transfer 는 SagaStatus.PENDING 을, accountTransfer 는 TransferPendingException 을 돌려준다. (성공으로 보고하지 않는다)
+ *
+ * 같은 샤드 안의 이체는 로컬 트랜젝션 하나로 처리한다.
+ */
+@Slf4j
+public class CrossShardTransferService implements TransferService {
+
+    private static final String CREDITED = "CREDITED";
+    private static final String REJECTED = "REJECTED";
+
+    private final List<Shard> shards;
+    private final ShardRouter router;
+    private final SagaMetrics metrics = new SagaMetrics();
+
+    public CrossShardTransferService(List<Shard> shards, ShardRouter router) {
+        this.shards = new ArrayList<>(shards);
+        this.router = router;
+    }
+
+    /**
+     * @throws TransferPendingException 입금을 확인하지 못해 복구 스캐너에 넘긴 경우
+     */
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        SagaResult result = transfer(fromId, toId, money);
+        if (result.getStatus() == SagaStatus.PENDING) {
+            throw new TransferPendingException(result.getTransferId());
+        }
+    }
+
+    /**
+     * accountTransfer 와 같지만 입금 대기(PENDING)를 예외 대신 결과로 돌려준다.
+     */
+    public SagaResult transfer(String fromId, String toId, int money) {
+        long start = System.nanoTime();
+        TransferValidator.requireDistinct(fromId, toId);
+        Shard source = shardOf(fromId);
+        Shard target = shardOf(toId);
+        try {
+            if (source == target) {
+                transferLocal(source, fromId, toId, money);
+                metrics.local();
+                return new SagaResult(null, SagaStatus.COMPLETED);
+            }
+            TransferLeg leg = new TransferLeg(UUID.randomUUID().toString(), fromId, toId, money);
+            source.tx().executeWithoutResult(status -> {
+                addMoney(source, fromId, -money);
+                source.template().update("insert into transfer_outbox(transfer_id, from_id, to_id, money) values (?, ?, ?, ?)",
+                        leg.getTransferId(), fromId, toId, money);
+            });
+            return new SagaResult(leg.getTransferId(), finish(leg, source, target, false));
+        } finally {
+            metrics.getLatency().recordSince(start);
+        }
+    }
+
+    public SagaMetrics getMetrics() {
+        return metrics;
+    }
+
+    List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * 복구 - 출금은 끝났고 PENDING 으로 남은 이체를 이어서 처리한다.
+     * 입금, 보상 모두 여러번 실행해도 한번만 반영된다.
+     */
+    void resume(Shard source, TransferLeg leg) {
+        try {
+            finish(leg, source, shardOf(leg.getToId()), true);
+        } catch (RuntimeException e) {
+            // 보상까지 끝났으면 원래 입금 실패 예외가 나온다.
+            log.info("recovered leg compensated transferId={}, cause={}", leg.getTransferId(), e.toString());
+        }
+    }
+
+    /**
+     * 2, 3 단계 (입금, 완료) 또는 보상
+     *
+     * @return 입금했으면 COMPLETED (outbox 완료 표시가 실패해도 입금은 되돌려지지 않는다), 입금을 미뤘으면 PENDING
+     */
+    private SagaStatus finish(TransferLeg leg, Shard source, Shard target, boolean recovering) {
+        boolean credited;
+        try {
+            credited = credit(target, leg);
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                defer(source, leg, e);
+                return SagaStatus.PENDING;
+            }
+            compensate(source, target, leg, recovering);
+            throw e;
+        }
+        if (!credited) {
+            // 이미 보상을 시작한 이체
+            compensate(source, target, leg, recovering);
+            throw new IllegalStateException("이미 보상된 이체 transferId=" + leg.getTransferId());
+        }
+        try {
+            source.template().update("update transfer_outbox set status = 'COMPLETED', updated_at = current_timestamp"
+                    + " where transfer_id = ? and status = 'PENDING'", leg.getTransferId());
+        } catch (RuntimeException e) {
+            // 입금은 끝났다. 복구할 때 inbox 의 CREDITED 를 보고 완료로 바꾼다.
+            log.warn("outbox complete failed transferId={}", leg.getTransferId(), e);
+            metrics.deferred();
+            return SagaStatus.COMPLETED;
+        }
+        if (recovering) {
+            metrics.recovered();
+        }
+        metrics.completed();
+        return SagaStatus.COMPLETED;
+    }
+
+    /**
+     * @return 입금했거나 이미 입금되어 있으면 true, 보상이 시작된 이체(REJECTED)면 false
+     */
+    private boolean credit(Shard target, TransferLeg leg) {
+        try {
+            target.tx().executeWithoutResult(status -> {
+                target.template().update("insert into transfer_inbox(transfer_id, status) values (?, ?)",
+                        leg.getTransferId(), CREDITED);
+                TransferValidator.requireReceivable(leg.getToId());
+                addMoney(target, leg.getToId(), leg.getMoney());
+            });
+            return true;
+        } catch (DuplicateKeyException e) {
+            return CREDITED.equals(inboxStatus(target, leg));
+        }
+    }
+
+    /**
+     * 입금 샤드에 REJECTED 를 남긴 후 출금을 되돌린다.
+     * 일시적인 오류로 보상하지 못하면 PENDING 으로 남아서 복구 스캐너가 다시 시도한다.
+     */
+    private void compensate(Shard source, Shard target, TransferLeg leg, boolean recovering) {
+        try {
+            try {
+                target.template().update("insert into transfer_inbox(transfer_id, status) values (?, ?)",
+                        leg.getTransferId(), REJECTED);
+            } catch (DuplicateKeyException e) {
+                if (CREDITED.equals(inboxStatus(target, leg))) {
+                    // 입금 응답만 잃어버렸다. 보상하지 않고 복구 스캐너가 완료로 바꾼다.
+                    log.warn("leg already credited, skip compensation transferId={}", leg.getTransferId());
+                    metrics.deferred();
+                    return;
+                }
+            }
+            Boolean refunded = source.tx().execute(status -> {
+                int rows = source.template().update("update transfer_outbox set status = 'COMPENSATED', updated_at = current_timestamp"
+                        + " where transfer_id = ? and status = 'PENDING'", leg.getTransferId());
+                if (rows == 0) {
+                    // 이미 보상했다.
+                    return false;
+                }
+                addMoney(source, leg.getFromId(), leg.getMoney());
+                return true;
+            });
+            if (Boolean.TRUE.equals(refunded)) {
+                if (recovering) {
+                    metrics.recovered();
+                }
+                metrics.compensated();
+            }
+        } catch (RuntimeException e) {
+            if (!isTransient(e)) {
+                throw e;
+            }
+            defer(source, leg, e);
+        }
+    }
+
+    private void defer(Shard source, TransferLeg leg, RuntimeException cause) {
+        log.warn("leg deferred to recovery transferId={}, cause={}", leg.getTransferId(), cause.toString());
+        metrics.deferred();
+        try {
+            source.template().update("update transfer_outbox set attempts = attempts + 1, updated_at = current_timestamp"
+                    + " where transfer_id = ?", leg.getTransferId());
+        } catch (RuntimeException e) {
+            log.warn("outbox attempts update failed transferId={}", leg.getTransferId(), e);
+        }
+    }
+
+    private void transferLocal(Shard shard, String fromId, String toId, int money) {
+        shard.tx().executeWithoutResult(status -> {
+            addMoney(shard, fromId, -money);
+            TransferValidator.requireReceivable(toId);
+            addMoney(shard, toId, money);
+        });
+    }
+
+    private String inboxStatus(Shard target, TransferLeg leg) {
+        return target.template().queryForObject("select status from transfer_inbox where transfer_id = ?",
+                String.class, leg.getTransferId());
+    }
+
+    private void addMoney(Shard shard, String memberId, int money) {
+        int rows = shard.template().update("update member set money = money + ?, version = version + 1 where member_id = ?",
+                money, memberId);
+        if (rows == 0) {
+            throw TransferValidator.memberNotFound(memberId);
+        }
+    }
+
+    private Shard shardOf(String memberId) {
+        return shards.get(router.shardOf(memberId));
+    }
+
+    /**
+     * 다시 시도하면 성공할 수 있는 오류 (연결 실패, 락 타임아웃, 트랜젝션 시작 실패 등)
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+}
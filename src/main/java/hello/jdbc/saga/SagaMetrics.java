@@ -0,0 +1,80 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.metrics.LatencyRecorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 샤드 간 이체 지표
+ */
+public class SagaMetrics {
+
+    private final LongAdder local = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder compensated = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LatencyRecorder latency = new LatencyRecorder("saga.transfer");
+
+    void local() {
+        local.increment();
+    }
+
+    void completed() {
+        completed.increment();
+    }
+
+    void compensated() {
+        compensated.increment();
+    }
+
+    void deferred() {
+        deferred.increment();
+    }
+
+    void recovered() {
+        recovered.increment();
+    }
+
+    /**
+     * 같은 샤드 안의 이체 (로컬 트랜젝션 하나)
+     */
+    public long getLocal() {
+        return local.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getCompensated() {
+        return compensated.sum();
+    }
+
+    /**
+     * 일시적인 오류로 복구 스캐너에 넘긴 이체
+     */
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    /**
+     * 복구 스캐너가 끝낸 이체 (입금 또는 보상)
+     */
+    public long getRecovered() {
+        return recovered.sum();
+    }
+
+    /**
+     * accountTransfer 호출 시간
+     */
+    public LatencyRecorder getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("local=%d completed=%d compensated=%d deferred=%d recovered=%d %s",
+                getLocal(), getCompleted(), getCompensated(), getDeferred(), getRecovered(), latency);
+    }
+}
@@ -0,0 +1,66 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.support.PeriodicTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 멈춘 이체 복구
+ * 각 샤드의 outbox 에서 stuckAfter 이상 PENDING 으로 남은 이체를 찾아 입금(또는 보상)을 이어서 실행한다.
+ * - 입금 후 완료 표시 전에 중단 : inbox 가 CREDITED 이므로 입금하지 않고 완료로 바꾼다.
+ * - 출금 후 입금 전에 중단 : 입금한다.
+ * - 입금 샤드 연결 실패가 계속되면 attempts 를 올리고 다음 scan 에 다시 시도한다.
+ * 진행 중인 이체와 겹쳐도 inbox PK 와 outbox 상태 조건으로 한번만 반영된다.
+ */
+@Slf4j
+public class SagaRecoveryScanner {
+
+    private final CrossShardTransferService transferService;
+    private final Duration stuckAfter;
+    private final int batchSize;
+
+    private final PeriodicTask scheduler = new PeriodicTask("saga-recovery", this::scan);
+
+    public SagaRecoveryScanner(CrossShardTransferService transferService, Duration stuckAfter, int batchSize) {
+        this.transferService = transferService;
+        this.stuckAfter = stuckAfter;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return 처리한 이체 수
+     */
+    public int scan() {
+        int resumed = 0;
+        for (Shard shard : transferService.getShards()) {
+            List<TransferLeg> legs;
+            try {
+                legs = shard.template().query("select transfer_id, from_id, to_id, money from transfer_outbox"
+                                + " where status = 'PENDING' and updated_at < dateadd('MILLISECOND', ?, current_timestamp)"
+                                + " order by updated_at limit ?",
+                        (rs, rowNum) -> new TransferLeg(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4)),
+                        -stuckAfter.toMillis(), batchSize);
+            } catch (RuntimeException e) {
+                // 이 샤드는 다음 scan 에 다시 본다.
+                log.warn("outbox scan failed shard={}", shard.getName(), e);
+                continue;
+            }
+            for (TransferLeg leg : legs) {
+                log.info("resume stuck leg shard={}, leg={}", shard.getName(), leg);
+                transferService.resume(shard, leg);
+                resumed++;
+            }
+        }
+        return resumed;
+    }
+
+    public void start(Duration period) {
+        scheduler.start(period);
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+}
@@ -0,0 +1,15 @@
+package hello.jdbc.saga;
+
+import lombok.Data;
+
+/**
+ * 샤드 간 이체 결과 (CrossShardTransferService.transfer)
+ * transferId 는 transfer_outbox / transfer_inbox 의 키, 같은 샤드 안의 이체는 null
+ */
+@Data
+public class SagaResult {
+
+    private final String transferId;
+    private final SagaStatus status;
+
+}
@@ -0,0 +1,17 @@
+package hello.jdbc.saga;
+
+/**
+ * 샤드 간 이체 결과
+ */
+public enum SagaStatus {
+
+    /**
+     * 입금까지 끝났다. (같은 샤드 안의 이체 포함) 더 이상 되돌려지지 않는다.
+     */
+    COMPLETED,
+
+    /**
+     * 출금만 되어 있다. SagaRecoveryScanner 가 입금하거나, 입금이 거절되면 보상(환불)한다.
+     */
+    PENDING
+}
@@ -0,0 +1,46 @@
+package hello.jdbc.saga;
+
+import hello.jdbc.aggregate.BalanceAggregates;
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * 회원을 나누어 저장하는 DB 하나 (DataSource 와 그 DataSource 의 로컬 트랜젝션)
+ */
+public class Shard {
+
+    private final String name;
+    private final JdbcTemplate template;
+    private final TransactionTemplate txTemplate;
+
+    public Shard(String name, DataSource dataSource) {
+        MemberSchema.ensure(dataSource);
+        BalanceAggregates.requireUnaggregated(dataSource, "CrossShardTransferService");
+        this.name = name;
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+        this.txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    JdbcTemplate template() {
+        return template;
+    }
+
+    TransactionTemplate tx() {
+        return txTemplate;
+    }
+
+    @Override
+    public String toString() {
+        return "Shard(" + name + ")";
+    }
+}
@@ -0,0 +1,9 @@
+package hello.jdbc.saga;
+
+/**
+ * 회원이 저장된 샤드 번호
+ */
+public interface ShardRouter {
+
+    int shardOf(String memberId);
+}
@@ -0,0 +1,16 @@
+package hello.jdbc.saga;
+
+import lombok.Data;
+
+/**
+ * 출금은 끝났고 입금(또는 보상)이 남은 이체 (transfer_outbox 의 PENDING 행)
+ */
+@Data
+public class TransferLeg {
+
+    private final String transferId;
+    private final String fromId;
+    private final String toId;
+    private final int money;
+
+}
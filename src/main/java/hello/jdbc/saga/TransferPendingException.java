@@ -0,0 +1,20 @@
+package hello.jdbc.saga;
+
+import lombok.Getter;
+
+/**
+ * 출금은 끝났지만 입금을 확인하지 못한 이체 (SagaStatus.PENDING)
+ * 아직 입금될 수도, 보상될 수도 있으므로 성공으로 보고하지 않는다. transferId 로 outbox 상태를 조회한다.
+ */
+@Getter
+public class TransferPendingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String transferId;
+
+    public TransferPendingException(String transferId) {
+        super("입금 대기중인 이체 transferId=" + transferId);
+        this.transferId = transferId;
+    }
+}
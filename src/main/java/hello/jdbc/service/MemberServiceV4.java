@@ -14,11 +14,12 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Slf4j
 @RequiredArgsConstructor
-public class MemberServiceV4 {
+public class MemberServiceV4 implements TransferService {
 
     // 런타임 예외로 변환시킨 MemberRepository
     private final MemberRepository memberRepository;
 
+    @Override
     @Transactional
     public void accountTransfer(String fromId, String toId, int money) {
         // Repository 에서 RuntimeException 으로 변환했기 때문에
@@ -32,13 +33,7 @@ public class MemberServiceV4 {
         Member toMember = memberRepository.findById(toId);
 
         memberRepository.update(fromId, fromMember.getMoney() - money);
-        validate(toMember);
+        TransferValidator.requireReceivable(toMember.getMemberId());
         memberRepository.update(toId, toMember.getMoney() + money);
     }
-
-    private void validate(Member toMember) {
-        if (toMember.getMemberId().equals("ex")) {
-            throw new IllegalStateException("이체중 예외 발생");
-        }
-    }
 }
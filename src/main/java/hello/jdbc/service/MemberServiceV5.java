@@ -0,0 +1,73 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.LatencyRecorder;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 락 순서 고정 이체
+ *
+ * MemberServiceV4 는 락 없이 fromId, toId 를 조회하고 호출 순서대로 수정한다.
+ * - 락이 없으므로 동시에 같은 회원을 이체하면 나중에 커밋한 쪽이 앞의 수정을 덮어쓴다. (갱신 손실)
+ * - 수정 시점에 잡히는 행 락은 호출 순서를 따르므로 A->B, B->A 가 동시에 실행되면 데드락이 발생할 수 있다.
+ *
+ * 두 회원을 select ... for update 한번으로 member_id 순서대로 잠그고 나서 읽은 값으로 수정한다.
+ * 락을 얻는 순서가 모든 트랜젝션에서 같으므로 서로 기다리는 순환이 생기지 않는다.
+ */
+@Slf4j
+public class MemberServiceV5 implements TransferService {
+
+    private final MemberRepository memberRepository;
+    private final LatencyRecorder lockWait;
+
+    public MemberServiceV5(MemberRepository memberRepository) {
+        this(memberRepository, new LatencyRecorder("transfer lock wait"));
+    }
+
+    public MemberServiceV5(MemberRepository memberRepository, LatencyRecorder lockWait) {
+        this.memberRepository = memberRepository;
+        this.lockWait = lockWait;
+    }
+
+    @Override
+    @Transactional
+    public void accountTransfer(String fromId, String toId, int money) {
+        bizLogic(fromId, toId, money);
+    }
+
+    /**
+     * 락 획득까지 걸린 시간 (락 조회 쿼리 시간 포함)
+     */
+    public LatencyRecorder getLockWait() {
+        return lockWait;
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        TransferValidator.requireDistinct(fromId, toId);
+
+        long start = System.nanoTime();
+        List<Member> locked = memberRepository.findAllByIdForUpdate(Arrays.asList(fromId, toId));
+        lockWait.recordSince(start);
+
+        Member fromMember = find(locked, fromId);
+        Member toMember = find(locked, toId);
+
+        memberRepository.update(fromId, fromMember.getMoney() - money);
+        TransferValidator.requireReceivable(toMember.getMemberId());
+        memberRepository.update(toId, toMember.getMoney() + money);
+    }
+
+    private Member find(List<Member> members, String memberId) {
+        for (Member member : members) {
+            if (member.getMemberId().equals(memberId)) {
+                return member;
+            }
+        }
+        throw TransferValidator.memberNotFound(memberId);
+    }
+}
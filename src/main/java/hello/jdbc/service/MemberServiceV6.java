@@ -0,0 +1,46 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 낙관적 락 이체
+ *
+ * MemberServiceV5 처럼 조회할 때 행 락을 잡지 않고, 조회한 version 으로 조건부 수정한다.
+ * 그 사이에 다른 트랜젝션이 수정했으면 OptimisticLockingFailureException 으로 트랜젝션 전체가 롤백된다.
+ * 충돌하면 다시 조회부터 해야 하므로 TransactionRetrier 로 트랜젝션 밖에서 재시도한다.
+ *   예) new TransactionRetrier(..., ConcurrencyFailureException.class::isInstance)
+ *
+ * 수정할 때는 행 락이 잡히므로 member_id 순서로 수정해서 데드락을 피한다.
+ * 충돌이 드물면(읽기 위주, 경합이 적음) 락 대기가 없어 유리하고, 충돌이 잦으면 재시도 비용이 커진다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MemberServiceV6 implements TransferService {
+
+    private final MemberRepository memberRepository;
+
+    @Override
+    @Transactional
+    public void accountTransfer(String fromId, String toId, int money) {
+        bizLogic(fromId, toId, money);
+    }
+
+    private void bizLogic(String fromId, String toId, int money) {
+        TransferValidator.requireDistinct(fromId, toId);
+
+        // 락 없이 조회 (version 포함)
+        Member fromMember = memberRepository.findById(fromId);
+        Member toMember = memberRepository.findById(toId);
+        fromMember.setMoney(fromMember.getMoney() - money);
+        toMember.setMoney(toMember.getMoney() + money);
+
+        boolean fromFirst = fromId.compareTo(toId) < 0;
+        memberRepository.update(fromFirst ? fromMember : toMember);
+        TransferValidator.requireReceivable(toMember.getMemberId());
+        memberRepository.update(fromFirst ? toMember : fromMember);
+    }
+}
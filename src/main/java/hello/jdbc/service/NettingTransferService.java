@@ -0,0 +1,124 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 상계(netting) 이체
+ *
+ * 적은 수의 회원 사이에서 수천 건을 이체하는 백오피스 작업용
+ * MemberServiceV4.accountTransfer 를 반복하면 이체 1건당 쿼리 4번 + 트랜젝션 1번이 필요하다.
+ * 1. 관련 회원을 member_id 순서로 한번에 잠그고(findAllByIdForUpdate) 이체를 메모리에서 검증
+ * 2. 통과한 이체를 회원별 증감액으로 합산 (회원당 1행만 수정)
+ * 3. money = money + ? 배치 한번으로 반영, 트랜젝션 1번
+ * 반영 중 오류(잔액 범위 초과 등)가 나면 savepoint 로 되돌린 후 이체마다 savepoint 를 두고 다시 반영해서
+ * 실패한 이체만 빼고 나머지는 같은 트랜젝션으로 커밋한다.
+ */
+@Slf4j
+public class NettingTransferService implements TransferService {
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate txTemplate;
+
+    public NettingTransferService(MemberRepository memberRepository, PlatformTransactionManager transactionManager) {
+        this.memberRepository = memberRepository;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        TransferAllResult result = transferAll(List.of(new Transfer(fromId, toId, money)));
+        if (result.isFailed(0)) {
+            throw result.getFailures().get(0);
+        }
+    }
+
+    @Override
+    public TransferAllResult transferAll(List<Transfer> transfers) {
+        Map<Integer, RuntimeException> failures = new LinkedHashMap<>();
+        txTemplate.executeWithoutResult(status -> apply(status, transfers, failures));
+        return new TransferAllResult(transfers.size() - failures.size(), failures);
+    }
+
+    private void apply(TransactionStatus status, List<Transfer> transfers, Map<Integer, RuntimeException> failures) {
+        failures.clear();
+        TreeSet<String> memberIds = new TreeSet<>();
+        for (Transfer transfer : transfers) {
+            memberIds.add(transfer.getFromId());
+            memberIds.add(transfer.getToId());
+        }
+        Set<String> existing = new HashSet<>();
+        for (Member member : memberRepository.findAllByIdForUpdate(memberIds)) {
+            existing.add(member.getMemberId());
+        }
+
+        List<Integer> valid = new ArrayList<>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            RuntimeException failure = TransferValidator.check(transfers.get(i).getFromId(), transfers.get(i).getToId(), existing::contains);
+            if (failure == null) {
+                valid.add(i);
+            } else {
+                failures.put(i, failure);
+            }
+        }
+
+        Object savepoint = status.createSavepoint();
+        try {
+            SortedMap<String, Integer> deltas = new TreeMap<>();
+            for (int i : valid) {
+                Transfer transfer = transfers.get(i);
+                // int 범위를 넘으면 ArithmeticException -> 건별 반영
+                deltas.merge(transfer.getFromId(), -transfer.getMoney(), Math::addExact);
+                deltas.merge(transfer.getToId(), transfer.getMoney(), Math::addExact);
+            }
+            deltas.values().removeIf(delta -> delta == 0);
+            if (!deltas.isEmpty()) {
+                memberRepository.addMoneyAll(deltas);
+            }
+            status.releaseSavepoint(savepoint);
+        } catch (DataAccessException | ArithmeticException e) {
+            log.warn("netting failed, apply one by one transfers={}", valid.size(), e);
+            status.rollbackToSavepoint(savepoint);
+            applyEach(status, transfers, valid, failures);
+        }
+    }
+
+    /**
+     * 건별 반영 - 이체마다 savepoint 를 두어 실패한 이체만 되돌린다.
+     */
+    private void applyEach(TransactionStatus status, List<Transfer> transfers, List<Integer> valid,
+                           Map<Integer, RuntimeException> failures) {
+        for (int i : valid) {
+            Transfer transfer = transfers.get(i);
+            SortedMap<String, Integer> deltas = new TreeMap<>();
+            deltas.put(transfer.getFromId(), -transfer.getMoney());
+            deltas.put(transfer.getToId(), transfer.getMoney());
+
+            Object savepoint = status.createSavepoint();
+            try {
+                memberRepository.addMoneyAll(deltas);
+                status.releaseSavepoint(savepoint);
+            } catch (DataAccessException e) {
+                status.rollbackToSavepoint(savepoint);
+                failures.put(i, e);
+            }
+        }
+    }
+
+}
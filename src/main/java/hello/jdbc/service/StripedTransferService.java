@@ -0,0 +1,40 @@
+package hello.jdbc.service;
+
+import hello.jdbc.lock.StripedLocks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JVM 내부 락을 먼저 잡고 이체
+ *
+ * 같은 회원으로 이체가 몰리면 트랜젝션들이 DB 행 락을 기다리는 동안 커넥션 풀의 커넥션을 하나씩 붙잡고 있다.
+ * 트랜젝션을 시작하기 전에 두 회원의 stripe 락을 잡으면, 경합하는 이체는 커넥션 없이 JVM 안에서 기다린다.
+ * - 커넥션 풀은 실제로 진행할 수 있는 이체만 사용한다.
+ * - DB 행 락은 여전히 정확성을 보장한다. (다른 JVM, 배치 등)
+ *
+ * delegate 는 호출마다 트랜젝션을 시작해야 한다. (@Transactional 프록시)
+ */
+@Slf4j
+public class StripedTransferService implements TransferService {
+
+    private final TransferService delegate;
+    private final StripedLocks locks;
+
+    public StripedTransferService(TransferService delegate, StripedLocks locks) {
+        this.delegate = delegate;
+        this.locks = locks;
+    }
+
+    @Override
+    public void accountTransfer(String fromId, String toId, int money) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // 트랜젝션 안이면 이미 커넥션을 잡고 있으므로 의미가 없다.
+            throw new IllegalStateException("stripe 락은 트랜젝션 밖에서 잡아야 합니다.");
+        }
+        locks.runLocked(fromId, toId, () -> delegate.accountTransfer(fromId, toId, money));
+    }
+
+    public StripedLocks getLocks() {
+        return locks;
+    }
+}
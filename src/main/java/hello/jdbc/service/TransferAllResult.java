@@ -0,0 +1,20 @@
+package hello.jdbc.service;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 여러 건 이체 결과
+ * failures : 요청 목록의 인덱스 -> 실패 원인 (성공한 이체는 없음)
+ */
+@Data
+public class TransferAllResult {
+
+    private final int applied;
+    private final Map<Integer, RuntimeException> failures;
+
+    public boolean isFailed(int index) {
+        return failures.containsKey(index);
+    }
+}
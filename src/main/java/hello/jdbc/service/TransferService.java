@@ -0,0 +1,33 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Transfer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 이체
+ * 트랜젝션 경계를 가진 구현체(@Transactional 프록시) 앞에 재시도, 락 등을 붙일 수 있도록 분리
+ */
+public interface TransferService {
+
+    void accountTransfer(String fromId, String toId, int money);
+
+    /**
+     * 여러 건 이체 - 실패한 이체는 결과에 담고 나머지는 계속 처리한다.
+     * 기본 구현은 accountTransfer 를 건별로 호출한다. (이체마다 트랜젝션 1번)
+     */
+    default TransferAllResult transferAll(List<Transfer> transfers) {
+        Map<Integer, RuntimeException> failures = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            try {
+                accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+            } catch (RuntimeException e) {
+                failures.put(i, e);
+            }
+        }
+        return new TransferAllResult(transfers.size() - failures.size(), failures);
+    }
+}
@@ -0,0 +1,55 @@
+package hello.jdbc.service;
+
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * 이체 검증 규칙 (MemberServiceV4 기준)
+ * - 같은 회원에게 이체할 수 없다. (IllegalArgumentException)
+ * - 두 회원이 있어야 한다. (NoSuchElementException)
+ * - "ex" 로는 이체할 수 없다. (IllegalStateException)
+ *
+ * 한 건씩 처리하는 이체는 require* 로 바로 예외를 던지고,
+ * 여러 건을 한번에 처리하는 이체는 check 로 건별 실패를 받아서 그 건만 실패시킨다.
+ */
+public final class TransferValidator {
+
+    private TransferValidator() {
+    }
+
+    public static void requireDistinct(String fromId, String toId) {
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("같은 회원에게 이체할 수 없습니다. memberId=" + fromId);
+        }
+    }
+
+    public static void requireReceivable(String toId) {
+        if (toId.equals("ex")) {
+            throw new IllegalStateException("이체중 예외 발생");
+        }
+    }
+
+    public static NoSuchElementException memberNotFound(String memberId) {
+        return new NoSuchElementException("member not found memberId = " + memberId);
+    }
+
+    /**
+     * @param exists 회원 존재 여부 (보통 findAllByIdForUpdate 로 잠근 회원)
+     * @return 규칙을 어기면 던질 예외, 통과하면 null
+     */
+    public static RuntimeException check(String fromId, String toId, Predicate<String> exists) {
+        if (fromId.equals(toId)) {
+            return new IllegalArgumentException("같은 회원에게 이체할 수 없습니다. memberId=" + fromId);
+        }
+        if (!exists.test(fromId)) {
+            return memberNotFound(fromId);
+        }
+        if (!exists.test(toId)) {
+            return memberNotFound(toId);
+        }
+        if (toId.equals("ex")) {
+            return new IllegalStateException("이체중 예외 발생");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,71 @@
+package hello.jdbc.settlement;
+
+import hello.jdbc.domain.Transfer;
+import lombok.Getter;
+
+/**
+ * 정산 파일의 한 줄
+ * 파싱/검증에 성공하면 transfer, 실패하면 error 를 가진다.
+ */
+@Getter
+class SettlementLine {
+
+    private static final int MAX_ID_LENGTH = 10; // member.member_id varchar(10)
+
+    private final int lineNo;
+    private final String raw;
+    private final Transfer transfer;
+    private final String error;
+
+    private SettlementLine(int lineNo, String raw, Transfer transfer, String error) {
+        this.lineNo = lineNo;
+        this.raw = raw;
+        this.transfer = transfer;
+        this.error = error;
+    }
+
+    boolean isValid() {
+        return error == null;
+    }
+
+    SettlementLine fail(String reason) {
+        return new SettlementLine(lineNo, raw, transfer, reason);
+    }
+
+    /**
+     * 형식 : fromId,toId,money
+     */
+    static SettlementLine parse(int lineNo, String raw) {
+        String[] tokens = raw.split(",", -1);
+        if (tokens.length != 3) {
+            return new SettlementLine(lineNo, raw, null, "invalid column count");
+        }
+        String fromId = tokens[0].trim();
+        String toId = tokens[1].trim();
+        int money;
+        try {
+            money = Integer.parseInt(tokens[2].trim());
+        } catch (NumberFormatException e) {
+            return new SettlementLine(lineNo, raw, null, "invalid money");
+        }
+
+        String error = validate(fromId, toId, money);
+        return new SettlementLine(lineNo, raw, error == null ? new Transfer(fromId, toId, money) : null, error);
+    }
+
+    private static String validate(String fromId, String toId, int money) {
+        if (fromId.isEmpty() || toId.isEmpty()) {
+            return "empty member id";
+        }
+        if (fromId.length() > MAX_ID_LENGTH || toId.length() > MAX_ID_LENGTH) {
+            return "member id too long";
+        }
+        if (fromId.equals(toId)) {
+            return "same member";
+        }
+        if (money <= 0) {
+            return "money must be positive";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+package hello.jdbc.settlement;
+
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 정산 파일 일괄 이체
+ * accountTransfer 를 건별로 호출하면 이체 1건당 쿼리 4번 + 트랜젝션 1번이 필요하다.
+ *
+ * 1. 파일을 병렬로 파싱, 검증
+ * 2. chunkSize 건씩 묶어서 회원별 증감액을 상계(netting)
+ * 3. chunk 당 트랜젝션 1번, money = money + ? 배치 업데이트로 반영
+ * 4. 일시적 오류는 chunk 재시도, 그래도 실패하면 건별로 반영하여 실패건만 에러 파일로 분리
+ */
+@Slf4j
+public class SettlementProcessor {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_MAX_RETRIES = 2;
+
+    private final TransactionTemplate transactionTemplate;
+    private final MemberRepository memberRepository;
+    private final int chunkSize;
+    private final int maxRetries;
+
+    public SettlementProcessor(PlatformTransactionManager transactionManager, MemberRepository memberRepository) {
+        this(transactionManager, memberRepository, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_RETRIES);
+    }
+
+    public SettlementProcessor(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                               int chunkSize, int maxRetries) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.memberRepository = memberRepository;
+        this.chunkSize = chunkSize;
+        this.maxRetries = maxRetries;
+    }
+
+    public SettlementResult process(Path settlementFile, Path errorFile) {
+        long start = System.currentTimeMillis();
+        List<String> rawLines = readLines(settlementFile);
+
+        // 파싱, 검증은 DB 와 무관하므로 병렬 처리 (결과 순서는 유지된다)
+        List<SettlementLine> lines = IntStream.range(0, rawLines.size())
+                .parallel()
+                .filter(i -> !rawLines.get(i).isBlank())
+                .mapToObj(i -> SettlementLine.parse(i + 1, rawLines.get(i)))
+                .collect(Collectors.toList());
+
+        List<SettlementLine> valid = new ArrayList<>(lines.size());
+        List<SettlementLine> errors = new ArrayList<>();
+        for (SettlementLine line : lines) {
+            (line.isValid() ? valid : errors).add(line);
+        }
+
+        int applied = 0;
+        int retries = 0;
+        int chunks = 0;
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<SettlementLine> chunk = valid.subList(from, Math.min(from + chunkSize, valid.size()));
+            ChunkResult chunkResult = applyChunk(chunk, errors);
+            applied += chunkResult.applied;
+            retries += chunkResult.retries;
+            chunks++;
+        }
+
+        writeErrors(errorFile, errors);
+        SettlementResult result = new SettlementResult(lines.size(), applied, errors.size(), chunks, retries,
+                System.currentTimeMillis() - start);
+        log.info("settlement result={}", result);
+        return result;
+    }
+
+    private ChunkResult applyChunk(List<SettlementLine> chunk, List<SettlementLine> errors) {
+        int retries = 0;
+        while (true) {
+            try {
+                applyNetted(chunk);
+                return new ChunkResult(chunk.size(), retries);
+            } catch (TransientDataAccessException e) {
+                // 락 타임아웃 등 일시적인 오류만 chunk 단위로 재시도
+                if (retries >= maxRetries) {
+                    log.warn("chunk retry exhausted, fallback to single transfer", e);
+                    break;
+                }
+                retries++;
+                log.info("chunk retry={}", retries);
+            } catch (RuntimeException e) {
+                // 존재하지 않는 회원 등 재시도해도 실패하는 오류
+                log.info("chunk failed, fallback to single transfer reason={}", e.getMessage());
+                break;
+            }
+        }
+
+        // 건별로 반영하여 실패한 이체만 분리
+        int applied = 0;
+        for (SettlementLine line : chunk) {
+            try {
+                applyNetted(List.of(line));
+                applied++;
+            } catch (RuntimeException e) {
+                errors.add(line.fail(e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+        }
+        return new ChunkResult(applied, retries);
+    }
+
+    /**
+     * 회원별 증감액을 상계해서 한 트랜젝션으로 반영
+     */
+    private void applyNetted(List<SettlementLine> lines) {
+        SortedMap<String, Integer> deltas = net(lines);
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] counts = memberRepository.addMoneyAll(deltas);
+            int i = 0;
+            for (String memberId : deltas.keySet()) {
+                if (counts[i++] == 0) {
+                    // 런타임 예외 -> 롤백
+                    throw new NoSuchElementException("member not found memberId = " + memberId);
+                }
+            }
+        });
+    }
+
+    private SortedMap<String, Integer> net(List<SettlementLine> lines) {
+        // 정렬된 순서로 업데이트하면 chunk 끼리 교착상태가 발생하지 않는다.
+        SortedMap<String, Integer> deltas = new TreeMap<>();
+        for (SettlementLine line : lines) {
+            Transfer transfer = line.getTransfer();
+            deltas.merge(transfer.getFromId(), -transfer.getMoney(), Math::addExact);
+            deltas.merge(transfer.getToId(), transfer.getMoney(), Math::addExact);
+        }
+        // 상계 결과 0 인 회원은 업데이트할 필요가 없다.
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    private List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 형식 : lineNo \t 원본 \t 실패사유
+     */
+    private void writeErrors(Path errorFile, List<SettlementLine> errors) {
+        errors.sort(Comparator.comparingInt(SettlementLine::getLineNo));
+        try (BufferedWriter writer = Files.newBufferedWriter(errorFile)) {
+            for (SettlementLine line : errors) {
+                writer.write(line.getLineNo() + "\t" + line.getRaw() + "\t" + line.getError());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class ChunkResult {
+        private final int applied;
+        private final int retries;
+
+        private ChunkResult(int applied, int retries) {
+            this.applied = applied;
+            this.retries = retries;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package hello.jdbc.settlement;
+
+import lombok.Data;
+
+/**
+ * 정산 파일 처리 결과
+ */
+@Data
+public class SettlementResult {
+
+    private final int totalLines;
+    private final int appliedTransfers;
+    private final int failedTransfers;
+    private final int chunks;
+    private final int retries;
+    private final long elapsedMillis;
+
+}
@@ -0,0 +1,58 @@
+package hello.jdbc.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 백그라운드 주기 작업
+ * 데몬 스레드 하나에서 이전 실행이 끝난 뒤 period 만큼 쉬고 다시 실행한다. (scheduleWithFixedDelay)
+ * 작업에서 난 RuntimeException 은 로그만 남긴다. 밖으로 나가면 다음 실행이 취소된다.
+ */
+@Slf4j
+public class PeriodicTask {
+
+    private final String name;
+    private final Runnable task;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param name 스레드 이름, 로그에도 사용한다.
+     */
+    public PeriodicTask(String name, Runnable task) {
+        this.name = name;
+        this.task = task;
+    }
+
+    public synchronized void start(Duration period) {
+        if (scheduler != null) {
+            throw new IllegalStateException("already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = period.toMillis();
+        scheduler.scheduleWithFixedDelay(this::runQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void runQuietly() {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("{} failed", name, e);
+        }
+    }
+}
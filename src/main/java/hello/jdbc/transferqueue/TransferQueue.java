@@ -0,0 +1,73 @@
+package hello.jdbc.transferqueue;
+
+import hello.jdbc.repository.MemberSchema;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.service.TransferValidator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 비동기 이체 작업 큐 (pending_transfer 테이블)
+ * enqueue 는 행 하나만 추가하고 바로 반환한다. 이체는 TransferQueueWorkers 가 실행한다.
+ */
+public class TransferQueue {
+
+    private final JdbcTemplate template;
+
+    public TransferQueue(DataSource dataSource) {
+        MemberSchema.ensure(dataSource);
+        this.template = new JdbcTemplate(dataSource);
+        this.template.setExceptionTranslator(CachedSQLExceptionTranslator.of(dataSource));
+    }
+
+    /**
+     * @return transfer_id (상태 조회용)
+     */
+    public long enqueue(String fromId, String toId, int money) {
+        TransferValidator.requireDistinct(fromId, toId);
+        String sql = "insert into pending_transfer(from_id, to_id, money) values (?, ?, ?)";
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        template.update(con -> {
+            PreparedStatement pstmt = con.prepareStatement(sql, new String[]{"transfer_id"});
+            pstmt.setString(1, fromId);
+            pstmt.setString(2, toId);
+            pstmt.setInt(3, money);
+            return pstmt;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    public Optional<TransferStatus> findStatus(long transferId) {
+        List<String> status = template.queryForList("select status from pending_transfer where transfer_id = ?",
+                String.class, transferId);
+        return status.stream().findFirst().map(TransferStatus::valueOf);
+    }
+
+    /**
+     * 큐 깊이 - 아직 처리하지 않은 작업 수 (워커가 가져갔지만 커밋 전인 CLAIMED 포함)
+     */
+    public long countPending() {
+        return template.queryForObject("select count(*) from pending_transfer where status in ('PENDING', 'CLAIMED')",
+                Long.class);
+    }
+
+    /**
+     * 처리가 끝난 작업 삭제
+     *
+     * @return 삭제한 작업 수
+     */
+    public int deleteProcessed() {
+        return template.update("delete from pending_transfer where status in ('DONE', 'FAILED')");
+    }
+
+    JdbcTemplate template() {
+        return template;
+    }
+}
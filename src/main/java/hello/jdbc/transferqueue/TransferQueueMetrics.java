@@ -0,0 +1,118 @@
+package hello.jdbc.transferqueue;
+
+import hello.jdbc.metrics.LatencyRecorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 작업 큐 워커 지표 - 가져온 배치, 처리 결과, 가져오기(claim) 시간, 워커별 처리량
+ */
+public class TransferQueueMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder emptyClaims = new LongAdder();
+    private final LongAdder done = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private final LongAdder stoppedWorkers = new LongAdder();
+    private final AtomicLongArray workerProcessed;
+    private final LatencyRecorder claimLatency = new LatencyRecorder("queue.claim");
+
+    TransferQueueMetrics(int workers) {
+        this.workerProcessed = new AtomicLongArray(workers);
+    }
+
+    void claimed(int size) {
+        claims.increment();
+        if (size == 0) {
+            emptyClaims.increment();
+        }
+    }
+
+    void committed(int worker, int done, int failed) {
+        this.done.add(done);
+        this.failed.add(failed);
+        workerProcessed.addAndGet(worker, done + failed);
+    }
+
+    void rolledBack() {
+        rollbacks.increment();
+    }
+
+    void workerStopped() {
+        stoppedWorkers.increment();
+    }
+
+    public long getClaims() {
+        return claims.sum();
+    }
+
+    /**
+     * 가져갈 작업이 없었던 claim (워커가 pollInterval 동안 쉰다)
+     */
+    public long getEmptyClaims() {
+        return emptyClaims.sum();
+    }
+
+    public long getDone() {
+        return done.sum();
+    }
+
+    /**
+     * 검증에 실패해서 FAILED 로 끝난 작업
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * 배치 트랜젝션이 롤백된 횟수 - 가져간 작업은 한 건씩 다시 처리하거나 PENDING 으로 되돌린다.
+     */
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    /**
+     * 다시 시도해도 실패할 오류로 멈춘 워커 수
+     */
+    public long getStoppedWorkers() {
+        return stoppedWorkers.sum();
+    }
+
+    /**
+     * claim update 시간
+     */
+    public LatencyRecorder getClaimLatency() {
+        return claimLatency;
+    }
+
+    public int getWorkers() {
+        return workerProcessed.length();
+    }
+
+    public long getWorkerProcessed(int worker) {
+        return workerProcessed.get(worker);
+    }
+
+    /**
+     * 워커 하나의 초당 처리 작업 수 (시작 후 평균)
+     */
+    public double getWorkerThroughput(int worker) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : getWorkerProcessed(worker) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder perWorker = new StringBuilder();
+        for (int i = 0; i < getWorkers(); i++) {
+            perWorker.append(i == 0 ? "" : ",").append(String.format("%.0f", getWorkerThroughput(i)));
+        }
+        return String.format("claims=%d empty=%d done=%d failed=%d rollbacks=%d stopped=%d worker/s=[%s] %s",
+                getClaims(), getEmptyClaims(), getDone(), getFailed(), getRollbacks(), getStoppedWorkers(), perWorker,
+                claimLatency);
+    }
+}
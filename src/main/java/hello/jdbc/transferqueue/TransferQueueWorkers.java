@@ -0,0 +1,383 @@
+package hello.jdbc.transferqueue;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.service.TransferValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 작업 큐 워커 풀
+ *
+ * 워커마다 다음을 반복한다.
+ * 1. claim : PENDING 작업을 batchSize 만큼 CLAIMED 로 바꾸고 claimed_by 에 배치 토큰을 기록한다.
+ *    update 한 문장(autocommit)으로 끝나므로 다른 워커의 이체 트랜젝션이 끝나기를 기다리지 않는다.
+ *    (H2 2.1 은 for update skip locked 를 지원하지 않는다)
+ * 2. 트랜젝션 하나로 토큰의 작업을 잠그고, 관련 회원을 member_id 순서로 잠근 후 (findAllByIdForUpdate) 순서대로 검증한다.
+ * 3. 회원별 증감을 합쳐서 addMoneyAll 로 반영하고, 작업을 DONE / FAILED 로 바꾼 후 커밋한다.
+ * 이체와 상태 변경이 같은 트랜젝션이므로 한번만 반영된다.
+ * 워커가 claim 후 죽으면 작업은 CLAIMED 로 남고, claimTimeout 이 지나면 다른 워커가 PENDING 으로 되돌린다.
+ * 되돌린 후에 늦게 도착한 원래 워커의 트랜젝션은 토큰이 맞는 작업이 없으므로 아무것도 반영하지 않는다.
+ *
+ * 작업 행은 워커끼리 기다리지 않지만, 같은 회원의 잔액 행은 커밋될 때까지 기다린다. (member_id 순서로 잠가서 데드락은 없다)
+ * 배치 트랜젝션이 실패하면 한 건씩 다시 실행해서 원인이 된 작업만 FAILED 로 남긴다. 락 타임아웃 같은 일시적인 오류는 PENDING 으로 되돌린다.
+ * SQL 문법 오류처럼 다시 해도 실패할 오류면 워커를 멈춘다. (TransferQueueMetrics.getStoppedWorkers)
+ */
+@Slf4j
+public class TransferQueueWorkers {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final RowMapper<Job> JOB_ROW_MAPPER = (rs, rowNum) ->
+            new Job(rs.getLong("transfer_id"), rs.getString("from_id"), rs.getString("to_id"), rs.getInt("money"));
+
+    private final TransferQueue queue;
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate txTemplate;
+    private final int workers;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final Duration claimTimeout;
+    private final TransferQueueMetrics metrics;
+
+    private volatile boolean running;
+    private ExecutorService executor;
+    // 오래된 claim 을 마지막으로 되돌린 시각 (워커 0 만 사용)
+    private long lastReleaseNanos;
+
+    /**
+     * queue 와 memberRepository 는 transactionManager 와 같은 DataSource 를 사용해야 한다.
+     *
+     * @param pollInterval 가져갈 작업이 없을 때 쉬는 시간
+     * @param claimTimeout 이 시간 안에 처리하지 못한 CLAIMED 작업은 PENDING 으로 되돌린다. (배치 처리 시간보다 충분히 길게)
+     */
+    public TransferQueueWorkers(TransferQueue queue, MemberRepository memberRepository,
+                                PlatformTransactionManager transactionManager,
+                                int workers, int batchSize, Duration pollInterval, Duration claimTimeout) {
+        if (workers <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("workers and batchSize must be positive");
+        }
+        this.queue = queue;
+        this.memberRepository = memberRepository;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.claimTimeout = claimTimeout;
+        this.metrics = new TransferQueueMetrics(workers);
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            throw new IllegalStateException("already started");
+        }
+        running = true;
+        lastReleaseNanos = System.nanoTime();
+        AtomicInteger sequence = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "transfer-worker-" + sequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            executor.execute(() -> run(worker));
+        }
+    }
+
+    /**
+     * 처리 중인 배치를 끝내고 종료한다.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    /**
+     * 큐 깊이 (DB 조회)
+     */
+    public long getQueueDepth() {
+        return queue.countPending();
+    }
+
+    public TransferQueueMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 호출한 스레드에서 배치 하나를 처리한다.
+     *
+     * @return 가져온 작업 수 (0 이면 가져갈 작업이 없다)
+     */
+    int processBatch(int worker) {
+        String token = UUID.randomUUID().toString();
+        int claimed = claim(token);
+        if (claimed == 0) {
+            return 0;
+        }
+        List<Job> jobs = new ArrayList<>();
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                jobs.clear();
+                jobs.addAll(lockClaimed(token, null));
+                if (!jobs.isEmpty()) {
+                    apply(jobs);
+                }
+            });
+        } catch (RuntimeException e) {
+            metrics.rolledBack();
+            if (!isRetryable(e) && !(e instanceof DataIntegrityViolationException)) {
+                throw e;
+            }
+            log.warn("transfer batch failed, rerun one by one size={}", claimed, e);
+            for (Job job : queue.template().query("select transfer_id, from_id, to_id, money from pending_transfer"
+                    + " where claimed_by = ? and status = 'CLAIMED' order by transfer_id", JOB_ROW_MAPPER, token)) {
+                processSingle(worker, token, job);
+            }
+            return claimed;
+        }
+        committed(worker, jobs);
+        return claimed;
+    }
+
+    /**
+     * claimTimeout 보다 오래 CLAIMED 로 남은 작업을 PENDING 으로 되돌린다. (claim 후 죽은 워커)
+     *
+     * @return 되돌린 작업 수
+     */
+    public int releaseExpiredClaims() {
+        int released = queue.template().update("update pending_transfer set status = 'PENDING', claimed_by = null, claimed_at = null"
+                + " where status = 'CLAIMED' and claimed_at < dateadd('MILLISECOND', ?, current_timestamp)", -claimTimeout.toMillis());
+        if (released > 0) {
+            log.warn("released expired claims count={}", released);
+        }
+        return released;
+    }
+
+    private void run(int worker) {
+        while (running) {
+            int claimed;
+            try {
+                if (worker == 0) {
+                    releaseExpiredClaimsPeriodically();
+                }
+                claimed = processBatch(worker);
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    // 다시 해도 실패한다. (SQL 오류 등) 가져간 작업은 claimTimeout 후 PENDING 으로 돌아간다.
+                    log.error("transfer worker stopped worker={}", worker, e);
+                    metrics.workerStopped();
+                    return;
+                }
+                // 연결 실패 등 - 잠시 후 다시 가져온다.
+                log.warn("transfer worker batch failed worker={}, cause={}", worker, e.toString());
+                claimed = 0;
+            }
+            if (claimed == 0) {
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void releaseExpiredClaimsPeriodically() {
+        long now = System.nanoTime();
+        if (now - lastReleaseNanos >= claimTimeout.toNanos()) {
+            lastReleaseNanos = now;
+            releaseExpiredClaims();
+        }
+    }
+
+    /**
+     * PENDING 작업을 토큰으로 가져간다. (autocommit)
+     * 다른 워커와 같은 행을 고르면 그 update 문장이 끝날 때까지만 기다리고, 이미 CLAIMED 가 된 행은 바뀌지 않는다.
+     *
+     * @return 가져온 작업 수
+     */
+    private int claim(String token) {
+        String sql = "update pending_transfer set status = 'CLAIMED', claimed_by = ?, claimed_at = current_timestamp"
+                + " where transfer_id in (select transfer_id from pending_transfer where status = 'PENDING' order by transfer_id limit ?)"
+                + " and status = 'PENDING'";
+
+        long start = System.nanoTime();
+        int claimed = queue.template().update(sql, token, batchSize);
+        metrics.getClaimLatency().recordSince(start);
+        metrics.claimed(claimed);
+        return claimed;
+    }
+
+    /**
+     * 트랜젝션 안에서 실행 - 토큰으로 가져간 작업을 잠근다.
+     * claimTimeout 이 지나서 다른 워커에게 넘어간 작업은 나오지 않는다.
+     *
+     * @param transferId null 이면 토큰의 모든 작업
+     */
+    private List<Job> lockClaimed(String token, Long transferId) {
+        String sql = "select transfer_id, from_id, to_id, money from pending_transfer"
+                + " where claimed_by = ? and status = 'CLAIMED'" + (transferId == null ? "" : " and transfer_id = ?")
+                + " order by transfer_id for update";
+
+        Object[] args = transferId == null ? new Object[]{token} : new Object[]{token, transferId};
+        return queue.template().query(sql, JOB_ROW_MAPPER, args);
+    }
+
+    /**
+     * 트랜젝션 안에서 실행 - 이체를 반영하고 작업 상태를 바꾼다.
+     */
+    private void apply(List<Job> jobs) {
+        TreeSet<String> memberIds = new TreeSet<>();
+        for (Job job : jobs) {
+            memberIds.add(job.fromId);
+            memberIds.add(job.toId);
+        }
+        Set<String> existing = new HashSet<>();
+        for (Member member : memberRepository.findAllByIdForUpdate(memberIds)) {
+            existing.add(member.getMemberId());
+        }
+
+        SortedMap<String, Integer> deltas = new TreeMap<>();
+        for (Job job : jobs) {
+            job.error = validate(job, existing);
+            if (job.error != null) {
+                continue;
+            }
+            deltas.merge(job.fromId, -job.money, Integer::sum);
+            deltas.merge(job.toId, job.money, Integer::sum);
+        }
+        // 증감이 0 인 회원은 수정하지 않는다.
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            memberRepository.addMoneyAll(deltas);
+        }
+        markProcessed(jobs);
+    }
+
+    private void processSingle(int worker, String token, Job job) {
+        List<Job> processed;
+        try {
+            processed = txTemplate.execute(status -> {
+                List<Job> locked = lockClaimed(token, job.transferId);
+                if (!locked.isEmpty()) {
+                    apply(locked);
+                }
+                return locked;
+            });
+        } catch (RuntimeException e) {
+            metrics.rolledBack();
+            if (isRetryable(e)) {
+                // 락 타임아웃 등 - PENDING 으로 되돌려서 다음 배치에서 다시 처리한다.
+                log.warn("transfer job deferred transferId={}, cause={}", job.transferId, e.toString());
+                queue.template().update("update pending_transfer set status = 'PENDING', claimed_by = null, claimed_at = null"
+                        + " where transfer_id = ? and claimed_by = ? and status = 'CLAIMED'", job.transferId, token);
+                return;
+            }
+            if (!(e instanceof DataIntegrityViolationException)) {
+                throw e;
+            }
+            // 이 작업 때문에 실패했다. (잔액 범위 초과 등)
+            job.error = e.toString();
+            processed = txTemplate.execute(status -> {
+                List<Job> locked = lockClaimed(token, job.transferId);
+                if (locked.isEmpty()) {
+                    return locked;
+                }
+                markProcessed(List.of(job));
+                return List.of(job);
+            });
+        }
+        if (!processed.isEmpty()) {
+            committed(worker, processed);
+        }
+    }
+
+    /**
+     * 다시 시도하면 성공할 수 있는 오류 (락 타임아웃, 연결 실패, 트랜젝션 시작 실패 등)
+     */
+    private static boolean isRetryable(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+
+    private void markProcessed(List<Job> jobs) {
+        String sql = "update pending_transfer set status = ?, error = ?, processed_at = current_timestamp where transfer_id = ?";
+
+        List<Object[]> args = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            TransferStatus status = job.error == null ? TransferStatus.DONE : TransferStatus.FAILED;
+            String error = job.error == null || job.error.length() <= MAX_ERROR_LENGTH
+                    ? job.error : job.error.substring(0, MAX_ERROR_LENGTH);
+            args.add(new Object[]{status.name(), error, job.transferId});
+        }
+        queue.template().batchUpdate(sql, args);
+    }
+
+    private void committed(int worker, List<Job> jobs) {
+        int failed = 0;
+        for (Job job : jobs) {
+            if (job.error != null) {
+                failed++;
+            }
+        }
+        metrics.committed(worker, jobs.size() - failed, failed);
+    }
+
+    private String validate(Job job, Set<String> existing) {
+        RuntimeException failure = TransferValidator.check(job.fromId, job.toId, existing::contains);
+        return failure != null ? failure.getMessage() : null;
+    }
+
+    private static class Job {
+
+        final long transferId;
+        final String fromId;
+        final String toId;
+        final int money;
+        // 검증 실패 또는 단건 실행 실패 사유 (null 이면 DONE)
+        String error;
+
+        Job(long transferId, String fromId, String toId, int money) {
+            this.transferId = transferId;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package hello.jdbc.transferqueue;
+
+/**
+ * pending_transfer.status
+ */
+public enum TransferStatus {
+    PENDING, CLAIMED, DONE, FAILED
+}
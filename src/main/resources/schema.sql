@@ -0,0 +1,156 @@
+-- 애플리케이션 시작시 실행 (spring.sql.init.mode=always), 여러번 실행해도 안전하도록 작성
+create table if not exists member (
+    member_id varchar(10),
+    money integer not null default 0,
+    primary key (member_id)
+);
+
+-- 낙관적 락 버전 (Member.version), 기존 테이블에도 추가
+alter table member add column if not exists version bigint not null default 0;
+
+-- 잔액 범위 조회, 잔액 상위 N명 조회용 (order by money desc limit n 을 인덱스 순서로 읽는다)
+create index if not exists idx_member_money on member(money desc);
+
+-- 잔액 집계 (BalanceAggregates)
+-- 한 행에 쓰기가 몰리지 않도록 slot 8개로 나누어 더하고, 조회할 때 합산한다.
+create table if not exists member_stats (
+    slot int not null,
+    member_count bigint not null default 0,
+    total_money bigint not null default 0,
+    primary key (slot)
+);
+
+insert into member_stats(slot)
+select x from system_range(0, 7) where x not in (select slot from member_stats);
+
+-- 잔액 구간별 회원 수 (bucket 은 BalanceHistogram 참고)
+create table if not exists member_histogram (
+    bucket int not null,
+    slot int not null,
+    member_count bigint not null default 0,
+    primary key (bucket, slot)
+);
+
+insert into member_histogram(bucket, slot)
+select b.x, s.x from system_range(0, 10) b, system_range(0, 7) s
+where not exists (select 1 from member_histogram h where h.bucket = b.x and h.slot = s.x);
+
+-- 입금이 몰리는 회원의 분할 잔액 (hotaccount.HotAccountStripes)
+-- 회원 잔액 = member.money + sum(member_stripe.money)
+create table if not exists member_stripe (
+    member_id varchar(10) not null,
+    stripe int not null,
+    money integer not null default 0,
+    primary key (member_id, stripe),
+    foreign key (member_id) references member(member_id) on delete cascade
+);
+
+-- 이체 저널 (journal.TransferJournal)
+-- 이체는 행을 추가만 하고, 잔액 = member.money (스냅샷) + 아직 반영하지 않은(rolled_up = false) 저널 합계
+-- from_id 가 null 이면 잔액 조정 (입금만)
+create table if not exists transfer_journal (
+    journal_id bigint generated by default as identity primary key,
+    from_id varchar(10),
+    to_id varchar(10) not null,
+    money integer not null,
+    rolled_up boolean not null default false,
+    created_at timestamp not null default current_timestamp
+);
+
+-- 회원별 미반영 저널만 인덱스 범위로 읽는다.
+create index if not exists idx_journal_from on transfer_journal(from_id, rolled_up);
+create index if not exists idx_journal_to on transfer_journal(to_id, rolled_up);
+create index if not exists idx_journal_pending on transfer_journal(rolled_up, journal_id);
+
+-- 스냅샷 반영 이력, 한 행 (반영 작업끼리는 이 행의 락으로 순서를 정한다)
+create table if not exists journal_snapshot (
+    id int not null,
+    snapshots bigint not null default 0,
+    rolled_up_rows bigint not null default 0,
+    last_snapshot_at timestamp,
+    primary key (id)
+);
+
+insert into journal_snapshot(id)
+select 0 from dual where not exists (select 1 from journal_snapshot where id = 0);
+
+-- 원장 엔진 체크포인트 (ledger.LedgerEngine), 한 행
+-- member.money 는 sequence 까지의 이체가 반영된 값이다. 복구할 때 WAL 에서 sequence 이후만 다시 적용한다.
+create table if not exists ledger_checkpoint (
+    id int not null,
+    sequence bigint not null default 0,
+    checkpoint_at timestamp,
+    primary key (id)
+);
+
+insert into ledger_checkpoint(id)
+select 0 from dual where not exists (select 1 from ledger_checkpoint where id = 0);
+
+-- 이체 멱등 키 (idempotency.IdempotentTransferService)
+-- 이체와 같은 트랜젝션에서 insert 한다. 같은 키의 두번째 insert 는 PK 중복으로 실패한다.
+create table if not exists transfer_idempotency (
+    idempotency_key varchar(64) not null,
+    from_id varchar(10) not null,
+    to_id varchar(10) not null,
+    money integer not null,
+    created_at timestamp not null default current_timestamp,
+    primary key (idempotency_key)
+);
+
+create index if not exists idx_idempotency_created on transfer_idempotency(created_at);
+
+-- 샤드 간 이체 사가 (saga.CrossShardTransferService)
+-- outbox : 출금한 샤드에 출금과 같은 트랜젝션으로 기록, 입금/보상이 끝나면 COMPLETED / COMPENSATED
+create table if not exists transfer_outbox (
+    transfer_id varchar(36) not null,
+    from_id varchar(10) not null,
+    to_id varchar(10) not null,
+    money integer not null,
+    status varchar(16) not null default 'PENDING',
+    attempts int not null default 0,
+    created_at timestamp not null default current_timestamp,
+    updated_at timestamp not null default current_timestamp,
+    primary key (transfer_id)
+);
+
+create index if not exists idx_outbox_pending on transfer_outbox(status, updated_at);
+
+-- inbox : 입금한 샤드에 입금과 같은 트랜젝션으로 기록 (CREDITED), 보상 전에는 입금을 막는 기록 (REJECTED)
+create table if not exists transfer_inbox (
+    transfer_id varchar(36) not null,
+    status varchar(16) not null,
+    created_at timestamp not null default current_timestamp,
+    primary key (transfer_id)
+);
+
+-- 비동기 이체 작업 큐 (transferqueue.TransferQueue)
+-- 워커가 PENDING 행을 CLAIMED 로 바꿔서(claimed_by = 배치 토큰) 가져가고, 이체와 같은 트랜젝션으로 DONE / FAILED 로 바꾼다.
+create table if not exists pending_transfer (
+    transfer_id bigint generated by default as identity primary key,
+    from_id varchar(10) not null,
+    to_id varchar(10) not null,
+    money integer not null,
+    status varchar(16) not null default 'PENDING',
+    error varchar(255),
+    created_at timestamp not null default current_timestamp,
+    processed_at timestamp
+);
+
+-- 대기 중인 작업을 transfer_id 순서로 읽는다.
+create index if not exists idx_pending_transfer_status on pending_transfer(status, transfer_id);
+
+alter table pending_transfer add column if not exists claimed_by varchar(36);
+alter table pending_transfer add column if not exists claimed_at timestamp;
+
+-- 배치 토큰으로 가져간 작업을 찾는다.
+create index if not exists idx_pending_transfer_claim on pending_transfer(claimed_by);
+
+-- member_id 생성 (idgen.MemberIdGenerator)
+-- 시퀀스는 hi 값만 발급하고, 실제 id 는 hi * block_size 부터 block_size 개다.
+-- block_size 가 다르면 발급 범위가 겹치므로 시퀀스별로 처음 사용한 block_size 를 기록하고 다른 값은 거부한다.
+create sequence if not exists member_id_seq start with 1;
+create table if not exists member_id_block (
+    sequence_name varchar(30) not null,
+    block_size int not null,
+    primary key (sequence_name)
+);
@@ -0,0 +1,229 @@
+package hello.jdbc.aggregate;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.journal.TransferJournal;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.UpsertResult;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class AggregatingMemberRepositoryTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    DriverManagerDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    AggregatingMemberRepository memberRepository;
+    BalanceAggregates aggregates;
+    BalanceReconciler reconciler;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        aggregates = new BalanceAggregates(dataSource);
+        memberRepository = new AggregatingMemberRepository(new MemberRepositoryV5(dataSource), aggregates, transactionManager);
+        reconciler = new BalanceReconciler(aggregates, transactionManager, false);
+        txTemplate = new TransactionTemplate(transactionManager);
+        // 다른 테스트가 남긴 데이터가 있을 수 있으므로 기준을 맞춘다.
+        reconciler.rebuild();
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+    }
+
+    @Test
+    void maintainDeltas() {
+        BalanceSnapshot before = aggregates.read();
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 5));
+        BalanceSnapshot saved = aggregates.read();
+        assertThat(saved.getMemberCount()).isEqualTo(before.getMemberCount() + 2);
+        assertThat(saved.getTotalMoney()).isEqualTo(before.getTotalMoney() + 10005);
+        assertThat(saved.getHistogram()[BalanceHistogram.bucketOf(10000)])
+                .isEqualTo(before.getHistogram()[BalanceHistogram.bucketOf(10000)] + 1);
+
+        memberRepository.update(MEMBER_B, 50);
+        memberRepository.delete(MEMBER_A);
+        BalanceSnapshot changed = aggregates.read();
+        assertThat(changed.getMemberCount()).isEqualTo(before.getMemberCount() + 1);
+        assertThat(changed.getTotalMoney()).isEqualTo(before.getTotalMoney() + 50);
+        assertThat(changed.getHistogram()[BalanceHistogram.bucketOf(5)])
+                .isEqualTo(before.getHistogram()[BalanceHistogram.bucketOf(5)]);
+        assertThat(changed.getHistogram()[BalanceHistogram.bucketOf(50)])
+                .isEqualTo(before.getHistogram()[BalanceHistogram.bucketOf(50)] + 1);
+
+        assertThat(reconciler.reconcile()).isTrue();
+    }
+
+    @Test
+    void transferKeepsTotal() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        BalanceSnapshot before = aggregates.read();
+
+        MemberServiceV4 memberService = new MemberServiceV4(memberRepository);
+        txTemplate.executeWithoutResult(status -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000));
+
+        BalanceSnapshot after = aggregates.read();
+        assertThat(after.getTotalMoney()).isEqualTo(before.getTotalMoney());
+        assertThat(after.getMemberCount()).isEqualTo(before.getMemberCount());
+        assertThat(reconciler.reconcile()).isTrue();
+    }
+
+    @Test
+    void rollbackDiscardsDeltas() {
+        BalanceSnapshot before = aggregates.read();
+
+        txTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member(MEMBER_A, 10000));
+            status.setRollbackOnly();
+        });
+
+        assertThat(aggregates.read()).isEqualTo(before);
+    }
+
+    @Test
+    void upsert() {
+        BalanceSnapshot before = aggregates.read();
+
+        memberRepository.upsert(new Member(MEMBER_A, 100));
+        memberRepository.upsert(new Member(MEMBER_A, 300));
+
+        BalanceSnapshot after = aggregates.read();
+        assertThat(after.getMemberCount()).isEqualTo(before.getMemberCount() + 1);
+        assertThat(after.getTotalMoney()).isEqualTo(before.getTotalMoney() + 300);
+        assertThat(reconciler.reconcile()).isTrue();
+    }
+
+    @Test
+    void concurrentUpsertOfNewMember() throws Exception {
+        BalanceSnapshot before = aggregates.read();
+
+        // 둘 다 락 조회에서 없는 회원을 보고 MERGE 하므로 한쪽은 UPDATED 가 된다.
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch ready = new CountDownLatch(2);
+        try {
+            List<Future<UpsertResult>> futures = new ArrayList<>();
+            for (int money : new int[]{100, 200}) {
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return memberRepository.upsert(new Member(MEMBER_A, money));
+                }));
+            }
+            for (Future<UpsertResult> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        BalanceSnapshot after = aggregates.read();
+        assertThat(after.getMemberCount()).isEqualTo(before.getMemberCount() + 1);
+        assertThat(reconciler.reconcile()).isTrue();
+    }
+
+    @Test
+    void upsertLosesInsertRace() {
+        BalanceSnapshot before = aggregates.read();
+
+        // 두 MERGE 가 모두 없는 회원으로 판단한 뒤 다른 쪽이 먼저 insert 하면, 늦은 쪽 insert 는 PK 중복으로 실패한다.
+        // 타이밍을 맞추기 어려우므로 delegate 가 다른 트랜젝션의 등록을 커밋한 뒤 H2 와 같은 예외를 던진다.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MemberRepositoryV5 racing = new MemberRepositoryV5(dataSource) {
+            @Override
+            public UpsertResult upsert(Member member) {
+                try {
+                    executor.submit(() -> memberRepository.save(new Member(member.getMemberId(), 100)))
+                            .get(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new DuplicateKeyException("member_id 중복");
+            }
+        };
+        AggregatingMemberRepository repository = new AggregatingMemberRepository(racing, aggregates, transactionManager);
+        try {
+            assertThat(repository.upsert(new Member(MEMBER_A, 200))).isEqualTo(UpsertResult.UPDATED);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(200);
+        BalanceSnapshot after = aggregates.read();
+        assertThat(after.getMemberCount()).isEqualTo(before.getMemberCount() + 1);
+        assertThat(after.getTotalMoney()).isEqualTo(before.getTotalMoney() + 200);
+        assertThat(reconciler.reconcile()).isTrue();
+    }
+
+    @Test
+    void addMoneyAll() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 5));
+        BalanceSnapshot before = aggregates.read();
+
+        SortedMap<String, Integer> deltas = new TreeMap<>();
+        deltas.put(MEMBER_A, -3000);
+        deltas.put(MEMBER_B, 3000);
+        deltas.put("memberX", 100);
+        int[] counts = memberRepository.addMoneyAll(deltas);
+
+        assertThat(counts).containsExactly(1, 1, 0);
+        BalanceSnapshot after = aggregates.read();
+        assertThat(after.getTotalMoney()).isEqualTo(before.getTotalMoney());
+        assertThat(after.getHistogram()[BalanceHistogram.bucketOf(5)])
+                .isEqualTo(before.getHistogram()[BalanceHistogram.bucketOf(5)] - 1);
+        assertThat(reconciler.reconcile()).isTrue();
+    }
+
+    @Test
+    void rejectUnaggregatedWriter() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        new BalanceAggregates(dataSource);
+
+        assertThatThrownBy(() -> new TransferJournal(dataSource))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void bucketBounds() {
+        // bucketOf 와 lowerBound 경계값 일치 확인
+        int[] samples = {Integer.MIN_VALUE, -1, 0, 9, 10, 99, 100, 999_999_999, 1_000_000_000, Integer.MAX_VALUE};
+        for (int money : samples) {
+            int bucket = BalanceHistogram.bucketOf(money);
+            assertThat(BalanceHistogram.lowerBound(bucket)).isLessThanOrEqualTo(money);
+            if (bucket + 1 < BalanceHistogram.BUCKETS) {
+                assertThat(BalanceHistogram.lowerBound(bucket + 1)).isGreaterThan(money);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package hello.jdbc.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 간단한 성능 측정 도구
+ * 워밍업 후 측정 구간을 반복 실행하여 op 당 평균 시간과 할당 바이트를 구한다.
+ * (JIT 워밍업만 처리하는 단순한 측정이므로 상대 비교 용도로만 사용)
+ */
+@Slf4j
+public abstract class Bench {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public interface Op {
+        void run(int i) throws Exception;
+    }
+
+    public static double nanosPerOp(String name, int warmup, int iterations, Op op) throws Exception {
+        return measure(name, warmup, iterations, op).nanosPerOp;
+    }
+
+    public static Result measure(String name, int warmup, int iterations, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run(i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run(i);
+        }
+        double nanos = (double) (System.nanoTime() - start) / iterations;
+        // 현재 스레드에서 할당한 바이트 (드라이버 내부 스레드의 할당은 포함되지 않는다)
+        double bytes = (double) (THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore) / iterations;
+        log.info("[bench] {} : {} ns/op, {} ops/s, {} B/op", name, String.format("%.0f", nanos),
+                String.format("%.0f", 1_000_000_000d / nanos), String.format("%.0f", bytes));
+        return new Result(nanos, bytes);
+    }
+
+    public static class Result {
+        public final double nanosPerOp;
+        public final double bytesPerOp;
+
+        Result(double nanosPerOp, double bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.repository.exception.MyDuplicateKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 키 중복 예외 변환 비용 비교
+ * - 리포지토리마다 SQLErrorCodeSQLExceptionTranslator 생성 (MemberRepositoryV4_2 변경 전)
+ * - 공유 SQLErrorCodeSQLExceptionTranslator
+ * - CachedSQLExceptionTranslator (에러코드 테이블 미리 계산)
+ * - MyDuplicateKeyException 스택트레이스 유무
+ */
+@Slf4j
+@Tag("benchmark")
+class ExceptionTranslationBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+    private static final String SQL = "insert into member(member_id, money) values(?, ?)";
+
+    DataSource dataSource;
+    SQLException duplicate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        duplicate = new SQLException("duplicate", "23505", 23505);
+    }
+
+    @Test
+    void translate() throws Exception {
+        Bench.nanosPerOp("new SQLErrorCodeSQLExceptionTranslator per call", WARMUP / 10, ITERATIONS / 10,
+                i -> new SQLErrorCodeSQLExceptionTranslator(dataSource).translate("save", SQL, duplicate));
+
+        SQLErrorCodeSQLExceptionTranslator shared = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        Bench.nanosPerOp("shared SQLErrorCodeSQLExceptionTranslator", WARMUP, ITERATIONS,
+                i -> shared.translate("save", SQL, duplicate));
+
+        CachedSQLExceptionTranslator cached = CachedSQLExceptionTranslator.of(dataSource);
+        Bench.nanosPerOp("CachedSQLExceptionTranslator", WARMUP, ITERATIONS,
+                i -> cached.translate("save", SQL, duplicate));
+        Bench.nanosPerOp("CachedSQLExceptionTranslator.isDuplicateKey", WARMUP, ITERATIONS,
+                i -> cached.isDuplicateKey(duplicate));
+    }
+
+    @Test
+    void stackTrace() throws Exception {
+        Bench.nanosPerOp("new MyDbException", WARMUP, ITERATIONS, i -> new MyDbException(duplicate));
+        Bench.nanosPerOp("new MyDuplicateKeyException", WARMUP, ITERATIONS, i -> new MyDuplicateKeyException(duplicate));
+        Bench.nanosPerOp("MyDuplicateKeyException.stackless", WARMUP, ITERATIONS,
+                i -> MyDuplicateKeyException.stackless(duplicate));
+    }
+}
@@ -0,0 +1,69 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 조회 실패(miss) 비용 비교
+ * 변경 전 : findById -> 예외 (NoSuchElementException / EmptyResultDataAccessException)
+ * 변경 후 : findOptionalById, existsById, findMoneyById
+ */
+@Slf4j
+@Tag("benchmark")
+class FindMissBenchmarkTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 20_000;
+    private static final String MISSING_ID = "missing";
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @Test
+    void missV4_2() throws Exception {
+        // MemberRepositoryV4_2 는 커넥션마다 info 로그를 남기므로 V5 와 절대값을 비교하지 않는다.
+        measure("V4_2", new MemberRepositoryV4_2(dataSource));
+    }
+
+    @Test
+    void missV5() throws Exception {
+        measure("V5", new MemberRepositoryV5(dataSource));
+    }
+
+    private void measure(String name, MemberRepository repository) throws Exception {
+        Bench.nanosPerOp(name + " findById (exception)", WARMUP, ITERATIONS, i -> {
+            try {
+                repository.findById(MISSING_ID);
+            } catch (NoSuchElementException | EmptyResultDataAccessException e) {
+                // miss
+            }
+        });
+        Bench.nanosPerOp(name + " findOptionalById", WARMUP, ITERATIONS, i -> repository.findOptionalById(MISSING_ID));
+        Bench.nanosPerOp(name + " existsById", WARMUP, ITERATIONS, i -> repository.existsById(MISSING_ID));
+        Bench.nanosPerOp(name + " findMoneyById", WARMUP, ITERATIONS, i -> repository.findMoneyById(MISSING_ID));
+    }
+}
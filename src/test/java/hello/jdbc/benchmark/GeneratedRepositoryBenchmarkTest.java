@@ -0,0 +1,59 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MemberRepositoryV6Impl;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * MemberRepositoryV5 (JdbcTemplate) vs MemberRepositoryV6Impl (생성된 코드)
+ */
+@Slf4j
+@Tag("benchmark")
+class GeneratedRepositoryBenchmarkTest {
+
+    private static final int WARMUP = 5_000;
+    private static final int ITERATIONS = 50_000;
+    private static final String MEMBER_ID = "benchV6";
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        MemberRepository v5 = new MemberRepositoryV5(dataSource);
+        MemberRepository v6 = new MemberRepositoryV6Impl(dataSource, CachedSQLExceptionTranslator.of(dataSource));
+        v5.upsert(new Member(MEMBER_ID, 0));
+        try {
+            for (int round = 0; round < 2; round++) {
+                Bench.nanosPerOp("V5 findById", WARMUP, ITERATIONS, i -> v5.findById(MEMBER_ID));
+                Bench.nanosPerOp("V6 findById", WARMUP, ITERATIONS, i -> v6.findById(MEMBER_ID));
+                Bench.nanosPerOp("V5 update", WARMUP, ITERATIONS, i -> v5.update(MEMBER_ID, i));
+                Bench.nanosPerOp("V6 update", WARMUP, ITERATIONS, i -> v6.update(MEMBER_ID, i));
+            }
+        } finally {
+            v5.delete(MEMBER_ID);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.hotaccount.HotAccountStripes;
+import hello.jdbc.hotaccount.HotAccountTransferService;
+import hello.jdbc.hotaccount.HotAccounts;
+import hello.jdbc.hotaccount.StripeSelection;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 한 회원에게 입금이 몰리는 경우
+ * member 행 하나 vs stripe 행으로 분할 (RANDOM, THREAD_AFFINE)
+ */
+@Slf4j
+@Tag("benchmark")
+class HotAccountBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 500;
+    private static final String PREFIX = "hab";
+    private static final String HOT = PREFIX + "Hot";
+
+    HikariDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    MemberRepositoryV5 memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(THREADS);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        cleanUp();
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run("single row", 0, StripeSelection.RANDOM);
+            run("16 stripes random", 16, StripeSelection.RANDOM);
+            run("16 stripes thread-affine", 16, StripeSelection.THREAD_AFFINE);
+        }
+    }
+
+    private void run(String name, int stripeCount, StripeSelection selection) throws Exception {
+        setUp();
+        HotAccountStripes stripes = new HotAccountStripes(dataSource);
+        if (stripeCount > 0) {
+            new HotAccounts(stripes, transactionManager, 0).designate(HOT, stripeCount);
+        }
+        HotAccountTransferService transferService = new HotAccountTransferService(stripes, transactionManager, selection);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String fromId = PREFIX + t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    transferService.accountTransfer(fromId, HOT, 1);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        log.info("[bench] {} : {} transfers/s", name,
+                String.format("%.0f", THREADS * TRANSFERS_PER_THREAD * 1_000_000_000d / elapsed));
+    }
+
+    private void setUp() {
+        cleanUp();
+        List<Member> members = new ArrayList<>(THREADS + 1);
+        for (int t = 0; t < THREADS; t++) {
+            members.add(new Member(PREFIX + t, 1_000_000));
+        }
+        members.add(new Member(HOT, 0));
+        memberRepository.upsertAll(members);
+    }
+
+    private void cleanUp() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like '" + PREFIX + "%'");
+    }
+}
@@ -0,0 +1,145 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.journal.JournalRollup;
+import hello.jdbc.journal.JournalTransferService;
+import hello.jdbc.journal.TransferJournal;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 소수 계좌 사이 동시 이체
+ * MemberServiceV4 (member 행 수정) vs JournalTransferService (저널 추가 + 주기적 스냅샷 반영)
+ * 저널 모드는 반영 작업을 켠 상태로 측정하고, 끝난 후 잔액 조회 비용도 같이 잰다.
+ */
+@Slf4j
+@Tag("benchmark")
+class JournalBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 1000;
+    private static final int ACCOUNTS = 4;
+    private static final String PREFIX = "jnb";
+
+    HikariDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    MemberRepositoryV5 memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(THREADS + 1);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        cleanUp();
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        MemberServiceV4 inPlace = new MemberServiceV4(memberRepository);
+        TransferJournal journal = new TransferJournal(dataSource);
+        JournalTransferService journaled = new JournalTransferService(journal);
+        JournalRollup rollup = new JournalRollup(journal, transactionManager, 500);
+
+        for (int round = 0; round < 2; round++) {
+            setUp();
+            // MemberServiceV4 는 락 순서를 정하지 않으므로 데드락이 나면 다시 시도하지 않고 실패로 센다.
+            run("V4 update in place", (fromId, toId, money) ->
+                    txTemplate.executeWithoutResult(status -> inPlace.accountTransfer(fromId, toId, money)));
+
+            setUp();
+            rollup.start(Duration.ofMillis(20));
+            try {
+                run("journal append", journaled);
+            } finally {
+                rollup.stop();
+            }
+            log.info("[bench] pending journal after run = {}", journal.countPending());
+            Bench.nanosPerOp("journal findBalance", 1000, 10_000, i -> journal.findBalanceById(memberId(i % ACCOUNTS)));
+            rollup.rollUp();
+            Bench.nanosPerOp("journal findBalance (rolled up)", 1000, 10_000, i -> journal.findBalanceById(memberId(i % ACCOUNTS)));
+        }
+    }
+
+    private void run(String name, TransferService transferService) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int failed = 0;
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    try {
+                        transferService.accountTransfer(memberId(from), memberId(to), 1);
+                    } catch (RuntimeException e) {
+                        failed++;
+                    }
+                }
+                return failed;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        int failed = 0;
+        for (Future<Integer> future : futures) {
+            failed += future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        log.info("[bench] {} : {} transfers/s, failed={}", name,
+                String.format("%.0f", THREADS * TRANSFERS_PER_THREAD * 1_000_000_000d / elapsed), failed);
+    }
+
+    private void setUp() {
+        cleanUp();
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), 1_000_000));
+        }
+        memberRepository.upsertAll(members);
+    }
+
+    private void cleanUp() {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.update("delete from transfer_journal where to_id like '" + PREFIX + "%' or from_id like '" + PREFIX + "%'");
+        template.update("delete from member where member_id like '" + PREFIX + "%'");
+    }
+
+    private static String memberId(int index) {
+        return PREFIX + index;
+    }
+}
@@ -0,0 +1,58 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MemberRepositoryV7;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * JdbcTemplate(V5) vs LeanJdbcTemplate(V7) : ops/s, B/op
+ */
+@Slf4j
+@Tag("benchmark")
+class LeanJdbcTemplateBenchmarkTest {
+
+    private static final int WARMUP = 5_000;
+    private static final int ITERATIONS = 50_000;
+    private static final String MEMBER_ID = "benchV7";
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        MemberRepository v5 = new MemberRepositoryV5(dataSource);
+        MemberRepository v7 = new MemberRepositoryV7(dataSource);
+        v5.upsert(new Member(MEMBER_ID, 0));
+        try {
+            Bench.measure("JdbcTemplate findById", WARMUP, ITERATIONS, i -> v5.findById(MEMBER_ID));
+            Bench.measure("LeanJdbcTemplate findById", WARMUP, ITERATIONS, i -> v7.findById(MEMBER_ID));
+            Bench.measure("JdbcTemplate findMoneyById", WARMUP, ITERATIONS, i -> v5.findMoneyById(MEMBER_ID));
+            Bench.measure("LeanJdbcTemplate findMoneyById", WARMUP, ITERATIONS, i -> v7.findMoneyById(MEMBER_ID));
+            Bench.measure("JdbcTemplate update", WARMUP, ITERATIONS, i -> v5.update(MEMBER_ID, i));
+            Bench.measure("LeanJdbcTemplate update", WARMUP, ITERATIONS, i -> v7.update(MEMBER_ID, i));
+        } finally {
+            v5.delete(MEMBER_ID);
+        }
+    }
+}
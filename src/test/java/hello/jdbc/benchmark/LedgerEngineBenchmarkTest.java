@@ -0,0 +1,124 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.ledger.LedgerEngine;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV5;
+import hello.jdbc.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * DB 트랜젝션 이체 (MemberServiceV5) vs 메모리 원장 엔진 (WAL 그룹 fsync)
+ * 엔진은 flushDelay 0 / 1ms 로 fsync 묶음 크기와 지연을 비교한다.
+ */
+@Slf4j
+@Tag("benchmark")
+class LedgerEngineBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 2000;
+    private static final int ACCOUNTS = 64;
+    private static final String PREFIX = "leb";
+
+    @TempDir
+    Path walDirectory;
+
+    HikariDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    MemberRepositoryV5 memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(THREADS);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), 1_000_000));
+        }
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like '" + PREFIX + "%'");
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        MemberServiceV5 database = new MemberServiceV5(memberRepository);
+
+        for (int round = 0; round < 2; round++) {
+            run("V5 transaction", (fromId, toId, money) ->
+                    txTemplate.executeWithoutResult(status -> database.accountTransfer(fromId, toId, money)));
+
+            for (Duration flushDelay : new Duration[]{Duration.ZERO, Duration.ofMillis(1)}) {
+                LedgerEngine engine = new LedgerEngine(dataSource, transactionManager, walDirectory, flushDelay);
+                try {
+                    run("ledger engine flushDelay=" + flushDelay.toMillis() + "ms", engine);
+                    log.info("[bench] {}, {}", engine.getTransferLatency(), engine.getFsyncLatency());
+                } finally {
+                    engine.close();
+                }
+            }
+        }
+    }
+
+    private void run(String name, TransferService transferService) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    transferService.accountTransfer(memberId(from), memberId(to), 1);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        log.info("[bench] {} : {} transfers/s", name,
+                String.format("%.0f", THREADS * TRANSFERS_PER_THREAD * 1_000_000_000d / elapsed));
+    }
+
+    private static String memberId(int index) {
+        return PREFIX + index;
+    }
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberBatch;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 행당 할당량 비교 : List<Member> vs MemberBatch
+ */
+@Slf4j
+@Tag("benchmark")
+class MemberBatchBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+    private static final String PREFIX = "mb";
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 repository;
+    JdbcTemplate template;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        repository = new MemberRepositoryV5(dataSource);
+        template = new JdbcTemplate(dataSource);
+
+        MemberBatch batch = new MemberBatch(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(PREFIX + i, i);
+        }
+        repository.saveAll(batch);
+    }
+
+    @AfterEach
+    void afterEach() {
+        template.update("delete from member where member_id like ?", PREFIX + "%");
+        dataSource.close();
+    }
+
+    @Test
+    void bytesPerRow() throws Exception {
+        String sql = "select member_id, money from member where member_id like ? order by member_id";
+
+        Bench.Result list = Bench.measure("List<Member> read " + ROWS + " rows", 5, 20, i -> {
+            List<Member> members = template.query(sql, (rs, rowNum) -> new Member(rs.getString(1), rs.getInt(2)),
+                    PREFIX + "%");
+            members.size();
+        });
+
+        MemberBatch batch = new MemberBatch(1000);
+        Bench.Result columnar = Bench.measure("MemberBatch read " + ROWS + " rows", 5, 20, i -> {
+            String after = PREFIX;
+            while (repository.findBatchAfter(after, batch) > 0 && batch.getLastMemberId().startsWith(PREFIX)) {
+                after = batch.getLastMemberId();
+            }
+        });
+
+        log.info("[bench] bytes/row List<Member>={}, MemberBatch={}",
+                String.format("%.1f", list.bytesPerOp / ROWS), String.format("%.1f", columnar.bytesPerOp / ROWS));
+    }
+}
@@ -0,0 +1,87 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.MemberBatch;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.MemberSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 잔액 범위 조회, 상위 N명 조회 (기본 1000만 건, -Dbench.rows 로 변경)
+ * 실행계획으로 idx_member_money 사용을 확인하고 응답 시간을 측정한다.
+ */
+@Slf4j
+@Tag("benchmark")
+class MoneyQueryBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 10_000_000);
+    private static final int CHUNK = 10_000;
+    private static final String PREFIX = "tm";
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 repository;
+    JdbcTemplate template;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        MemberSchema.ensure(dataSource);
+        repository = new MemberRepositoryV5(dataSource);
+        template = new JdbcTemplate(dataSource);
+
+        long start = System.currentTimeMillis();
+        MemberBatch batch = new MemberBatch(CHUNK);
+        for (int i = 0; i < ROWS; i++) {
+            // 잔액은 0 ~ 999,999 사이로 고르게 분포
+            batch.add(PREFIX + i, (int) ((i * 7919L) % 1_000_000));
+            if (batch.isFull()) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+        log.info("[bench] insert {} rows : {}ms", ROWS, System.currentTimeMillis() - start);
+    }
+
+    @AfterEach
+    void afterEach() {
+        template.update("delete from member where member_id like ?", PREFIX + "%");
+        dataSource.close();
+    }
+
+    @Test
+    void moneyQueries() throws Exception {
+        String betweenPlan = template.queryForObject(
+                "explain select member_id, money from member where money between 500000 and 500100", String.class);
+        String topPlan = template.queryForObject(
+                "explain select member_id, money from member order by money desc limit 100", String.class);
+        log.info("[bench] between plan={}", betweenPlan);
+        log.info("[bench] top plan={}", topPlan);
+        assertThat(betweenPlan).containsIgnoringCase("IDX_MEMBER_MONEY");
+        assertThat(topPlan).containsIgnoringCase("IDX_MEMBER_MONEY");
+
+        long[] rows = {0};
+        Bench.nanosPerOp("findByMoneyBetween (range 100)", 10, 200, i -> {
+            int min = (i * 4_999) % 999_900;
+            rows[0] += repository.findByMoneyBetween(min, min + 100, member -> { });
+        });
+        log.info("[bench] rows per range ~ {}", rows[0] / 210);
+
+        Bench.nanosPerOp("findTopByMoney(100)", 10, 200, i -> repository.findTopByMoney(100));
+
+        // 비교 : 인덱스를 사용하지 않는 전체 스캔 (money + 0 은 인덱스를 탈 수 없다)
+        Bench.nanosPerOp("full scan top 100", 1, 3, i -> template.queryForList(
+                "select member_id, money from member order by money + 0 desc limit 100"));
+    }
+}
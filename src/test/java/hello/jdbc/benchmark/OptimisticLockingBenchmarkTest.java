@@ -0,0 +1,139 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.retry.RetryBudget;
+import hello.jdbc.retry.TransactionRetrier;
+import hello.jdbc.service.MemberServiceV5;
+import hello.jdbc.service.MemberServiceV6;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 비관적 락(MemberServiceV5 : select ... for update) vs 낙관적 락(MemberServiceV6 : version 조건부 수정)
+ * 계좌 수가 적을수록 경합이 심하다. 경합 수준별로 처리량과 재시도 횟수를 비교한다.
+ */
+@Slf4j
+@Tag("benchmark")
+class OptimisticLockingBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 500;
+    private static final int[] ACCOUNTS = {2, 8, 64, 512};
+    private static final String PREFIX = "olb";
+
+    HikariDataSource dataSource;
+    TransactionTemplate txTemplate;
+    MemberRepositoryV5 memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(THREADS);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        memberRepository = new MemberRepositoryV5(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        cleanUp();
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        MemberServiceV5 pessimistic = new MemberServiceV5(memberRepository);
+        MemberServiceV6 optimistic = new MemberServiceV6(memberRepository);
+
+        for (int accounts : ACCOUNTS) {
+            setUp(accounts);
+            TransactionRetrier pessimisticRetrier = retrier();
+            double pessimisticOps = run(accounts, (from, to) -> pessimisticRetrier.run(() ->
+                    txTemplate.executeWithoutResult(status -> pessimistic.accountTransfer(from, to, 1))));
+            log.info("[bench] accounts={} pessimistic : {} ops/s, {}, {}", accounts, String.format("%.0f", pessimisticOps),
+                    pessimistic.getLockWait(), pessimisticRetrier.getMetrics());
+            pessimistic.getLockWait().reset();
+
+            setUp(accounts);
+            TransactionRetrier optimisticRetrier = retrier();
+            double optimisticOps = run(accounts, (from, to) -> optimisticRetrier.run(() ->
+                    txTemplate.executeWithoutResult(status -> optimistic.accountTransfer(from, to, 1))));
+            log.info("[bench] accounts={} optimistic  : {} ops/s, {}", accounts, String.format("%.0f", optimisticOps),
+                    optimisticRetrier.getMetrics());
+        }
+    }
+
+    private interface Transfer {
+        void run(String fromId, String toId);
+    }
+
+    private double run(int accounts, Transfer transfer) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    transfer.run(memberId(from), memberId(to));
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return THREADS * TRANSFERS_PER_THREAD * 1_000_000_000d / elapsed;
+    }
+
+    private TransactionRetrier retrier() {
+        return new TransactionRetrier(100, Duration.ofMillis(1), Duration.ofMillis(20),
+                new RetryBudget(THREADS * TRANSFERS_PER_THREAD, 1), ConcurrencyFailureException.class::isInstance);
+    }
+
+    private void setUp(int accounts) {
+        cleanUp();
+        List<Member> members = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            members.add(new Member(memberId(i), 1_000_000));
+        }
+        memberRepository.upsertAll(members);
+    }
+
+    private void cleanUp() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like '" + PREFIX + "%'");
+    }
+
+    private static String memberId(int index) {
+        return PREFIX + index;
+    }
+}
@@ -0,0 +1,73 @@
+package hello.jdbc.benchmark;
+
+import hello.jdbc.saga.CrossShardTransferService;
+import hello.jdbc.saga.Shard;
+import hello.jdbc.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 같은 샤드 이체 (로컬 트랜젝션 1개) vs 샤드 간 이체 (로컬 트랜젝션 2개 + outbox 완료 표시)
+ * 메모리 H2 두개를 샤드로 사용하므로 네트워크 왕복 비용은 포함되지 않는다. 트랜젝션 수와 outbox/inbox 쓰기 비용 비교용
+ */
+@Slf4j
+@Tag("benchmark")
+class SagaBenchmarkTest {
+
+    private static final int ACCOUNTS = 100;
+
+    JdbcTemplate templateA;
+    JdbcTemplate templateB;
+    CrossShardTransferService transferService;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSourceA = new DriverManagerDataSource("jdbc:h2:mem:sagaBenchA;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+        DriverManagerDataSource dataSourceB = new DriverManagerDataSource("jdbc:h2:mem:sagaBenchB;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+        Shard shardA = new Shard("A", dataSourceA);
+        Shard shardB = new Shard("B", dataSourceB);
+        templateA = new JdbcTemplate(dataSourceA);
+        templateB = new JdbcTemplate(dataSourceB);
+        transferService = new CrossShardTransferService(List.of(shardA, shardB),
+                memberId -> memberId.startsWith("b") ? 1 : 0);
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            templateA.update("insert into member(member_id, money) values (?, ?)", "a" + i, 1_000_000);
+            templateA.update("insert into member(member_id, money) values (?, ?)", "c" + i, 1_000_000);
+            templateB.update("insert into member(member_id, money) values (?, ?)", "b" + i, 1_000_000);
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        for (JdbcTemplate template : List.of(templateA, templateB)) {
+            template.update("delete from transfer_outbox");
+            template.update("delete from transfer_inbox");
+            template.update("delete from member");
+        }
+    }
+
+    @Test
+    void compare() throws Exception {
+        for (int round = 0; round < 2; round++) {
+            double local = run("same shard", transferService, "c");
+            double crossShard = run("cross shard", transferService, "b");
+            log.info("[bench] cross shard / same shard = {}", String.format("%.2f", crossShard / local));
+        }
+        log.info("[bench] saga metrics {}", transferService.getMetrics());
+    }
+
+    private double run(String name, TransferService service, String toPrefix) throws Exception {
+        return Bench.nanosPerOp(name, 1000, 5000, i ->
+                service.accountTransfer("a" + (i % ACCOUNTS), toPrefix + ((i + 1) % ACCOUNTS), 1));
+    }
+}
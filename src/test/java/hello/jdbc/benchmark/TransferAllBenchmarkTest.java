@@ -0,0 +1,94 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.NettingTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 적은 수의 회원 사이 대량 이체
+ * MemberServiceV4.accountTransfer 반복(이체마다 트랜젝션) vs NettingTransferService.transferAll(트랜젝션 1번)
+ */
+@Slf4j
+@Tag("benchmark")
+class TransferAllBenchmarkTest {
+
+    private static final int ACCOUNTS = 10;
+    private static final int TRANSFERS = 5000;
+    private static final String PREFIX = "tab";
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 memberRepository;
+    DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like '" + PREFIX + "%'");
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        List<Transfer> transfers = transfers();
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        MemberServiceV4 loop = new MemberServiceV4(memberRepository);
+        NettingTransferService netting = new NettingTransferService(memberRepository, transactionManager);
+
+        for (int round = 0; round < 3; round++) {
+            setUp();
+            Bench.measure("V4 accountTransfer x " + TRANSFERS, 0, 1, i -> {
+                for (Transfer transfer : transfers) {
+                    txTemplate.executeWithoutResult(status ->
+                            loop.accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney()));
+                }
+            });
+            setUp();
+            Bench.measure("transferAll " + TRANSFERS, 0, 1, i -> netting.transferAll(transfers));
+        }
+    }
+
+    private List<Transfer> transfers() {
+        Random random = new Random(42);
+        List<Transfer> transfers = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            int from = random.nextInt(ACCOUNTS);
+            int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            transfers.add(new Transfer(PREFIX + from, PREFIX + to, 1 + random.nextInt(100)));
+        }
+        return transfers;
+    }
+
+    private void setUp() {
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(PREFIX + i, 1_000_000));
+        }
+        memberRepository.upsertAll(members);
+    }
+}
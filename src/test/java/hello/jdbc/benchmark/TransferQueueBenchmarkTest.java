@@ -0,0 +1,89 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.transferqueue.TransferQueue;
+import hello.jdbc.transferqueue.TransferQueueWorkers;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+
+/**
+ * 작업 큐 - 이체 접수(enqueue) 비용, 워커 수별 처리량과 claim 시간
+ * 회원 수를 크게 잡아서 잔액 행 경합보다 큐 claim 비용이 드러나도록 한다.
+ */
+@Slf4j
+@Tag("benchmark")
+class TransferQueueBenchmarkTest {
+
+    private static final int ACCOUNTS = 1000;
+    private static final int TRANSFERS = 20_000;
+    private static final String PREFIX = "tqb";
+
+    HikariDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    MemberRepositoryV5 memberRepository;
+    TransferQueue queue;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(10);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        queue = new TransferQueue(dataSource);
+
+        List<Member> members = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), 1_000_000));
+        }
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.update("delete from pending_transfer where from_id like '" + PREFIX + "%'");
+        template.update("delete from member where member_id like '" + PREFIX + "%'");
+        dataSource.close();
+    }
+
+    @Test
+    void compare() throws Exception {
+        for (int workerCount : new int[]{1, 2, 4, 8}) {
+            Bench.nanosPerOp("enqueue", 0, TRANSFERS, i ->
+                    queue.enqueue(memberId(i % ACCOUNTS), memberId((i * 7 + 1) % ACCOUNTS), 1));
+
+            TransferQueueWorkers workers = new TransferQueueWorkers(queue, memberRepository, transactionManager,
+                    workerCount, 50, Duration.ofMillis(1), Duration.ofSeconds(30));
+            long begin = System.nanoTime();
+            workers.start();
+            while (workers.getQueueDepth() > 0) {
+                Thread.sleep(5);
+            }
+            long elapsed = System.nanoTime() - begin;
+            workers.stop();
+            log.info("[bench] workers={} : {} transfers/s, {}", workerCount,
+                    String.format("%.0f", TRANSFERS * 1_000_000_000d / elapsed), workers.getMetrics());
+            queue.deleteProcessed();
+        }
+    }
+
+    private static String memberId(int index) {
+        return PREFIX + index;
+    }
+}
@@ -0,0 +1,100 @@
+package hello.jdbc.exception.translator;
+
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import hello.jdbc.repository.exception.MyDuplicateKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class CachedExceptionTranslatorTest {
+
+    DataSource dataSource;
+
+    @BeforeEach
+    void init() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    @Test
+    void sameInstancePerDataSource() {
+        assertThat(CachedSQLExceptionTranslator.of(dataSource)).isSameAs(CachedSQLExceptionTranslator.of(dataSource));
+    }
+
+    @Test
+    void sameResultAsSpringTranslator() {
+        CachedSQLExceptionTranslator cached = CachedSQLExceptionTranslator.of(dataSource);
+        SQLErrorCodeSQLExceptionTranslator spring = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+
+        // h2 : 23505 duplicate key, 42122 bad sql grammar
+        SQLException duplicate = new SQLException("duplicate", "23505", 23505);
+        SQLException badGrammar = new SQLException("bad grammar", "42S22", 42122);
+
+        DataAccessException cachedDuplicate = cached.translate("save", "insert", duplicate);
+        assertThat(cachedDuplicate).isInstanceOf(DuplicateKeyException.class);
+        assertThat(cachedDuplicate.getClass()).isEqualTo(spring.translate("save", "insert", duplicate).getClass());
+        assertThat(cachedDuplicate.getMessage()).isEqualTo(spring.translate("save", "insert", duplicate).getMessage());
+
+        assertThat(cached.translate("select", "select bad", badGrammar)).isInstanceOf(BadSqlGrammarException.class);
+        assertThat(cached.isDuplicateKey(duplicate)).isTrue();
+        assertThat(cached.isDuplicateKey(badGrammar)).isFalse();
+    }
+
+    @Test
+    void batchUpdateUsesNextException() {
+        CachedSQLExceptionTranslator cached = CachedSQLExceptionTranslator.of(dataSource);
+        BatchUpdateException batch = new BatchUpdateException("batch", null, 0, new int[0]);
+        batch.setNextException(new SQLException("duplicate", "23505", 23505));
+
+        assertThat(cached.translate("batch", "insert", batch)).isInstanceOf(DuplicateKeyException.class);
+        assertThat(cached.isDuplicateKey(batch)).isTrue();
+    }
+
+    @Test
+    void unreachableDatabaseIsNotQueriedPerException() {
+        AtomicInteger attempts = new AtomicInteger();
+        DataSource down = new DriverManagerDataSource(URL, USERNAME, PASSWORD) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                attempts.incrementAndGet();
+                throw new SQLException("connection refused", "08001");
+            }
+        };
+        CachedSQLExceptionTranslator cached = CachedSQLExceptionTranslator.of(down);
+        int afterCreate = attempts.get();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(cached.translate("save", "insert", new SQLException("duplicate", "23505", 23505)))
+                    .isInstanceOf(DataIntegrityViolationException.class);
+        }
+        assertThat(attempts.get()).isEqualTo(afterCreate);
+    }
+
+    @Test
+    void stacklessException() {
+        SQLException cause = new SQLException("duplicate", "23505", 23505);
+
+        MyDuplicateKeyException stackless = MyDuplicateKeyException.stackless(cause);
+        MyDuplicateKeyException normal = new MyDuplicateKeyException(cause);
+
+        assertThat(stackless.getStackTrace()).isEmpty();
+        assertThat(normal.getStackTrace()).isNotEmpty();
+        // 원인 예외는 그대로 유지
+        assertThat(stackless.getCause()).isSameAs(cause);
+    }
+}
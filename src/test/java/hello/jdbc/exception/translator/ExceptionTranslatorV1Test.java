@@ -2,6 +2,7 @@ package hello.jdbc.exception.translator;
 
 import hello.jdbc.connection.ConnectionConstant;
 import hello.jdbc.domain.Member;
+import hello.jdbc.idgen.MemberIdGenerator;
 import hello.jdbc.repository.exception.MyDbException;
 import hello.jdbc.repository.exception.MyDuplicateKeyException;
 import lombok.RequiredArgsConstructor;
@@ -16,7 +17,6 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.Random;
 
 import static hello.jdbc.connection.ConnectionConstant.*;
 
@@ -30,7 +30,7 @@ public class ExceptionTranslatorV1Test {
     void init() {
         DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
         repository = new Repository(dataSource);
-        service = new Service(repository);
+        service = new Service(repository, new MemberIdGenerator(dataSource, 100, "myId"));
     }
 
     @Test
@@ -45,6 +45,7 @@ public class ExceptionTranslatorV1Test {
     static class Service {
 
         private final Repository repository;
+        private final MemberIdGenerator idGenerator;
 
         public void create(String memberId) {
             try {
@@ -64,7 +65,8 @@ public class ExceptionTranslatorV1Test {
         }
 
         private String generateNewId(String memberId) {
-            return memberId + new Random().nextInt(10000);
+            // 랜덤 값을 붙이면 다시 중복될 수 있다. 시퀀스 블록에서 받은 id 는 중복되지 않는다.
+            return idGenerator.nextMemberId();
         }
     }
 
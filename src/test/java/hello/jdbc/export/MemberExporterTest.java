@@ -0,0 +1,118 @@
+package hello.jdbc.export;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class MemberExporterTest {
+
+    private static final int COUNT = 100;
+
+    MemberRepository repository;
+    MemberExporter exporter;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new MemberRepositoryV5(dataSource);
+        // 작은 버퍼로 버퍼 교체가 여러번 일어나도록 한다.
+        exporter = new MemberExporter(dataSource, 256);
+        for (int i = 0; i < COUNT; i++) {
+            repository.save(new Member(memberId(i), i * 100));
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        for (int i = 0; i < COUNT; i++) {
+            repository.delete(memberId(i));
+        }
+    }
+
+    @Test
+    void exportCsv() throws IOException {
+        ExportResult result = exporter.export(dir, ExportFormat.CSV, 4, false);
+        log.info("result={}", result);
+
+        List<String> lines = new ArrayList<>();
+        for (ExportResult.Partition partition : result.getPartitions()) {
+            List<String> partitionLines = Files.readAllLines(partition.getFile());
+            assertThat(partitionLines.get(0)).isEqualTo("member_id,money");
+            lines.addAll(partitionLines.subList(1, partitionLines.size()));
+        }
+        assertThat(lines).contains("exp0,0", "exp99,9900");
+        assertThat(lines.stream().filter(line -> line.startsWith("exp"))).hasSize(COUNT);
+    }
+
+    @Test
+    void exportCompressedCsv() throws IOException {
+        ExportResult result = exporter.export(dir, ExportFormat.CSV, 2, true);
+
+        StringBuilder content = new StringBuilder();
+        for (ExportResult.Partition partition : result.getPartitions()) {
+            try (InputStream in = new InflaterInputStream(Files.newInputStream(partition.getFile()))) {
+                content.append(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertThat(content.toString()).contains("exp42,4200\n");
+    }
+
+    @Test
+    void exportBinary() throws IOException {
+        ExportResult result = exporter.export(dir, ExportFormat.BINARY, 3, false);
+
+        long bytes = 0;
+        for (ExportResult.Partition partition : result.getPartitions()) {
+            byte[] data = Files.readAllBytes(partition.getFile());
+            assertThat(new String(data, 0, 4, StandardCharsets.US_ASCII)).isEqualTo("MBR1");
+            bytes += data.length;
+        }
+        assertThat(result.getTotalRows()).isGreaterThanOrEqualTo(COUNT);
+        assertThat(bytes).isGreaterThan(0);
+    }
+
+    @Test
+    void csvQuotesMemberId() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        ExportFormat.CSV.writeRow(buffer, "a,\"b\"", 7);
+        ExportFormat.CSV.writeRow(buffer, "plain", -1);
+
+        buffer.flip();
+        assertThat(StandardCharsets.UTF_8.decode(buffer).toString()).isEqualTo("\"a,\"\"b\"\"\",7\nplain,-1\n");
+    }
+
+    @Test
+    void csvBoundFitsQuotedRow() {
+        // 따옴표만 있는 id 는 두배 + 감싸는 따옴표로 가장 길어진다.
+        String memberId = "\"\"\"\"\"";
+        ByteBuffer buffer = ByteBuffer.allocate(memberId.length() * 3 + 15);
+        assertThat(ExportFormat.CSV.writeRow(buffer, memberId, Integer.MIN_VALUE)).isTrue();
+    }
+
+    private String memberId(int i) {
+        return "exp" + i;
+    }
+}
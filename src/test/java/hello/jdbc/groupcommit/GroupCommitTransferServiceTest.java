@@ -0,0 +1,124 @@
+package hello.jdbc.groupcommit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class GroupCommitTransferServiceTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 memberRepository;
+    GroupCommitTransferService transferService;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        transferService = new GroupCommitTransferService(memberRepository, new DataSourceTransactionManager(dataSource),
+                Duration.ofMillis(2), 64);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), INITIAL_MONEY));
+        }
+        members.add(new Member("ex", INITIAL_MONEY));
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        transferService.close();
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'gc%' or member_id = 'ex'");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentTransfersShareCommits() throws Exception {
+        AtomicIntegerArray expected = new AtomicIntegerArray(ACCOUNTS);
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(clients.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    if (i % 10 == 0) {
+                        // 실패하는 이체를 섞는다.
+                        try {
+                            transferService.accountTransfer(memberId(from), "ex", 1);
+                        } catch (IllegalStateException e) {
+                            failures.incrementAndGet();
+                        }
+                        continue;
+                    }
+                    transferService.accountTransfer(memberId(from), memberId(to), 1);
+                    expected.decrementAndGet(from);
+                    expected.incrementAndGet(to);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        clients.shutdown();
+
+        GroupCommitMetrics metrics = transferService.getMetrics();
+        log.info("{}", metrics);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepository.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected.get(i));
+        }
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(INITIAL_MONEY);
+        assertThat(failures.get()).isEqualTo(THREADS * TRANSFERS_PER_THREAD / 10);
+        assertThat(metrics.getTransfers()).isEqualTo(THREADS * TRANSFERS_PER_THREAD * 9 / 10);
+        // 동시에 들어온 이체는 같은 트랜젝션으로 커밋된다.
+        assertThat(metrics.getCommits()).isLessThan(metrics.getTransfers());
+    }
+
+    @Test
+    void missingMember() {
+        assertThatThrownBy(() -> transferService.accountTransfer(memberId(0), "gcNone", 100))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY);
+    }
+
+    private static String memberId(int index) {
+        return "gc" + index;
+    }
+}
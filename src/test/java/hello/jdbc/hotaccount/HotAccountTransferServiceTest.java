@@ -0,0 +1,177 @@
+package hello.jdbc.hotaccount;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class HotAccountTransferServiceTest {
+
+    private static final String HOT = "hotM";
+    private static final int SENDERS = 8;
+    private static final int TRANSFERS_PER_SENDER = 50;
+    private static final int INITIAL_MONEY = 10000;
+
+    HikariDataSource dataSource;
+    JdbcTemplate template;
+    MemberRepositoryV5 memberRepositoryV5;
+    HotAccountStripes stripes;
+    HotAccounts hotAccounts;
+    HotAccountTransferService transferService;
+    StripedMemberRepository memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        template = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepositoryV5 = new MemberRepositoryV5(dataSource);
+        stripes = new HotAccountStripes(dataSource);
+        hotAccounts = new HotAccounts(stripes, transactionManager, 10);
+        transferService = new HotAccountTransferService(stripes, transactionManager, StripeSelection.RANDOM);
+        memberRepository = new StripedMemberRepository(memberRepositoryV5, stripes, transactionManager);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            members.add(new Member(sender(i), INITIAL_MONEY));
+        }
+        members.add(new Member(HOT, 0));
+        memberRepositoryV5.upsertAll(members);
+        hotAccounts.designate(HOT, 4);
+    }
+
+    @AfterEach
+    void afterEach() {
+        hotAccounts.stop();
+        // stripe 행은 on delete cascade 로 같이 삭제된다.
+        template.update("delete from member where member_id like 'hot%'");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentCreditsAreSummed() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(SENDERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < SENDERS; t++) {
+            String fromId = sender(t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_SENDER; i++) {
+                    transferService.accountTransfer(fromId, HOT, 10);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        int expected = SENDERS * TRANSFERS_PER_SENDER * 10;
+        assertThat(memberRepository.findById(HOT).getMoney()).isEqualTo(expected);
+        assertThat(memberRepository.findMoneyById(HOT)).hasValue(expected);
+        // member 행은 그대로이고 입금은 stripe 에 나뉘어 있다.
+        assertThat(memberRepositoryV5.findById(HOT).getMoney()).isZero();
+        assertThat(template.queryForObject("select count(*) from member_stripe where member_id = ? and money > 0",
+                Integer.class, HOT)).isGreaterThan(1);
+    }
+
+    @Test
+    void debitDrawsAcrossStripes() {
+        for (int i = 0; i < 20; i++) {
+            transferService.accountTransfer(sender(i % SENDERS), HOT, 100);
+        }
+        transferService.accountTransfer(HOT, sender(0), 1500);
+
+        assertThat(memberRepository.findById(HOT).getMoney()).isEqualTo(500);
+        assertThat(stripeTotal()).isEqualTo(500);
+        assertThat(memberRepositoryV5.findById(HOT).getMoney()).isZero();
+    }
+
+    @Test
+    void exTargetRollsBack() {
+        memberRepositoryV5.save(new Member("ex", 0));
+        try {
+            assertThatThrownBy(() -> transferService.accountTransfer(HOT, "ex", 100))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(memberRepository.findById(HOT).getMoney()).isZero();
+        } finally {
+            memberRepositoryV5.delete("ex");
+        }
+    }
+
+    @Test
+    void updateFoldsStripes() {
+        transferService.accountTransfer(sender(0), HOT, 300);
+
+        memberRepository.update(HOT, 1000);
+
+        assertThat(memberRepository.findById(HOT).getMoney()).isEqualTo(1000);
+        assertThat(memberRepositoryV5.findById(HOT).getMoney()).isEqualTo(1000);
+        assertThat(stripeTotal()).isZero();
+    }
+
+    @Test
+    void optimisticUpdateSeesStripeCredits() {
+        Member hot = memberRepository.findById(HOT);
+        // 읽은 후 stripe 에 입금
+        transferService.accountTransfer(sender(0), HOT, 300);
+
+        hot.setMoney(hot.getMoney() + 50);
+        assertThatThrownBy(() -> memberRepository.update(hot))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(memberRepository.findById(HOT).getMoney()).isEqualTo(300);
+    }
+
+    @Test
+    void rebalanceMergesIdleAndSplitsBusy() {
+        transferService.accountTransfer(sender(0), HOT, 300);
+
+        // 직전 rebalance 이후 입금 1건 < 10 : 합친다.
+        assertThat(hotAccounts.rebalance()).containsExactly(HOT);
+        assertThat(stripes.isActive(HOT)).isFalse();
+        assertThat(memberRepositoryV5.findById(HOT).getMoney()).isEqualTo(300);
+        assertThat(template.queryForObject("select count(*) from member_stripe where member_id = ?",
+                Integer.class, HOT)).isZero();
+
+        // 입금이 다시 늘면 나눈다.
+        for (int i = 0; i < 10; i++) {
+            transferService.accountTransfer(sender(i % SENDERS), HOT, 10);
+        }
+        assertThat(hotAccounts.rebalance()).isEmpty();
+        assertThat(stripes.isActive(HOT)).isTrue();
+        assertThat(memberRepository.findById(HOT).getMoney()).isEqualTo(400);
+    }
+
+    private int stripeTotal() {
+        return template.queryForObject("select coalesce(sum(money), 0) from member_stripe where member_id = ?",
+                Integer.class, HOT);
+    }
+
+    private static String sender(int index) {
+        return "hot" + index;
+    }
+}
@@ -0,0 +1,151 @@
+package hello.jdbc.idempotency;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class IdempotentTransferServiceTest {
+
+    public static final String MEMBER_A = "idmA";
+    public static final String MEMBER_B = "idmB";
+    public static final String MEMBER_EX = "ex";
+
+    HikariDataSource dataSource;
+    JdbcTemplate template;
+    MemberRepositoryV5 memberRepository;
+    IdempotentTransferService transferService;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        template = new JdbcTemplate(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        // MemberServiceV4 는 프록시 없이 사용 - 리포지토리가 IdempotentTransferService 의 트랜젝션 커넥션을 사용한다.
+        transferService = new IdempotentTransferService(new MemberServiceV4(memberRepository), dataSource,
+                new DataSourceTransactionManager(dataSource), 2);
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        template.update("delete from transfer_idempotency where idempotency_key like 'idm-%'");
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        dataSource.close();
+    }
+
+    @Test
+    void retryAnsweredFromWindow() {
+        assertThat(transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 2000)).isEqualTo(TransferOutcome.APPLIED);
+        assertThat(transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 2000)).isEqualTo(TransferOutcome.DUPLICATE);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+        IdempotencyMetrics metrics = transferService.getMetrics();
+        assertThat(metrics.getWindowHits()).isEqualTo(1);
+        assertThat(metrics.getInsertDuplicates()).isZero();
+        assertThat(metrics.getDuplicateRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void retryAfterEvictionFailsOnInsert() {
+        transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 2000);
+        transferService.accountTransfer("idm-2", MEMBER_A, MEMBER_B, 100);
+        transferService.accountTransfer("idm-3", MEMBER_A, MEMBER_B, 100);
+
+        // window(2건)에서 밀려난 키는 PK 중복으로 걸러진다.
+        assertThat(transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 2000)).isEqualTo(TransferOutcome.DUPLICATE);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(7800);
+        assertThat(transferService.getMetrics().getInsertDuplicates()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRetriesApplyOnce() throws Exception {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<TransferOutcome>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return transferService.accountTransfer("idm-c", MEMBER_A, MEMBER_B, 1000);
+            }));
+        }
+        start.countDown();
+        int applied = 0;
+        for (Future<TransferOutcome> future : futures) {
+            if (future.get() == TransferOutcome.APPLIED) {
+                applied++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(applied).isEqualTo(1);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+    }
+
+    @Test
+    void failedTransferDoesNotKeepKey() {
+        assertThatThrownBy(() -> transferService.accountTransfer("idm-ex", MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+        // 롤백되어 키가 남지 않았으므로 다시 실행된다.
+        assertThatThrownBy(() -> transferService.accountTransfer("idm-ex", MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(template.queryForObject("select count(*) from transfer_idempotency where idempotency_key = 'idm-ex'",
+                Integer.class)).isZero();
+    }
+
+    @Test
+    void sameKeyDifferentTransfer() {
+        transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 2000);
+
+        assertThatThrownBy(() -> transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 3000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+    }
+
+    @Test
+    void sameKeyDifferentTransferAfterEviction() {
+        transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 2000);
+        transferService.accountTransfer("idm-2", MEMBER_A, MEMBER_B, 100);
+        transferService.accountTransfer("idm-3", MEMBER_A, MEMBER_B, 100);
+
+        // window 에서 밀려났어도 저장된 내용과 비교해서 거절한다.
+        assertThatThrownBy(() -> transferService.accountTransfer("idm-1", MEMBER_A, MEMBER_B, 3000))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 조회한 내용이 window 에 들어가므로 이번엔 DB 없이 거절한다.
+        assertThatThrownBy(() -> transferService.accountTransfer("idm-1", MEMBER_B, MEMBER_A, 2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(transferService.getMetrics().getInsertDuplicates()).isEqualTo(1);
+        assertThat(transferService.getMetrics().getWindowHits()).isZero();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(7800);
+    }
+}
@@ -0,0 +1,84 @@
+package hello.jdbc.idgen;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberIdGeneratorTest {
+
+    DriverManagerDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    @Test
+    void uniqueAcrossGenerators() throws Exception {
+        // 애플리케이션 인스턴스 2개를 흉내낸다.
+        MemberIdGenerator generator1 = new MemberIdGenerator(dataSource, 100, "g");
+        MemberIdGenerator generator2 = new MemberIdGenerator(dataSource, 100, "g");
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            MemberIdGenerator generator = i % 2 == 0 ? generator1 : generator2;
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    assertThat(ids.add(generator.nextId())).isTrue();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(ids).hasSize(8000);
+    }
+
+    @Test
+    void saveWithoutCollision() {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        MemberIdGenerator generator = new MemberIdGenerator(dataSource, 100, "id");
+
+        // 키 중복 -> 예외 변환 -> 재시도 없이 바로 저장된다.
+        List<String> memberIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String memberId = generator.nextMemberId();
+            repository.save(new Member(memberId, 0));
+            memberIds.add(memberId);
+        }
+        log.info("memberIds={}", memberIds);
+
+        memberIds.forEach(repository::delete);
+        assertThat(memberIds).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void rejectDifferentBlockSize() {
+        new MemberIdGenerator(dataSource, 100, "g");
+
+        // 같은 시퀀스에 blockSize 가 다르면 발급 범위가 겹친다.
+        assertThatThrownBy(() -> new MemberIdGenerator(dataSource, 10, "g"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,185 @@
+package hello.jdbc.journal;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class JournalTransferServiceTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final int INITIAL_MONEY = 10000;
+
+    HikariDataSource dataSource;
+    JdbcTemplate template;
+    MemberRepositoryV5 memberRepositoryV5;
+    TransferJournal journal;
+    JournalRollup rollup;
+    JournalTransferService transferService;
+    JournalMemberRepository memberRepository;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        template = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepositoryV5 = new MemberRepositoryV5(dataSource);
+        journal = new TransferJournal(dataSource);
+        rollup = new JournalRollup(journal, transactionManager, 50);
+        transferService = new JournalTransferService(journal);
+        memberRepository = new JournalMemberRepository(memberRepositoryV5, journal, transactionManager);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), INITIAL_MONEY));
+        }
+        memberRepositoryV5.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        rollup.stop();
+        template.update("delete from transfer_journal where to_id like 'jn%' or from_id like 'jn%'");
+        template.update("delete from member where member_id like 'jn%'");
+        dataSource.close();
+    }
+
+    @Test
+    void balanceIsSnapshotPlusJournal() {
+        transferService.accountTransfer(memberId(0), memberId(1), 2000);
+
+        // 스냅샷(member.money)은 그대로
+        assertThat(memberRepositoryV5.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findMoneyById(memberId(1))).hasValue(12000);
+
+        assertThat(rollup.rollUp()).isEqualTo(1);
+
+        assertThat(memberRepositoryV5.findById(memberId(0)).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(memberId(1)).getMoney()).isEqualTo(12000);
+        assertThat(rollup.rollUp()).isZero();
+    }
+
+    @Test
+    void concurrentTransfersWithRollup() throws Exception {
+        rollup.start(Duration.ofMillis(5));
+        AtomicIntegerArray expected = new AtomicIntegerArray(ACCOUNTS);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    transferService.accountTransfer(memberId(from), memberId(to), 1);
+                    expected.decrementAndGet(from);
+                    expected.incrementAndGet(to);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 반영 중에도 조회 결과는 같다.
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepository.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected.get(i));
+        }
+        rollup.stop();
+        rollup.rollUp();
+        assertThat(journal.countPending()).isZero();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepositoryV5.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected.get(i));
+        }
+    }
+
+    @Test
+    void updateAppendsAdjustment() {
+        transferService.accountTransfer(memberId(0), memberId(1), 2000);
+
+        memberRepository.update(memberId(1), 5000);
+
+        assertThat(memberRepository.findById(memberId(1)).getMoney()).isEqualTo(5000);
+        rollup.rollUp();
+        assertThat(memberRepositoryV5.findById(memberId(1)).getMoney()).isEqualTo(5000);
+        assertThat(memberRepositoryV5.findById(memberId(0)).getMoney()).isEqualTo(8000);
+    }
+
+    @Test
+    void optimisticUpdate() {
+        Member member = memberRepository.findById(memberId(1));
+        member.setMoney(member.getMoney() + 100);
+        memberRepository.update(member);
+        assertThat(memberRepository.findById(memberId(1))).isEqualTo(member);
+
+        // 조회 이후 이체가 들어오면 version 이 달라진다. 반영(rollUp)은 version 을 바꾸지 않는다.
+        Member stale = memberRepository.findById(memberId(1));
+        transferService.accountTransfer(memberId(0), memberId(1), 2000);
+        rollup.rollUp();
+        stale.setMoney(0);
+        assertThatThrownBy(() -> memberRepository.update(stale))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(memberRepository.findMoneyById(memberId(1))).hasValue(INITIAL_MONEY + 2100);
+    }
+
+    @Test
+    void deleteRollsUpPendingJournal() {
+        transferService.accountTransfer(memberId(0), memberId(1), 2000);
+
+        memberRepository.delete(memberId(1));
+        memberRepositoryV5.save(new Member(memberId(1), 0));
+
+        // 삭제 전 저널이 다시 등록한 회원에게 더해지지 않고, 보낸 쪽 출금은 남는다.
+        assertThat(memberRepository.findMoneyById(memberId(1))).hasValue(0);
+        assertThat(memberRepository.findMoneyById(memberId(0))).hasValue(INITIAL_MONEY - 2000);
+        assertThat(journal.countPending()).isZero();
+    }
+
+    @Test
+    void validation() {
+        assertThatThrownBy(() -> transferService.accountTransfer(memberId(0), "jnNone", 100))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("jnNone");
+        assertThatThrownBy(() -> transferService.accountTransfer(memberId(0), "ex", 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(journal.countPending()).isZero();
+    }
+
+    private static String memberId(int index) {
+        return "jn" + index;
+    }
+}
@@ -0,0 +1,232 @@
+package hello.jdbc.ledger;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Stream;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class LedgerEngineTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final int INITIAL_MONEY = 10000;
+
+    @TempDir
+    Path walDirectory;
+
+    HikariDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    MemberRepositoryV5 memberRepositoryV5;
+    LedgerEngine engine;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepositoryV5 = new MemberRepositoryV5(dataSource);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), INITIAL_MONEY));
+        }
+        members.add(new Member("ex", INITIAL_MONEY));
+        memberRepositoryV5.upsertAll(members);
+        engine = start();
+    }
+
+    @AfterEach
+    void afterEach() {
+        engine.abandon();
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'lg%' or member_id = 'ex'");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentTransfersAndCheckpoint() throws Exception {
+        LedgerMemberRepository memberRepository = new LedgerMemberRepository(engine);
+        AtomicIntegerArray expected = new AtomicIntegerArray(ACCOUNTS);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    engine.accountTransfer(memberId(from), memberId(to), 1);
+                    expected.decrementAndGet(from);
+                    expected.incrementAndGet(to);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        log.info("{}, {}", engine.getTransferLatency(), engine.getFsyncLatency());
+
+        // 그룹 fsync : fsync 횟수가 이체 수보다 적다.
+        assertThat(engine.getFsyncLatency().getCount()).isLessThan(THREADS * TRANSFERS_PER_THREAD);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepository.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected.get(i));
+            // 체크포인트 전이므로 DB 는 그대로
+            assertThat(memberRepositoryV5.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY);
+        }
+
+        assertThat(engine.checkpoint()).isEqualTo(ACCOUNTS);
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepositoryV5.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected.get(i));
+        }
+        // 체크포인트에 포함된 세그먼트는 삭제된다.
+        assertThat(segments()).hasSize(1);
+        assertThat(engine.checkpoint()).isZero();
+    }
+
+    @Test
+    void recoverFromCheckpointAndWal() {
+        engine.accountTransfer(memberId(0), memberId(1), 1000);
+        engine.checkpoint();
+        engine.accountTransfer(memberId(1), memberId(2), 300);
+        engine.accountTransfer(memberId(2), memberId(3), 100);
+        // 체크포인트 없이 중단
+        engine.abandon();
+        assertThat(memberRepositoryV5.findById(memberId(2)).getMoney()).isEqualTo(INITIAL_MONEY);
+
+        engine = start();
+        LedgerMemberRepository memberRepository = new LedgerMemberRepository(engine);
+
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(9000);
+        assertThat(memberRepository.findById(memberId(1)).getMoney()).isEqualTo(10700);
+        assertThat(memberRepository.findById(memberId(2)).getMoney()).isEqualTo(10200);
+        assertThat(memberRepository.findById(memberId(3)).getMoney()).isEqualTo(10100);
+        // 복구한 잔액도 다음 체크포인트에 기록된다.
+        assertThat(engine.checkpoint()).isEqualTo(3);
+        assertThat(memberRepositoryV5.findById(memberId(2)).getMoney()).isEqualTo(10200);
+    }
+
+    @Test
+    void tornRecordIsTruncated() throws Exception {
+        engine.accountTransfer(memberId(0), memberId(1), 1000);
+        engine.abandon();
+        Path last = segments().get(segments().size() - 1);
+        long size = Files.size(last);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.APPEND)) {
+            // 길이만 기록되고 중단된 레코드
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 30, 1, 2}));
+        }
+
+        engine = start();
+
+        assertThat(Files.size(last)).isEqualTo(size);
+        assertThat(engine.findMoney(memberId(1))).hasValue(11000);
+        engine.accountTransfer(memberId(1), memberId(0), 500);
+        engine.abandon();
+        engine = start();
+        assertThat(engine.findMoney(memberId(1))).hasValue(10500);
+    }
+
+    @Test
+    void validation() {
+        long sequence = engine.getSequence();
+        assertThatThrownBy(() -> engine.accountTransfer(memberId(0), "lgNone", 100))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> engine.accountTransfer(memberId(0), "ex", 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> engine.accountTransfer(memberId(0), memberId(1), Integer.MAX_VALUE))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> new LedgerMemberRepository(engine).update(memberId(0), 0))
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        assertThat(engine.findMoney(memberId(0))).hasValue(INITIAL_MONEY);
+        assertThat(engine.findMoney(memberId(1))).hasValue(INITIAL_MONEY);
+        // 거절된 이체는 WAL 에 기록되지 않는다.
+        assertThat(engine.getSequence()).isEqualTo(sequence);
+    }
+
+    @Test
+    void sampleMemberIds() {
+        LedgerMemberRepository memberRepository = new LedgerMemberRepository(engine);
+
+        // DB 리포지토리와 같이 member_id 순서의 일정한 간격, 회원이 충분하면 정확히 sampleSize 건
+        assertThat(memberRepository.sampleMemberIds(3)).hasSize(3).isSorted().doesNotHaveDuplicates();
+        assertThat(memberRepository.sampleMemberIds(engine.size() + 10)).hasSize(engine.size()).isSorted();
+        assertThat(memberRepository.sampleMemberIds(0)).isEmpty();
+    }
+
+    @Test
+    void walFailureStopsEngine() {
+        engine.accountTransfer(memberId(0), memberId(1), 1000);
+        engine.getWal().fail(new IOException("disk full"));
+
+        assertThatThrownBy(() -> engine.accountTransfer(memberId(1), memberId(2), 300))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThat(engine.isFailed()).isTrue();
+        // 멈춘 후에는 조회도 체크포인트도 하지 않는다.
+        assertThatThrownBy(() -> engine.findMoney(memberId(2))).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> engine.accountTransfer(memberId(1), memberId(2), 300))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> engine.checkpoint()).isInstanceOf(IllegalStateException.class);
+        engine.close();
+        assertThat(memberRepositoryV5.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY);
+
+        // 재시작하면 fsync 된 이체만 복구된다.
+        engine = start();
+        assertThat(engine.findMoney(memberId(1))).hasValue(11000);
+        assertThat(engine.findMoney(memberId(2))).hasValue(INITIAL_MONEY);
+    }
+
+    private LedgerEngine start() {
+        return new LedgerEngine(dataSource, transactionManager, walDirectory, Duration.ZERO);
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            List<Path> segments = new ArrayList<>();
+            files.sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private static String memberId(int index) {
+        return "lg" + index;
+    }
+}
@@ -0,0 +1,59 @@
+package hello.jdbc.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLocksTest {
+
+    @Test
+    void sameStripeLockedOnce() {
+        StripedLocks locks = new StripedLocks(1);
+        boolean[] ran = {false};
+
+        // stripe 가 하나뿐이어도 같은 락을 두번 잡으려다 멈추지 않는다.
+        locks.runLocked("memberA", "memberB", () -> ran[0] = true);
+
+        assertThat(ran[0]).isTrue();
+        assertThat(locks.getWait().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void oppositeOrderNoDeadlock() throws Exception {
+        StripedLocks locks = new StripedLocks(16);
+        int[] counter = {0};
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    locks.runLocked(forward ? "memberA" : "memberB", forward ? "memberB" : "memberA", () -> counter[0]++);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 락 안에서만 증가시키므로 유실이 없다.
+        assertThat(counter[0]).isEqualTo(80_000);
+    }
+
+    @Test
+    void stripeOfIsStable() {
+        StripedLocks locks = new StripedLocks(7);
+        for (int i = 0; i < 1000; i++) {
+            String memberId = "member" + i;
+            int stripe = locks.stripeOf(memberId);
+            assertThat(stripe).isBetween(0, 6).isEqualTo(locks.stripeOf(new String(memberId)));
+        }
+    }
+}
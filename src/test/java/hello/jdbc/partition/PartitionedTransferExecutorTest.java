@@ -0,0 +1,151 @@
+package hello.jdbc.partition;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.service.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class PartitionedTransferExecutorTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int PARTITIONS = 4;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 memberRepository;
+    PartitionedTransferExecutor executor;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        // 파티션 트랜젝션에 참여 (프록시가 아니므로 DataSourceUtils 로 같은 커넥션 사용)
+        MemberServiceV4 memberService = new MemberServiceV4(memberRepository);
+        executor = new PartitionedTransferExecutor(memberService, new DataSourceTransactionManager(dataSource), PARTITIONS, 32);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), INITIAL_MONEY));
+        }
+        members.add(new Member("ex", INITIAL_MONEY));
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.close();
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'pt%' or member_id = 'ex'");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentTransfers() throws Exception {
+        // 회원별 기대 잔액 변화
+        AtomicIntegerArray expected = new AtomicIntegerArray(ACCOUNTS);
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(clients.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    int money = 1 + random.nextInt(10);
+                    executor.accountTransfer(memberId(from), memberId(to), money);
+                    expected.addAndGet(from, -money);
+                    expected.addAndGet(to, money);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        clients.shutdown();
+
+        // 갱신 손실 없음
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepository.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected.get(i));
+        }
+        long completed = 0;
+        for (int p = 0; p < PARTITIONS; p++) {
+            log.info("queueDepth={}, {}", executor.getQueueDepth(p), executor.getLatency(p));
+            assertThat(executor.getQueueDepth(p)).isZero();
+            completed += executor.getLatency(p).getCount();
+        }
+        assertThat(completed).isEqualTo(THREADS * TRANSFERS_PER_THREAD);
+    }
+
+    @Test
+    void failedTransferDoesNotAffectBatch() throws Exception {
+        // 같은 배치로 묶일 수 있도록 한꺼번에 넣는다.
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(memberId(0), memberId(1), 100));
+            futures.add(executor.submit(memberId(1), "ex", 100));
+        }
+
+        int failed = 0;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+                failed++;
+            }
+        }
+
+        assertThat(failed).isEqualTo(10);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY - 1000);
+        assertThat(memberRepository.findById(memberId(1)).getMoney()).isEqualTo(INITIAL_MONEY + 1000);
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(INITIAL_MONEY);
+    }
+
+    @Test
+    void synchronousFailure() {
+        assertThatThrownBy(() -> executor.accountTransfer(memberId(0), "ex", 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY);
+    }
+
+    @Test
+    void transferAfterClose() {
+        executor.close();
+
+        assertThatThrownBy(() -> executor.submit(memberId(0), memberId(1), 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> executor.accountTransfer(memberId(0), memberId(1), 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY);
+    }
+
+    private static String memberId(int index) {
+        return "pt" + index;
+    }
+}
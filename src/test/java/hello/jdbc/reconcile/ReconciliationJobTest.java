@@ -0,0 +1,120 @@
+package hello.jdbc.reconcile;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class ReconciliationJobTest {
+
+    private static final int MEMBERS = 1000;
+    private static final int PARTITIONS = 4;
+
+    HikariDataSource dataSource;
+    ForkJoinPool pool;
+    MemberRepositoryV5 memberRepository;
+    PartitionedScanner scanner;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(PARTITIONS);
+        pool = new ForkJoinPool(PARTITIONS);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        scanner = new PartitionedScanner(memberRepository, pool);
+
+        List<Member> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Member(String.format("rc%04d", i), i));
+        }
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'rc%'");
+        pool.shutdown();
+        dataSource.close();
+    }
+
+    @Test
+    void splitCoversAllRows() {
+        List<KeyRange> ranges = scanner.split(PARTITIONS);
+        log.info("ranges={}", ranges);
+
+        // 처음과 끝은 열려있고, 구간끼리 이어져야 한다.
+        assertThat(ranges.get(0).getFromId()).isNull();
+        assertThat(ranges.get(ranges.size() - 1).getToId()).isNull();
+        for (int i = 1; i < ranges.size(); i++) {
+            assertThat(ranges.get(i).getFromId()).isEqualTo(ranges.get(i - 1).getToId());
+        }
+
+        long rows = 0;
+        for (PartitionResult result : scanner.scan(ranges, null)) {
+            rows += result.getRows();
+        }
+        assertThat(rows).isEqualTo(memberRepository.scanRange(null, null, member -> {
+        }));
+    }
+
+    @Test
+    void sampleIsOrderedAndBounded() {
+        List<String> sample = memberRepository.sampleMemberIds(PARTITIONS * 8);
+
+        assertThat(sample).isNotEmpty().hasSizeLessThanOrEqualTo(PARTITIONS * 8).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void balanced() {
+        ReconciliationJob job = new ReconciliationJob(scanner, PARTITIONS);
+
+        ReconciliationReport report = job.run(LedgerTotals.of(ledger()));
+
+        assertThat(report.isBalanced()).isTrue();
+        assertThat(report.getRows()).isGreaterThanOrEqualTo(MEMBERS);
+        assertThat(report.getRowsPerSecond()).isPositive();
+    }
+
+    @Test
+    void detectPartitionMismatch() {
+        SortedMap<String, Long> ledger = ledger();
+        // 원장에 없는 변경
+        memberRepository.update("rc0500", 1_000_000);
+
+        ReconciliationReport report = new ReconciliationJob(scanner, PARTITIONS).run(LedgerTotals.of(ledger));
+
+        assertThat(report.isBalanced()).isFalse();
+        long unbalanced = report.getPartitions().stream().filter(check -> !check.isBalanced()).count();
+        assertThat(unbalanced).isEqualTo(1);
+        assertThat(report.getPartitions().stream()
+                .filter(check -> !check.isBalanced())
+                .allMatch(check -> check.getResult().getRange().contains("rc0500"))).isTrue();
+    }
+
+    /**
+     * 한 커넥션으로 순서대로 읽어서 만든 기준 원장
+     */
+    private SortedMap<String, Long> ledger() {
+        SortedMap<String, Long> ledger = new TreeMap<>();
+        memberRepository.scanRange(null, null, member -> ledger.put(member.getMemberId(), (long) member.getMoney()));
+        return ledger;
+    }
+}
@@ -0,0 +1,95 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 새 회원을 두 트랜젝션이 동시에 upsert 해도 키 중복 예외 없이 한쪽은 INSERTED, 다른 쪽은 UPDATED
+ */
+@Slf4j
+class MemberRepositoryUpsertRaceTest {
+
+    public static final String MEMBER_A = "memberA";
+    private static final int ROUNDS = 30;
+
+    DriverManagerDataSource dataSource;
+    TransactionTemplate txTemplate;
+    ExecutorService executor;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        MemberSchema.ensure(dataSource);
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+        new MemberRepositoryV5(dataSource).delete(MEMBER_A);
+    }
+
+    @Test
+    void concurrentUpsertOfNewMember() throws Exception {
+        List<MemberRepository> repositories = List.of(
+                new MemberRepositoryV4_1(dataSource),
+                new MemberRepositoryV4_2(dataSource),
+                new MemberRepositoryV5(dataSource),
+                new MemberRepositoryV6Impl(dataSource, CachedSQLExceptionTranslator.of(dataSource)),
+                new MemberRepositoryV7(dataSource));
+
+        for (MemberRepository repository : repositories) {
+            for (int round = 0; round < ROUNDS; round++) {
+                repository.delete(MEMBER_A);
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                List<Future<UpsertResult>> futures = new ArrayList<>();
+                for (int money : new int[]{100, 200}) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        // 커밋을 늦춰서 다른 쪽 MERGE 가 커밋 전 등록과 겹치게 한다.
+                        return txTemplate.execute(status -> {
+                            UpsertResult result = repository.upsert(new Member(MEMBER_A, money));
+                            sleep(20);
+                            return result;
+                        });
+                    }));
+                }
+                List<UpsertResult> results = new ArrayList<>();
+                for (Future<UpsertResult> future : futures) {
+                    results.add(future.get(10, TimeUnit.SECONDS));
+                }
+
+                assertThat(results).as(repository.getClass().getSimpleName())
+                        .containsExactlyInAnyOrder(UpsertResult.INSERTED, UpsertResult.UPDATED);
+                assertThat(repository.findById(MEMBER_A).getMoney()).isIn(100, 200);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.MemberBatch;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberRepositoryV5Test {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    MemberRepositoryV5 repository;
+    JdbcTemplate template;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        MemberSchema.ensure(dataSource);
+        repository = new MemberRepositoryV5(dataSource);
+        template = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+        repository.delete(MEMBER_B);
+    }
+
+    @Test
+    void upsert() {
+        assertThat(repository.upsert(new Member(MEMBER_A, 10000))).isEqualTo(UpsertResult.INSERTED);
+        assertThat(repository.upsert(new Member(MEMBER_A, 20000))).isEqualTo(UpsertResult.UPDATED);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+    }
+
+    @Test
+    void upsertAll() {
+        repository.save(new Member(MEMBER_A, 10000));
+
+        List<UpsertResult> results = repository.upsertAll(List.of(
+                new Member(MEMBER_A, 1000),
+                new Member(MEMBER_B, 2000),
+                new Member(MEMBER_B, 3000)));
+
+        assertThat(results).containsExactly(UpsertResult.UPDATED, UpsertResult.INSERTED, UpsertResult.UPDATED);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(repository.findById(MEMBER_B).getMoney()).isEqualTo(3000);
+    }
+
+    @Test
+    void optimisticUpdate() {
+        repository.save(new Member(MEMBER_A, 10000));
+        Member first = repository.findById(MEMBER_A);
+        Member second = repository.findById(MEMBER_A);
+        assertThat(first.getVersion()).isZero();
+
+        first.setMoney(9000);
+        repository.update(first);
+        assertThat(first.getVersion()).isEqualTo(1);
+
+        // 먼저 수정된 version 으로는 수정할 수 없다.
+        second.setMoney(8000);
+        assertThatThrownBy(() -> repository.update(second)).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(repository.findById(MEMBER_A)).isEqualTo(new Member(MEMBER_A, 9000, 1));
+
+        // 다른 수정 경로도 version 을 올린다.
+        repository.update(MEMBER_A, 7000);
+        repository.upsert(new Member(MEMBER_A, 6000));
+        assertThat(repository.findById(MEMBER_A).getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void findWithoutException() {
+        repository.save(new Member(MEMBER_A, 10000));
+
+        assertThat(repository.findOptionalById(MEMBER_A)).contains(new Member(MEMBER_A, 10000));
+        assertThat(repository.existsById(MEMBER_A)).isTrue();
+        assertThat(repository.findMoneyById(MEMBER_A)).hasValue(10000);
+
+        assertThat(repository.findOptionalById(MEMBER_B)).isEmpty();
+        assertThat(repository.existsById(MEMBER_B)).isFalse();
+        assertThat(repository.findMoneyById(MEMBER_B)).isEmpty();
+    }
+
+    @Test
+    void memberBatch() {
+        MemberBatch batch = new MemberBatch(2);
+        batch.add(MEMBER_A, 1000);
+        batch.add(MEMBER_B, 2000);
+        repository.saveAll(batch);
+
+        batch.setMoney(0, 3000);
+        repository.updateAll(batch);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(3000);
+
+        // 재사용
+        MemberBatch read = new MemberBatch(1);
+        assertThat(repository.findBatchAfter("member", read)).isEqualTo(1);
+        assertThat(read.getMemberId(0)).isEqualTo(MEMBER_A);
+        assertThat(repository.findBatchAfter(read.getLastMemberId(), read)).isEqualTo(1);
+        assertThat(read.getMemberId(0)).isEqualTo(MEMBER_B);
+        assertThat(read.getMoney(0)).isEqualTo(2000);
+    }
+
+    @Test
+    void findByMoney() {
+        // 다른 데이터보다 큰 금액
+        repository.save(new Member(MEMBER_A, 2_000_000_000));
+        repository.save(new Member(MEMBER_B, 1_999_999_999));
+
+        List<Member> found = new ArrayList<>();
+        long count = repository.findByMoneyBetween(1_999_999_999, 2_000_000_000, found::add);
+        assertThat(count).isEqualTo(2);
+        assertThat(found).containsExactlyInAnyOrder(
+                new Member(MEMBER_A, 2_000_000_000), new Member(MEMBER_B, 1_999_999_999));
+
+        assertThat(repository.findTopByMoney(2)).containsExactly(
+                new Member(MEMBER_A, 2_000_000_000), new Member(MEMBER_B, 1_999_999_999));
+    }
+
+    @Test
+    void findTopByMoneyRejectsNegative() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        List<MemberRepository> repositories = List.of(
+                new MemberRepositoryV4_1(dataSource),
+                new MemberRepositoryV4_2(dataSource),
+                repository,
+                new MemberRepositoryV6Impl(dataSource, CachedSQLExceptionTranslator.of(dataSource)),
+                new MemberRepositoryV7(dataSource));
+
+        for (MemberRepository each : repositories) {
+            assertThatThrownBy(() -> each.findTopByMoney(-1))
+                    .as(each.getClass().getSimpleName())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("n must not be negative");
+            assertThat(each.findTopByMoney(0)).isEmpty();
+        }
+    }
+
+    @Test
+    void moneyQueriesUseIndex() {
+        String between = template.queryForObject(
+                "explain select member_id, money from member where money between 1 and 2", String.class);
+        String top = template.queryForObject(
+                "explain select member_id, money from member order by money desc limit 100", String.class);
+        log.info("between plan={}", between);
+        log.info("top plan={}", top);
+
+        assertThat(between).containsIgnoringCase("IDX_MEMBER_MONEY");
+        assertThat(top).containsIgnoringCase("IDX_MEMBER_MONEY");
+    }
+}
@@ -0,0 +1,68 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.exception.CachedSQLExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 어노테이션 프로세서가 생성한 MemberRepositoryV6Impl
+ */
+@Slf4j
+class MemberRepositoryV6Test {
+
+    public static final String MEMBER_A = "memberA";
+
+    MemberRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new MemberRepositoryV6Impl(dataSource, CachedSQLExceptionTranslator.of(dataSource));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+    }
+
+    @Test
+    void crud() {
+        // save
+        Member member = new Member(MEMBER_A, 10000);
+        repository.save(member);
+
+        // findById
+        assertThat(repository.findById(MEMBER_A)).isEqualTo(member);
+        assertThat(repository.findMoneyById(MEMBER_A)).hasValue(10000);
+        assertThat(repository.existsById(MEMBER_A)).isTrue();
+
+        // update : 10000 -> 20000
+        repository.update(MEMBER_A, 20000);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+
+        // 구간 분할용 표본 (PK 순서)
+        assertThat(repository.sampleMemberIds(10)).isNotEmpty().isSorted().doesNotHaveDuplicates();
+
+        // upsert
+        assertThat(repository.upsert(new Member(MEMBER_A, 30000))).isEqualTo(UpsertResult.UPDATED);
+
+        // 예외 변환
+        assertThatThrownBy(() -> repository.save(member)).isInstanceOf(DuplicateKeyException.class);
+
+        // delete
+        repository.delete(MEMBER_A);
+        assertThat(repository.findOptionalById(MEMBER_A)).isEmpty();
+        assertThatThrownBy(() -> repository.findById(MEMBER_A))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+}
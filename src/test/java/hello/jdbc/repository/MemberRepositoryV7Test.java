@@ -0,0 +1,67 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberRepositoryV7Test {
+
+    public static final String MEMBER_A = "memberA";
+
+    MemberRepository repository;
+
+    @BeforeEach
+    void beforeEach() {
+        repository = new MemberRepositoryV7(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+    }
+
+    @Test
+    void crud() {
+        // save
+        Member member = new Member(MEMBER_A, 10000);
+        repository.save(member);
+        assertThatThrownBy(() -> repository.save(member)).isInstanceOf(DuplicateKeyException.class);
+
+        // findById
+        assertThat(repository.findById(MEMBER_A)).isEqualTo(member);
+        assertThat(repository.findMoneyById(MEMBER_A)).hasValue(10000);
+
+        // update : 10000 -> 20000
+        repository.update(MEMBER_A, 20000);
+        assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(20000);
+
+        // 여러 건 잠금 조회 (없는 회원은 빠진다)
+        assertThat(repository.findAllByIdForUpdate(List.of(MEMBER_A, "noMember")))
+                .containsExactly(new Member(MEMBER_A, 20000));
+
+        // 구간 분할용 표본 (PK 순서)
+        assertThat(repository.sampleMemberIds(10)).isNotEmpty().isSorted().doesNotHaveDuplicates();
+
+        // upsert
+        assertThat(repository.upsert(new Member(MEMBER_A, 30000))).isEqualTo(UpsertResult.UPDATED);
+
+        // delete
+        repository.delete(MEMBER_A);
+        assertThat(repository.existsById(MEMBER_A)).isFalse();
+        assertThat(repository.findMoneyById(MEMBER_A)).isEmpty();
+        assertThatThrownBy(() -> repository.findById(MEMBER_A))
+                .isInstanceOf(EmptyResultDataAccessException.class);
+    }
+}
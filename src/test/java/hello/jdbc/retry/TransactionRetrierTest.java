@@ -0,0 +1,109 @@
+package hello.jdbc.retry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class TransactionRetrierTest {
+
+    @Test
+    void retryUntilSuccess() {
+        TransactionRetrier retrier = retrier(5, new RetryBudget(10, 0.1));
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = retrier.execute(() -> {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                throw new CannotAcquireLockException("lock timeout");
+            }
+            if (call == 2) {
+                throw new DeadlockLoserDataAccessException("deadlock", null);
+            }
+            if (call == 3) {
+                // H2 데드락 (40001) 은 ConcurrencyFailureException 으로 변환된다.
+                throw new ConcurrencyFailureException("Deadlock detected");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        RetryMetrics metrics = retrier.getMetrics();
+        log.info("{}", metrics);
+        assertThat(metrics.getAttempts()).isEqualTo(4);
+        assertThat(metrics.getRetries()).isEqualTo(3);
+        assertThat(metrics.getAttemptsPerSuccess()).isEqualTo(4.0);
+    }
+
+    @Test
+    void notRetryable() {
+        TransactionRetrier retrier = retrier(5, new RetryBudget(10, 0.1));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> retrier.run(() -> {
+            calls.incrementAndGet();
+            throw new DataIntegrityViolationException("duplicate");
+        })).isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(calls).hasValue(1);
+        assertThat(retrier.getMetrics().getFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void maxAttempts() {
+        TransactionRetrier retrier = retrier(3, new RetryBudget(10, 0.1));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> retrier.run(() -> {
+            calls.incrementAndGet();
+            throw new CannotAcquireLockException("lock timeout");
+        })).isInstanceOf(CannotAcquireLockException.class);
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void budgetStopsRetryStorm() {
+        // 재시도 2번 분량의 예산, 성공으로 쌓이는 토큰 없음
+        TransactionRetrier retrier = retrier(5, new RetryBudget(2, 0));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> retrier.run(() -> {
+                calls.incrementAndGet();
+                throw new CannotAcquireLockException("lock timeout");
+            })).isInstanceOf(CannotAcquireLockException.class);
+        }
+
+        // 첫번째 : 1 + 재시도 2번, 이후 : 재시도 없이 1번씩
+        assertThat(calls).hasValue(5);
+        assertThat(retrier.getMetrics().getBudgetExhausted()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectInsideTransaction() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        TransactionRetrier retrier = retrier(3, new RetryBudget(10, 0.1));
+
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> retrier.run(() -> {
+        }))).isInstanceOf(IllegalStateException.class);
+    }
+
+    private TransactionRetrier retrier(int maxAttempts, RetryBudget budget) {
+        return new TransactionRetrier(maxAttempts, Duration.ofMillis(1), Duration.ofMillis(5), budget);
+    }
+}
@@ -0,0 +1,203 @@
+package hello.jdbc.saga;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 메모리 H2 두개를 샤드로 사용한다. "sb" 로 시작하는 회원은 샤드 B, 나머지는 샤드 A
+ */
+@Slf4j
+class CrossShardTransferServiceTest {
+
+    public static final String MEMBER_A = "saA";
+    public static final String MEMBER_A2 = "saA2";
+    public static final String MEMBER_B = "sbB";
+    public static final String MEMBER_EX = "ex";
+
+    JdbcTemplate templateA;
+    JdbcTemplate templateB;
+    Shard shardA;
+    Shard shardB;
+    CrossShardTransferService transferService;
+    SagaRecoveryScanner scanner;
+    volatile boolean shardBDown;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSourceA = new DriverManagerDataSource("jdbc:h2:mem:sagaA;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD);
+        DriverManagerDataSource dataSourceB = new DriverManagerDataSource("jdbc:h2:mem:sagaB;DB_CLOSE_DELAY=-1", USERNAME, PASSWORD) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (shardBDown) {
+                    throw new SQLException("shard B down", "08001");
+                }
+                return super.getConnection();
+            }
+        };
+        shardA = new Shard("A", dataSourceA);
+        shardB = new Shard("B", dataSourceB);
+        templateA = new JdbcTemplate(dataSourceA);
+        templateB = new JdbcTemplate(dataSourceB);
+        transferService = new CrossShardTransferService(List.of(shardA, shardB),
+                memberId -> memberId.startsWith("sb") ? 1 : 0);
+        scanner = new SagaRecoveryScanner(transferService, Duration.ofSeconds(1), 100);
+
+        templateA.update("insert into member(member_id, money) values (?, ?)", MEMBER_A, 10000);
+        templateA.update("insert into member(member_id, money) values (?, ?)", MEMBER_A2, 10000);
+        templateA.update("insert into member(member_id, money) values (?, ?)", MEMBER_EX, 10000);
+        templateB.update("insert into member(member_id, money) values (?, ?)", MEMBER_B, 10000);
+    }
+
+    @AfterEach
+    void afterEach() {
+        shardBDown = false;
+        for (JdbcTemplate template : List.of(templateA, templateB)) {
+            template.update("delete from transfer_outbox");
+            template.update("delete from transfer_inbox");
+            template.update("delete from member");
+        }
+    }
+
+    @Test
+    void crossShardTransfer() {
+        assertThat(transferService.transfer(MEMBER_A, MEMBER_B, 2000).getStatus()).isEqualTo(SagaStatus.COMPLETED);
+
+        assertThat(money(templateA, MEMBER_A)).isEqualTo(8000);
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(12000);
+        assertThat(templateA.queryForObject("select status from transfer_outbox", String.class)).isEqualTo("COMPLETED");
+        assertThat(templateB.queryForObject("select status from transfer_inbox", String.class)).isEqualTo("CREDITED");
+        assertThat(transferService.getMetrics().getCompleted()).isEqualTo(1);
+    }
+
+    @Test
+    void sameShardTransferIsLocal() {
+        transferService.accountTransfer(MEMBER_A, MEMBER_A2, 2000);
+
+        assertThat(money(templateA, MEMBER_A)).isEqualTo(8000);
+        assertThat(money(templateA, MEMBER_A2)).isEqualTo(12000);
+        assertThat(templateA.queryForObject("select count(*) from transfer_outbox", Integer.class)).isZero();
+        assertThat(transferService.getMetrics().getLocal()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedCreditIsCompensated() {
+        assertThatThrownBy(() -> transferService.accountTransfer(MEMBER_B, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(10000);
+        assertThat(money(templateA, MEMBER_EX)).isEqualTo(10000);
+        assertThat(templateB.queryForObject("select status from transfer_outbox", String.class)).isEqualTo("COMPENSATED");
+        assertThat(templateA.queryForObject("select status from transfer_inbox", String.class)).isEqualTo("REJECTED");
+        assertThat(transferService.getMetrics().getCompensated()).isEqualTo(1);
+    }
+
+    @Test
+    void missingTargetIsCompensated() {
+        assertThatThrownBy(() -> transferService.accountTransfer(MEMBER_A, "sbNone", 2000))
+                .isInstanceOf(NoSuchElementException.class);
+
+        assertThat(money(templateA, MEMBER_A)).isEqualTo(10000);
+        assertThat(templateA.queryForObject("select status from transfer_outbox", String.class)).isEqualTo("COMPENSATED");
+    }
+
+    @Test
+    void missingSourceLeavesNothing() {
+        assertThatThrownBy(() -> transferService.accountTransfer("saNone", MEMBER_B, 2000))
+                .isInstanceOf(NoSuchElementException.class);
+
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(10000);
+        assertThat(templateA.queryForObject("select count(*) from transfer_outbox", Integer.class)).isZero();
+    }
+
+    @Test
+    void unreachableTargetIsPending() {
+        shardBDown = true;
+
+        SagaResult result = transferService.transfer(MEMBER_A, MEMBER_B, 2000);
+        assertThat(result.getStatus()).isEqualTo(SagaStatus.PENDING);
+        assertThatThrownBy(() -> transferService.accountTransfer(MEMBER_A, MEMBER_B, 1000))
+                .isInstanceOf(TransferPendingException.class);
+        assertThat(money(templateA, MEMBER_A)).isEqualTo(7000);
+
+        // 연결이 돌아오면 복구 스캐너가 입금한다.
+        shardBDown = false;
+        templateA.update("update transfer_outbox set updated_at = dateadd('SECOND', -10, current_timestamp)");
+        assertThat(scanner.scan()).isEqualTo(2);
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(13000);
+        assertThat(templateA.queryForObject("select status from transfer_outbox where transfer_id = ?",
+                String.class, result.getTransferId())).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void scannerResumesStuckLeg() {
+        // 출금과 outbox 기록 후 중단된 이체
+        stuckLeg("t-1", MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(scanner.scan()).isEqualTo(1);
+
+        assertThat(money(templateA, MEMBER_A)).isEqualTo(8000);
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(12000);
+        assertThat(templateA.queryForObject("select status from transfer_outbox", String.class)).isEqualTo("COMPLETED");
+        assertThat(transferService.getMetrics().getRecovered()).isEqualTo(1);
+        assertThat(scanner.scan()).isZero();
+    }
+
+    @Test
+    void scannerDoesNotCreditTwice() {
+        // 입금까지 끝나고 완료 표시 전에 중단된 이체
+        stuckLeg("t-2", MEMBER_A, MEMBER_B, 2000);
+        templateB.update("insert into transfer_inbox(transfer_id, status) values ('t-2', 'CREDITED')");
+        templateB.update("update member set money = money + 2000 where member_id = ?", MEMBER_B);
+
+        scanner.scan();
+
+        assertThat(money(templateA, MEMBER_A)).isEqualTo(8000);
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(12000);
+        assertThat(templateA.queryForObject("select status from transfer_outbox", String.class)).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void scannerCompensatesStuckRejectedLeg() {
+        stuckLeg("t-3", MEMBER_B, MEMBER_EX, 2000);
+
+        scanner.scan();
+
+        assertThat(money(templateB, MEMBER_B)).isEqualTo(10000);
+        assertThat(money(templateA, MEMBER_EX)).isEqualTo(10000);
+        assertThat(templateB.queryForObject("select status from transfer_outbox", String.class)).isEqualTo("COMPENSATED");
+    }
+
+    @Test
+    void scannerSkipsRecentLeg() {
+        templateA.update("insert into transfer_outbox(transfer_id, from_id, to_id, money) values ('t-4', ?, ?, 2000)",
+                MEMBER_A, MEMBER_B);
+
+        assertThat(scanner.scan()).isZero();
+    }
+
+    private void stuckLeg(String transferId, String fromId, String toId, int money) {
+        JdbcTemplate source = fromId.startsWith("sb") ? templateB : templateA;
+        source.update("update member set money = money - ? where member_id = ?", money, fromId);
+        source.update("insert into transfer_outbox(transfer_id, from_id, to_id, money, updated_at)"
+                        + " values (?, ?, ?, ?, dateadd('SECOND', -10, current_timestamp))",
+                transferId, fromId, toId, money);
+    }
+
+    private static int money(JdbcTemplate template, String memberId) {
+        return template.queryForObject("select money from member where member_id = ?", Integer.class, memberId);
+    }
+}
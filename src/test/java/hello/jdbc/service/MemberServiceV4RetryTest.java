@@ -0,0 +1,109 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.retry.RetryBudget;
+import hello.jdbc.retry.TransactionRetrier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MemberServiceV4 + 재시도 트랜젝션 경계
+ * 반대 방향 이체가 경합해서 데드락, 락 타임아웃이 나도 @Transactional 단위 전체를 다시 실행한다.
+ */
+@Slf4j
+@SpringBootTest
+class MemberServiceV4RetryTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource);
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @Test
+    @DisplayName("경합 중 실패한 이체를 재시도해서 모두 성공")
+    void retryContendedTransfers() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 1_000_000));
+        memberRepository.save(new Member(MEMBER_B, 1_000_000));
+        TransactionRetrier retrier = new TransactionRetrier(20, Duration.ofMillis(1), Duration.ofMillis(50),
+                new RetryBudget(THREADS * TRANSFERS_PER_THREAD, 0.5));
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    boolean forward = (thread + i) % 2 == 0;
+                    // memberService 는 @Transactional 프록시 : 호출 한번이 트랜젝션 하나
+                    retrier.run(() -> memberService.accountTransfer(
+                            forward ? MEMBER_A : MEMBER_B, forward ? MEMBER_B : MEMBER_A, 1));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            // 재시도 후에도 실패하면 여기서 예외
+            future.get();
+        }
+        executor.shutdown();
+
+        log.info("{}", retrier.getMetrics());
+        assertThat(retrier.getMetrics().getSuccesses()).isEqualTo(THREADS * TRANSFERS_PER_THREAD);
+        assertThat(retrier.getMetrics().getFailures()).isZero();
+        // V4 는 락 없이 읽으므로 갱신 손실이 생길 수 있어 잔액은 확인하지 않는다. (MemberServiceV5 에서 해결)
+    }
+}
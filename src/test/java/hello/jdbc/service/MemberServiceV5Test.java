@@ -0,0 +1,154 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 락 순서 고정 이체
+ * 동시에 반대 방향으로 이체해도 갱신 손실, 데드락이 없어야 한다.
+ */
+@Slf4j
+@SpringBootTest
+class MemberServiceV5Test {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV5 memberService;
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource);
+        }
+
+        @Bean
+        MemberServiceV5 memberServiceV5() {
+            return new MemberServiceV5(memberRepository());
+        }
+    }
+
+    @Test
+    @DisplayName("정상 : 이체 성공")
+    void accountTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("예외 : 이체실패 rollback")
+    void accountTransferException() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("동시 반대 방향 이체 : 갱신 손실, 데드락 없음")
+    void concurrentOppositeTransfers() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, INITIAL_MONEY));
+        memberRepository.save(new Member(MEMBER_B, INITIAL_MONEY));
+
+        // 스프링 컨텍스트의 서비스 빈을 다른 테스트와 같이 쓰므로 이 테스트에서 늘어난 건수만 확인한다.
+        long lockWaitsBefore = memberService.getLockWait().getCount();
+        AtomicInteger aToB = new AtomicInteger();
+        AtomicInteger bToA = new AtomicInteger();
+        List<Throwable> failures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    // 스레드마다 방향을 번갈아 가며 같은 두 회원에 경합시킨다.
+                    boolean forward = (thread + i) % 2 == 0;
+                    try {
+                        if (forward) {
+                            memberService.accountTransfer(MEMBER_A, MEMBER_B, 1);
+                            aToB.incrementAndGet();
+                        } else {
+                            memberService.accountTransfer(MEMBER_B, MEMBER_A, 1);
+                            bToA.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        log.info("aToB={}, bToA={}, {}", aToB, bToA, memberService.getLockWait());
+
+        // 데드락, 락 타임아웃 없음
+        assertThat(failures).isEmpty();
+        // 갱신 손실 없음
+        int moneyA = memberRepository.findById(MEMBER_A).getMoney();
+        int moneyB = memberRepository.findById(MEMBER_B).getMoney();
+        assertThat(moneyA).isEqualTo(INITIAL_MONEY - aToB.get() + bToA.get());
+        assertThat(moneyB).isEqualTo(INITIAL_MONEY + aToB.get() - bToA.get());
+        assertThat(memberService.getLockWait().getCount() - lockWaitsBefore).isEqualTo(THREADS * TRANSFERS_PER_THREAD);
+    }
+}
@@ -0,0 +1,142 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.retry.RetryBudget;
+import hello.jdbc.retry.TransactionRetrier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 낙관적 락 이체
+ */
+@Slf4j
+@SpringBootTest
+class MemberServiceV6Test {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private static final int THREADS = 4;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV6 memberService;
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource);
+        }
+
+        @Bean
+        MemberServiceV6 memberServiceV6() {
+            return new MemberServiceV6(memberRepository());
+        }
+    }
+
+    @Test
+    @DisplayName("정상 : 이체 성공, version 증가")
+    void accountTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(memberRepository.findById(MEMBER_A)).isEqualTo(new Member(MEMBER_A, 8000, 1));
+        assertThat(memberRepository.findById(MEMBER_B)).isEqualTo(new Member(MEMBER_B, 12000, 1));
+    }
+
+    @Test
+    @DisplayName("예외 : 이체실패 rollback")
+    void accountTransferException() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A)).isEqualTo(new Member(MEMBER_A, 10000, 0));
+        assertThat(memberRepository.findById(MEMBER_EX)).isEqualTo(new Member(MEMBER_EX, 10000, 0));
+    }
+
+    @Test
+    @DisplayName("동시 이체 : 충돌은 재시도, 갱신 손실 없음")
+    void concurrentTransfers() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, INITIAL_MONEY));
+        memberRepository.save(new Member(MEMBER_B, INITIAL_MONEY));
+        TransactionRetrier retrier = new TransactionRetrier(50, Duration.ofMillis(1), Duration.ofMillis(20),
+                new RetryBudget(THREADS * TRANSFERS_PER_THREAD * 10, 1), ConcurrencyFailureException.class::isInstance);
+
+        AtomicInteger aToB = new AtomicInteger();
+        AtomicInteger bToA = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    if ((thread + i) % 2 == 0) {
+                        retrier.run(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 1));
+                        aToB.incrementAndGet();
+                    } else {
+                        retrier.run(() -> memberService.accountTransfer(MEMBER_B, MEMBER_A, 1));
+                        bToA.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        log.info("{}", retrier.getMetrics());
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(INITIAL_MONEY - aToB.get() + bToA.get());
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(INITIAL_MONEY + aToB.get() - bToA.get());
+    }
+}
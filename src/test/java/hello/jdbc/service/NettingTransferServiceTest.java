@@ -0,0 +1,83 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class NettingTransferServiceTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_C = "memberC";
+    public static final String MEMBER_EX = "ex";
+
+    MemberRepositoryV5 memberRepository;
+    NettingTransferService transferService;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        transferService = new NettingTransferService(memberRepository, new DataSourceTransactionManager(dataSource));
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_C);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    void netting() {
+        TransferAllResult result = transferService.transferAll(List.of(
+                new Transfer(MEMBER_A, MEMBER_B, 1000),
+                new Transfer(MEMBER_B, MEMBER_A, 300),
+                new Transfer(MEMBER_A, MEMBER_EX, 100),   // 검증 실패
+                new Transfer(MEMBER_A, MEMBER_C, 100),    // 없는 회원
+                new Transfer(MEMBER_B, MEMBER_A, 200)));
+
+        assertThat(result.getApplied()).isEqualTo(3);
+        assertThat(result.getFailures().get(2)).isInstanceOf(IllegalStateException.class);
+        assertThat(result.getFailures().get(3)).isInstanceOf(NoSuchElementException.class);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10500);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void failedLegIsolatedBySavepoint() {
+        // C 에 더하면 integer 범위를 넘는다.
+        memberRepository.save(new Member(MEMBER_C, Integer.MAX_VALUE - 10));
+
+        TransferAllResult result = transferService.transferAll(List.of(
+                new Transfer(MEMBER_A, MEMBER_B, 1000),
+                new Transfer(MEMBER_A, MEMBER_C, 100),
+                new Transfer(MEMBER_B, MEMBER_A, 500)));
+
+        assertThat(result.getApplied()).isEqualTo(2);
+        assertThat(result.getFailures().get(1)).isInstanceOf(DataAccessException.class);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10500);
+        assertThat(memberRepository.findById(MEMBER_C).getMoney()).isEqualTo(Integer.MAX_VALUE - 10);
+    }
+}
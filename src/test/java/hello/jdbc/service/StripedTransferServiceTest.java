@@ -0,0 +1,114 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.lock.StripedLocks;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * stripe 락 + MemberServiceV4
+ * 같은 JVM 안의 경합은 트랜젝션 시작 전에 줄을 세우므로 락 없이 읽는 V4 도 갱신 손실, 데드락이 없다.
+ */
+@Slf4j
+@SpringBootTest
+class StripedTransferServiceTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    // 커넥션 풀(기본 10)보다 많은 스레드
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    @Autowired
+    private MemberRepository memberRepository;
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        private final DataSource dataSource;
+
+        public TestConfig(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource);
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @Test
+    @DisplayName("동시 반대 방향 이체 : JVM 안에서 대기")
+    void concurrentTransfers() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, INITIAL_MONEY));
+        memberRepository.save(new Member(MEMBER_B, INITIAL_MONEY));
+        // memberService 는 @Transactional 프록시이므로 락을 잡은 후에 트랜젝션이 시작된다.
+        StripedTransferService transferService = new StripedTransferService(memberService, new StripedLocks(64));
+
+        AtomicInteger aToB = new AtomicInteger();
+        AtomicInteger bToA = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    if ((thread + i) % 2 == 0) {
+                        transferService.accountTransfer(MEMBER_A, MEMBER_B, 1);
+                        aToB.incrementAndGet();
+                    } else {
+                        transferService.accountTransfer(MEMBER_B, MEMBER_A, 1);
+                        bToA.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        log.info("{}", transferService.getLocks().getWait());
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(INITIAL_MONEY - aToB.get() + bToA.get());
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(INITIAL_MONEY + aToB.get() - bToA.get());
+        assertThat(transferService.getLocks().getWait().getCount()).isEqualTo(THREADS * TRANSFERS_PER_THREAD);
+    }
+}
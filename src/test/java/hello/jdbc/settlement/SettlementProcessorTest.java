@@ -0,0 +1,82 @@
+package hello.jdbc.settlement;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class SettlementProcessorTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_C = "memberC";
+
+    MemberRepositoryV5 memberRepository;
+    SettlementProcessor processor;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        // chunk 하나에 3건
+        processor = new SettlementProcessor(new DataSourceTransactionManager(dataSource), memberRepository, 3, 1);
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_C, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_C);
+    }
+
+    @Test
+    void process() throws IOException {
+        Path file = dir.resolve("settlement.csv");
+        Files.write(file, List.of(
+                "memberA,memberB,1000",
+                "memberB,memberC,500",
+                "memberC,memberA,200",
+                "memberA,memberA,100",   // 검증 실패
+                "memberA,unknown,100",   // 존재하지 않는 회원 -> chunk 실패 후 건별 반영
+                "memberB,memberA,300"
+        ));
+        Path errorFile = dir.resolve("settlement.err");
+
+        SettlementResult result = processor.process(file, errorFile);
+
+        assertThat(result.getAppliedTransfers()).isEqualTo(4);
+        assertThat(result.getFailedTransfers()).isEqualTo(2);
+        assertThat(result.getChunks()).isEqualTo(2);
+
+        // A : 10000 - 1000 + 200 + 300, B : 10000 + 1000 - 500 - 300, C : 10000 + 500 - 200
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10200);
+        assertThat(memberRepository.findById(MEMBER_C).getMoney()).isEqualTo(10300);
+
+        List<String> errors = Files.readAllLines(errorFile);
+        assertThat(errors).hasSize(2);
+        assertThat(errors.get(0)).startsWith("4\t");
+        assertThat(errors.get(1)).startsWith("5\t");
+    }
+}
@@ -0,0 +1,168 @@
+package hello.jdbc.transferqueue;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static hello.jdbc.connection.ConnectionConstant.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class TransferQueueWorkersTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 memberRepository;
+    TransferQueue queue;
+    TransferQueueWorkers workers;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        queue = new TransferQueue(dataSource);
+        workers = new TransferQueueWorkers(queue, memberRepository, new DataSourceTransactionManager(dataSource),
+                4, 16, Duration.ofMillis(5), Duration.ofSeconds(30));
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            members.add(new Member(memberId(i), INITIAL_MONEY));
+        }
+        members.add(new Member("ex", INITIAL_MONEY));
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void afterEach() {
+        workers.stop();
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.update("delete from pending_transfer where from_id like 'tq%'");
+        template.update("delete from member where member_id like 'tq%' or member_id = 'ex'");
+        dataSource.close();
+    }
+
+    @Test
+    void workersProcessEveryJobOnce() throws Exception {
+        int[] expected = new int[ACCOUNTS];
+        List<Long> transferIds = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(ACCOUNTS);
+            int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            int money = 1 + random.nextInt(100);
+            transferIds.add(queue.enqueue(memberId(from), memberId(to), money));
+            expected[from] -= money;
+            expected[to] += money;
+        }
+
+        workers.start();
+        awaitEmpty();
+        workers.stop();
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertThat(memberRepository.findById(memberId(i)).getMoney()).isEqualTo(INITIAL_MONEY + expected[i]);
+        }
+        for (Long transferId : transferIds) {
+            assertThat(queue.findStatus(transferId)).contains(TransferStatus.DONE);
+        }
+        TransferQueueMetrics metrics = workers.getMetrics();
+        log.info("metrics {}", metrics);
+        assertThat(metrics.getDone()).isEqualTo(500);
+        long perWorker = 0;
+        for (int i = 0; i < metrics.getWorkers(); i++) {
+            perWorker += metrics.getWorkerProcessed(i);
+        }
+        assertThat(perWorker).isEqualTo(500);
+    }
+
+    @Test
+    void invalidJobsFailWithoutRollingBackBatch() {
+        long ok = queue.enqueue(memberId(0), memberId(1), 100);
+        long toEx = queue.enqueue(memberId(0), "ex", 100);
+        long missing = queue.enqueue(memberId(0), "tqNone", 100);
+
+        assertThat(workers.processBatch(0)).isEqualTo(3);
+
+        assertThat(queue.findStatus(ok)).contains(TransferStatus.DONE);
+        assertThat(queue.findStatus(toEx)).contains(TransferStatus.FAILED);
+        assertThat(queue.findStatus(missing)).contains(TransferStatus.FAILED);
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY - 100);
+        assertThat(memberRepository.findById("ex").getMoney()).isEqualTo(INITIAL_MONEY);
+        assertThat(workers.getMetrics().getFailed()).isEqualTo(2);
+    }
+
+    @Test
+    void claimedJobIsNotWaitedFor() throws Exception {
+        long claimed = queue.enqueue(memberId(0), memberId(1), 100);
+        long free = queue.enqueue(memberId(2), memberId(3), 100);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.update("update pending_transfer set status = 'CLAIMED', claimed_by = 'other', claimed_at = current_timestamp"
+                + " where transfer_id = ?", claimed);
+
+        // 다른 워커가 가져가서 처리 중인 상태 (커밋 전)
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement pstmt = con.prepareStatement("select * from pending_transfer where transfer_id = ? for update")) {
+                pstmt.setLong(1, claimed);
+                pstmt.executeQuery().close();
+            }
+
+            long start = System.nanoTime();
+            assertThat(workers.processBatch(0)).isEqualTo(1);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+            assertThat(queue.findStatus(free)).contains(TransferStatus.DONE);
+            assertThat(queue.findStatus(claimed)).contains(TransferStatus.CLAIMED);
+
+            con.rollback();
+        }
+
+        assertThat(workers.processBatch(0)).isZero();
+        assertThat(workers.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredClaimIsReleased() {
+        long claimed = queue.enqueue(memberId(0), memberId(1), 100);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        // claim 후 죽은 워커
+        template.update("update pending_transfer set status = 'CLAIMED', claimed_by = 'dead',"
+                + " claimed_at = dateadd('MINUTE', -1, current_timestamp) where transfer_id = ?", claimed);
+
+        assertThat(workers.processBatch(0)).isZero();
+        assertThat(workers.releaseExpiredClaims()).isEqualTo(1);
+        assertThat(workers.processBatch(0)).isEqualTo(1);
+
+        assertThat(queue.findStatus(claimed)).contains(TransferStatus.DONE);
+        assertThat(memberRepository.findById(memberId(1)).getMoney()).isEqualTo(INITIAL_MONEY + 100);
+    }
+
+    private void awaitEmpty() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (workers.getQueueDepth() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(workers.getQueueDepth()).isZero();
+    }
+
+    private static String memberId(int index) {
+        return "tq" + index;
+    }
+}